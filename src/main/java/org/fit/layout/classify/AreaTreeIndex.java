@@ -0,0 +1,153 @@
+/**
+ * AreaTreeIndex.java
+ */
+package org.fit.layout.classify;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fit.layout.model.Area;
+
+/**
+ * A pre-order numbering of the areas of an area tree. Each subtree occupies a continuous range
+ * of indices so that the per-area data may be stored in plain arrays and computed bottom-up
+ * by traversing the indices in the reverse order (the descendants always have greater indices
+ * than their ancestors).
+ */
+public class AreaTreeIndex
+{
+    private Area[] areas;
+    private int[] parent;
+    private int[] subtreeEnd;
+    private Map<Area, Integer> indices;
+
+    /**
+     * Creates the index of the subtree of the given area.
+     * @param root the root area of the indexed tree
+     */
+    public AreaTreeIndex(Area root)
+    {
+        List<Area> list = new ArrayList<Area>();
+        List<Integer> parents = new ArrayList<Integer>();
+        //iterative pre-order traversal; the stack contains pairs of (area, parent index)
+        Deque<Area> stack = new ArrayDeque<Area>();
+        Deque<Integer> pstack = new ArrayDeque<Integer>();
+        stack.push(root);
+        pstack.push(-1);
+        while (!stack.isEmpty())
+        {
+            Area area = stack.pop();
+            int pindex = pstack.pop();
+            int index = list.size();
+            list.add(area);
+            parents.add(pindex);
+            for (int i = area.getChildCount() - 1; i >= 0; i--)
+            {
+                stack.push(area.getChildArea(i));
+                pstack.push(index);
+            }
+        }
+
+        final int n = list.size();
+        areas = list.toArray(new Area[n]);
+        parent = new int[n];
+        indices = new IdentityHashMap<Area, Integer>(n);
+        for (int i = 0; i < n; i++)
+        {
+            parent[i] = parents.get(i);
+            indices.put(areas[i], i);
+        }
+        //subtree sizes bottom-up
+        int[] size = new int[n];
+        for (int i = n - 1; i >= 0; i--)
+        {
+            size[i] += 1;
+            if (parent[i] != -1)
+                size[parent[i]] += size[i];
+        }
+        subtreeEnd = new int[n];
+        for (int i = 0; i < n; i++)
+            subtreeEnd[i] = i + size[i];
+    }
+
+    /**
+     * Obtains the number of indexed areas.
+     * @return the number of areas
+     */
+    public int size()
+    {
+        return areas.length;
+    }
+
+    public Area getRoot()
+    {
+        return areas[0];
+    }
+
+    /**
+     * Obtains the area with the given index.
+     * @param index the area index
+     * @return the area
+     */
+    public Area getArea(int index)
+    {
+        return areas[index];
+    }
+
+    /**
+     * Finds the index of an area.
+     * @param area the area
+     * @return the area index or -1 when the area is not indexed
+     */
+    public int indexOf(Area area)
+    {
+        Integer ret = indices.get(area);
+        return (ret == null) ? -1 : ret;
+    }
+
+    /**
+     * Obtains the index of the parent area.
+     * @param index the area index
+     * @return the parent index or -1 for the root area
+     */
+    public int getParent(int index)
+    {
+        return parent[index];
+    }
+
+    /**
+     * Obtains the end of the subtree range of an area.
+     * @param index the area index
+     * @return the index following the last descendant of the area
+     */
+    public int getSubtreeEnd(int index)
+    {
+        return subtreeEnd[index];
+    }
+
+    /**
+     * Obtains the index of the first child area.
+     * @param index the area index
+     * @return the index of the first child or -1 when the area has no child areas
+     */
+    public int getFirstChild(int index)
+    {
+        return (index + 1 < subtreeEnd[index]) ? index + 1 : -1;
+    }
+
+    /**
+     * Obtains the index of the next sibling area.
+     * @param index the area index
+     * @return the index of the next sibling or -1 when the area is the last child or the root area
+     */
+    public int getNextSibling(int index)
+    {
+        final int p = parent[index];
+        return (p != -1 && subtreeEnd[index] < subtreeEnd[p]) ? subtreeEnd[index] : -1;
+    }
+
+}
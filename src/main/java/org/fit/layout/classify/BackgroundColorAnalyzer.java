@@ -6,22 +6,32 @@
 package org.fit.layout.classify;
 
 import java.awt.Color;
-import java.util.HashMap;
 
 import org.fit.layout.model.Area;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 /**
  * Background color analyzer. It gathers the statistics about the background color usage in areas.
+ * The effective background colors of all the areas and their luminosities are computed once top-down
+ * for the whole tree.
  * 
  * @author burgetr
  */
 public class BackgroundColorAnalyzer
 {
-    /** Maps the color representation to the total area of that color in the document */
-    private HashMap<Integer, Integer> colors;
+    private static Logger log = LoggerFactory.getLogger(BackgroundColorAnalyzer.class);
+    
+    /** The total areas of the individual colors in the document */
+    private ColorHistogram colors;
     private Area root;
     private int totalArea;
+    private AreaTreeIndex index;
+    /** Effective background colors of the indexed areas or {@code null} when not available */
+    private Color[] effective;
+    /** Luminosities of the visible background colors ({@link Area#getEffectiveBackgroundColor()}) of the indexed areas */
+    private double[] luminosity;
     
     /**
      * Constructs a color analyzer.
@@ -29,11 +39,42 @@ public class BackgroundColorAnalyzer
      */
     public BackgroundColorAnalyzer(Area root)
     {
-        colors = new HashMap<Integer, Integer>();
+        this(root, new AreaTreeIndex(root));
+    }
+    
+    /**
+     * Constructs a color analyzer using an existing index of the area tree. The effective background
+     * colors of all the indexed areas are precomputed.
+     * @param root the root area of the tree
+     * @param index the index of the tree
+     */
+    public BackgroundColorAnalyzer(Area root, AreaTreeIndex index)
+    {
+        colors = new ColorHistogram();
         this.root = root;
-        computeRootStatistics(this.root);
+        this.index = index;
+        if (index.indexOf(root) == 0)
+        {
+            computeRootStatistics(index);
+            computeEffectiveBackgrounds(index);
+        }
+        else
+        {
+            log.warn("The index does not correspond to the root area, not using the precomputed backgrounds");
+            computeRootStatistics(this.root);
+        }
         totalArea = root.getBounds().getArea();
-        System.err.println("We have " + colors.size() + " different background colors, " + totalArea + " total area");
+        log.debug("We have {} different background colors, {} total area", colors.getDistinctCount(), totalArea);
+    }
+    
+    /**
+     * Obtains the histogram of the background colors of the analyzed tree. The histograms of multiple trees
+     * may be merged for obtaining the statistics of a whole site.
+     * @return the histogram; it should not be modified
+     */
+    public ColorHistogram getHistogram()
+    {
+        return colors;
     }
     
     /**
@@ -47,8 +88,7 @@ public class BackgroundColorAnalyzer
             return 0;
         else
         {
-            Integer num = colors.get(colorKey(color));
-            if (num == null) num = 0;
+            final long num = colors.get(color);
             if (totalArea == 0)
                 return 0;
             else
@@ -64,13 +104,108 @@ public class BackgroundColorAnalyzer
     public double getColorPercentage(Area area)
     {
         if (area.isBackgroundSeparated())
-            return getColorPercentage(getEffectiveBackgroundColor(area));
+            return getColorPercentage(getEffectiveBackground(area));
         else
             return -1.0;
     }
 
+    /**
+     * Obtains the effective (visible) background color of an area. The precomputed value
+     * is used for the areas of the analyzed tree.
+     * @param area the area
+     * @return the visible background color
+     * @see #getEffectiveBackgroundColor(Area)
+     */
+    public Color getEffectiveBackground(Area area)
+    {
+        final int i = (effective == null) ? -1 : index.indexOf(area);
+        if (i != -1)
+            return effective[i];
+        else
+            return getEffectiveBackgroundColor(area);
+    }
+
+    /**
+     * Obtains the luminosity of the effective background color of an area as reported
+     * by {@link Area#getEffectiveBackgroundColor()}.
+     * @param area the area
+     * @return the luminosity (0..1) or 0 when the background color is not known
+     */
+    public double getBackgroundLuminosity(Area area)
+    {
+        final int i = (effective == null) ? -1 : index.indexOf(area);
+        if (i != -1)
+            return luminosity[i];
+        else
+            return backgroundLuminosity(area.getEffectiveBackgroundColor());
+    }
+
     //==================================================================================================
     
+    /**
+     * Computes the statistics of the individual colors in the indexed tree.
+     * @param index the tree index
+     */
+    private void computeRootStatistics(AreaTreeIndex index)
+    {
+        for (int i = 0; i < index.size(); i++)
+        {
+            final Area area = index.getArea(i);
+            if (area.isBackgroundSeparated())
+            {
+                Color color = area.getBackgroundColor();
+                if (color != null)
+                    colors.add(color, area.getBounds().getArea());
+            }
+        }
+    }
+    
+    /**
+     * Computes the effective background colors of all the indexed areas top-down: an area without
+     * its own background color inherits the effective color of its parent. The analyzer's colors
+     * start from {@link #getEffectiveBackgroundColor(Area)} of the root while the luminosities
+     * start from {@link Area#getEffectiveBackgroundColor()} of the root; the two may only differ
+     * in the default color used for the root.
+     * @param index the tree index
+     */
+    private void computeEffectiveBackgrounds(AreaTreeIndex index)
+    {
+        final int n = index.size();
+        effective = new Color[n];
+        luminosity = new double[n];
+        Color[] visible = new Color[n];
+        for (int i = 0; i < n; i++) //the parents precede their children in the index
+        {
+            final Area area = index.getArea(i);
+            final int parent = index.getParent(i);
+            if (area.getBackgroundColor() != null)
+            {
+                effective[i] = area.getBackgroundColor();
+                visible[i] = area.getBackgroundColor();
+            }
+            else if (parent != -1)
+            {
+                effective[i] = effective[parent];
+                visible[i] = visible[parent];
+            }
+            else
+            {
+                //the root may inherit from its own parents
+                effective[i] = getEffectiveBackgroundColor(area);
+                visible[i] = area.getEffectiveBackgroundColor();
+            }
+            if (parent != -1 && visible[i] == visible[parent])
+                luminosity[i] = luminosity[parent];
+            else
+                luminosity[i] = backgroundLuminosity(visible[i]);
+        }
+    }
+    
+    private static double backgroundLuminosity(Color color)
+    {
+        return (color == null) ? 0 : ColorKernel.luminosity(color.getRGB());
+    }
+    
     /**
      * Recursively computes the statistics of the individual colors in a subtree.
      * @param root the root of the subtree
@@ -82,27 +217,13 @@ public class BackgroundColorAnalyzer
             Color color = root.getBackgroundColor();
     
             if (color != null)
-            {
-                int key = colorKey(color);
-                Integer val = colors.get(key);
-                if (val == null) val = 0;
-                val += root.getBounds().getArea();
-                colors.put(key, val);
-            }
+                colors.add(color, root.getBounds().getArea());
         }
         
         for (int i = 0; i < root.getChildCount(); i++)
             computeRootStatistics(root.getChildArea(i));
     }
     
-    /**
-     * Converts a color to a number, 4 bits per color channel so that similar colors have similar numbers.
-     */
-    private int colorKey(Color color)
-    {
-        return (color.getRed() / 16) * 256 + (color.getGreen() / 16) * 16 + (color.getBlue() / 16);
-    }
-
     /**
      * Computes the effective (visible) background color of an area considering
      * transparency and parent areas.
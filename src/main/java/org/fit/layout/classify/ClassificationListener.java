@@ -0,0 +1,22 @@
+/**
+ * ClassificationListener.java
+ */
+package org.fit.layout.classify;
+
+import org.fit.layout.model.Area;
+
+/**
+ * A listener that receives the classification results of the individual areas when an area
+ * tree is classified in the streaming mode.
+ */
+public interface ClassificationListener
+{
+
+    /**
+     * Called when an area has been classified.
+     * @param area the classified area
+     * @param distribution the class probability distribution obtained for the area
+     */
+    public void areaClassified(Area area, double[] distribution);
+
+}
@@ -0,0 +1,31 @@
+/**
+ * ClassifierBackend.java
+ */
+package org.fit.layout.classify;
+
+import org.fit.layout.api.Service;
+
+import weka.classifiers.Classifier;
+
+/**
+ * A classifier implementation that may be used for the visual classification. The available
+ * backends are registered as services and they may be chosen by their ID.
+ */
+public interface ClassifierBackend extends Service
+{
+
+    /**
+     * Obtains the classifier options used when no options are specified.
+     * @return the default options string
+     */
+    public String getDefaultOptions();
+    
+    /**
+     * Creates a new untrained classifier.
+     * @param options the classifier options or {@code null} for the default options
+     * @return the new classifier
+     * @throws Exception when the classifier cannot be created (e.g. it is not available or the options are invalid)
+     */
+    public Classifier createClassifier(String options) throws Exception;
+    
+}
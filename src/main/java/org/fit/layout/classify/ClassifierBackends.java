@@ -0,0 +1,41 @@
+/**
+ * ClassifierBackends.java
+ */
+package org.fit.layout.classify;
+
+import java.util.Map;
+
+import org.fit.layout.api.ServiceManager;
+
+/**
+ * Access to the classifier backends registered as services.
+ */
+public class ClassifierBackends
+{
+    /** The ID of the backend used by default. */
+    public static final String DEFAULT_BACKEND = "FitLayout.Classifier.J48";
+    
+    private static Map<String, ClassifierBackend> backends;
+    
+    /**
+     * Obtains all the available backends.
+     * @return a map that assigns the backends to their IDs
+     */
+    public static synchronized Map<String, ClassifierBackend> getAvailableBackends()
+    {
+        if (backends == null)
+            backends = ServiceManager.loadServicesByType(ClassifierBackend.class);
+        return backends;
+    }
+    
+    /**
+     * Finds a backend by its ID.
+     * @param id the backend ID
+     * @return the backend or {@code null} when no such backend is available
+     */
+    public static ClassifierBackend findBackend(String id)
+    {
+        return getAvailableBackends().get(id);
+    }
+    
+}
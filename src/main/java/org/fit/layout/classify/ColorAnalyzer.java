@@ -6,10 +6,11 @@
 package org.fit.layout.classify;
 
 import java.awt.Color;
-import java.util.HashMap;
 
 import org.fit.layout.model.Area;
 import org.fit.layout.model.Box;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Foreground color analyzer. It gathers the statistics about the color usage in text (non-space characters).
@@ -18,10 +19,15 @@ import org.fit.layout.model.Box;
  */
 public class ColorAnalyzer
 {
-    /** Maps the color representation to the number of letters of that color in the document */
-    private HashMap<Integer, Integer> colors;
+    private static Logger log = LoggerFactory.getLogger(ColorAnalyzer.class);
+    
+    /** The numbers of letters of the individual colors in the document */
+    private ColorHistogram colors;
     private Area root;
     private int totalLength;
+    private AreaTreeIndex index;
+    /** Precomputed color percentages of the indexed areas or {@code null} when not available */
+    private double[] percentages;
     
     /**
      * Constructs a color analyzer.
@@ -29,11 +35,55 @@ public class ColorAnalyzer
      */
     public ColorAnalyzer(Area root)
     {
-        colors = new HashMap<Integer, Integer>();
+        this(root, new AreaTreeIndex(root));
+    }
+    
+    /**
+     * Constructs a color analyzer using an existing index of the area tree. The color percentages
+     * of all the indexed areas are precomputed.
+     * @param root the root area of the tree
+     * @param index the index of the tree
+     */
+    public ColorAnalyzer(Area root, AreaTreeIndex index)
+    {
+        this(root, new TextStatistics(index));
+    }
+    
+    /**
+     * Constructs a color analyzer using existing text statistics of the area tree. The color percentages
+     * of all the indexed areas are precomputed using the letter counts from the statistics.
+     * @param root the root area of the tree
+     * @param text the text statistics of the tree
+     */
+    public ColorAnalyzer(Area root, TextStatistics text)
+    {
+        colors = new ColorHistogram();
         this.root = root;
-        computeRootStatistics(this.root);
-        totalLength = letterLength(this.root.getText());
-        System.err.println("We have " + colors.size() + " different colors, " + totalLength + " total length");
+        this.index = text.getIndex();
+        int[] boxLetters = computeRootStatistics(index);
+        final int ri = text.indexOf(root);
+        //the precomputed values assume that the text of an area is the concatenation of its child texts
+        if (ri == 0)
+        {
+            totalLength = text.getLetterCount(0);
+            percentages = computePercentages(text, boxLetters);
+        }
+        else
+        {
+            totalLength = letterLength(this.root.getText());
+            log.warn("The area texts do not correspond to their child areas, not using the precomputed color statistics");
+        }
+        log.debug("We have {} different colors, {} total length", colors.getDistinctCount(), totalLength);
+    }
+    
+    /**
+     * Obtains the histogram of the text colors of the analyzed tree. The histograms of multiple trees
+     * may be merged for obtaining the statistics of a whole site.
+     * @return the histogram; it should not be modified
+     */
+    public ColorHistogram getHistogram()
+    {
+        return colors;
     }
     
     /**
@@ -47,8 +97,7 @@ public class ColorAnalyzer
             return 0;
         else
         {
-            Integer num = colors.get(colorKey(color));
-            if (num == null) num = 0;
+            final long num = colors.get(color);
             if (totalLength == 0)
                 return 0;
             else
@@ -63,6 +112,10 @@ public class ColorAnalyzer
      */
     public double getColorPercentage(Area node)
     {
+        final int ni = (percentages == null) ? -1 : index.indexOf(node);
+        if (ni != -1)
+            return percentages[ni];
+        
         int tlen = 0;
         double sum = 0;
         
@@ -92,25 +145,68 @@ public class ColorAnalyzer
     //==================================================================================================
     
     /**
-     * Recursively computes the statistics of the individual colors in a subtree.
-     * @param root the root of the subtree
+     * Computes the statistics of the individual colors in the indexed tree.
+     * @param index the tree index
+     * @return the numbers of letters in the individual boxes in the order of the indexed areas
      */
-    private void computeRootStatistics(Area root)
+    private int[] computeRootStatistics(AreaTreeIndex index)
     {
-    	for (Box box : root.getBoxes())
-    	{
-    		int len = letterLength(box.getText());
-    		if (len > 0)
-    		{
-    			int key = colorKey(box.getColor());
-    			Integer val = colors.get(key);
-    			if (val == null) val = 0;
-    			val += len;
-    			colors.put(key, val);
-    		}
-    	}
-        for (int i = 0; i < root.getChildCount(); i++)
-            computeRootStatistics(root.getChildArea(i));
+        final int n = index.size();
+        int cnt = 0;
+        for (int i = 0; i < n; i++)
+            cnt += index.getArea(i).getBoxes().size();
+        int[] boxLetters = new int[cnt];
+        int b = 0;
+        for (int i = 0; i < n; i++)
+        {
+            for (Box box : index.getArea(i).getBoxes())
+            {
+                int len = letterLength(box.getText());
+                boxLetters[b++] = len;
+                if (len > 0)
+                    colors.add(box.getColor(), len);
+            }
+        }
+        return boxLetters;
+    }
+    
+    /**
+     * Computes the color percentages of all the indexed areas bottom-up. The values are computed
+     * in the same way as by the recursive computation in {@link #getColorPercentage(Area)}.
+     * @param text the text statistics providing the numbers of letters in the individual areas
+     * @param boxLetters the numbers of letters in the individual boxes
+     * @return the color percentages
+     */
+    private double[] computePercentages(TextStatistics text, int[] boxLetters)
+    {
+        final int n = index.size();
+        double[] ret = new double[n];
+        int b = boxLetters.length;
+        for (int i = n - 1; i >= 0; i--)
+        {
+            Area area = index.getArea(i);
+            b -= area.getBoxes().size();
+            int tlen = 0;
+            double sum = 0;
+            int bi = b;
+            for (Box box : area.getBoxes())
+            {
+                int len = boxLetters[bi++];
+                if (len > 0)
+                {
+                    sum += getColorPercentage(box.getColor()) * len;
+                    tlen += len;
+                }
+            }
+            for (int c = index.getFirstChild(i); c != -1; c = index.getNextSibling(c))
+            {
+                int nlen = text.getLetterCount(c);
+                tlen += nlen;
+                sum += ret[c] * nlen;
+            }
+            ret[i] = (tlen == 0) ? 0 : sum / tlen;
+        }
+        return ret;
     }
     
     private int letterLength(String s)
@@ -122,12 +218,4 @@ public class ColorAnalyzer
         return len;
     }
 
-    /**
-     * Converts a color to a number, 4 bits per color channel so that similar colors have similar numbers.
-     */
-    private int colorKey(Color color)
-    {
-        return (color.getRed() / 16) * 256 + (color.getGreen() / 16) * 16 + (color.getBlue() / 16);
-    }
-
 }
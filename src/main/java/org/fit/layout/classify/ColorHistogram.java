@@ -0,0 +1,135 @@
+/**
+ * ColorHistogram.java
+ */
+package org.fit.layout.classify;
+
+import java.awt.Color;
+import java.io.Serializable;
+
+/**
+ * A histogram of colors quantized to the 12-bit keys (see {@link ColorKernel#histogramKey(int)}).
+ * The counts are stored in a primitive array indexed directly by the key. The histograms of multiple
+ * pages may be merged in order to obtain the color statistics of a whole site.
+ * <p>
+ * The histogram is not thread-safe. A histogram shared by multiple threads should be only read
+ * or accessed using external synchronization; {@link #snapshot()} may be used for obtaining
+ * an independent copy.
+ */
+public class ColorHistogram implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private long[] counts;
+    private long total;
+    private int distinct;
+
+    /**
+     * Creates an empty histogram.
+     */
+    public ColorHistogram()
+    {
+        counts = new long[ColorKernel.HISTOGRAM_KEYS];
+    }
+
+    /**
+     * Creates a copy of a histogram.
+     * @param src the source histogram
+     */
+    public ColorHistogram(ColorHistogram src)
+    {
+        counts = src.counts.clone();
+        total = src.total;
+        distinct = src.distinct;
+    }
+
+    /**
+     * Adds a weight to a color key.
+     * @param key the color key (0..{@link ColorKernel#HISTOGRAM_KEYS}-1)
+     * @param weight the weight to be added (e.g. the number of characters or pixels)
+     */
+    public void add(int key, long weight)
+    {
+        if (counts[key] == 0 && weight != 0)
+            distinct++;
+        counts[key] += weight;
+        total += weight;
+    }
+
+    /**
+     * Adds a weight to a color.
+     * @param color the color
+     * @param weight the weight to be added (e.g. the number of characters or pixels)
+     */
+    public void add(Color color, long weight)
+    {
+        add(ColorKernel.histogramKey(color), weight);
+    }
+
+    /**
+     * Obtains the count of a color key.
+     * @param key the color key (0..{@link ColorKernel#HISTOGRAM_KEYS}-1)
+     * @return the total weight of the key
+     */
+    public long get(int key)
+    {
+        return counts[key];
+    }
+
+    /**
+     * Obtains the count of a color.
+     * @param color the color
+     * @return the total weight of the color key
+     */
+    public long get(Color color)
+    {
+        return counts[ColorKernel.histogramKey(color)];
+    }
+
+    /**
+     * Obtains the sum of all the counts.
+     * @return the total weight
+     */
+    public long getTotal()
+    {
+        return total;
+    }
+
+    /**
+     * Obtains the number of different color keys present in the histogram.
+     * @return the number of keys with a non-zero count
+     */
+    public int getDistinctCount()
+    {
+        return distinct;
+    }
+
+    /**
+     * Adds all the counts of another histogram to this histogram.
+     * @param other the histogram to be merged
+     */
+    public void merge(ColorHistogram other)
+    {
+        for (int i = 0; i < counts.length; i++)
+        {
+            final long w = other.counts[i];
+            if (w != 0)
+                add(i, w);
+        }
+    }
+
+    /**
+     * Creates an independent copy of the current state of the histogram.
+     * @return the new histogram
+     */
+    public ColorHistogram snapshot()
+    {
+        return new ColorHistogram(this);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ColorHistogram[colors:" + distinct + " total:" + total + "]";
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * ColorKernel.java
+ */
+package org.fit.layout.classify;
+
+import java.awt.Color;
+
+/**
+ * Common color computations used by the color analyzers and the feature extractors. The colors are
+ * represented as packed ARGB integers (as returned by {@link Color#getRGB()}). The gamma linearization
+ * of the individual channels is precomputed in a table so that no {@code Math.pow()} is needed
+ * when computing the luminosity.
+ */
+public final class ColorKernel
+{
+    /** The number of distinct histogram keys (4 bits per channel) */
+    public static final int HISTOGRAM_KEYS = 4096;
+
+    /** Linearized channel values: (c / 255)^2.2 */
+    private static final double[] LINEAR = new double[256];
+    static {
+        for (int i = 0; i < 256; i++)
+            LINEAR[i] = Math.pow(i / 255.0, 2.2);
+    }
+
+    /** The luminosity used for a missing color (all the channels are taken as 255 without linearization) */
+    private static final double NULL_LUMINOSITY = luminosity(255.0, 255.0, 255.0);
+
+    private ColorKernel()
+    {
+    }
+
+    /**
+     * Computes the relative luminosity of a color.
+     * @param rgb the packed ARGB color
+     * @return the luminosity (0..1)
+     */
+    public static double luminosity(int rgb)
+    {
+        return luminosity(LINEAR[(rgb >> 16) & 0xff], LINEAR[(rgb >> 8) & 0xff], LINEAR[rgb & 0xff]);
+    }
+
+    /**
+     * Computes the relative luminosity of a color.
+     * @param c the color or {@code null}
+     * @return the luminosity (0..1); a value greater than 1 is returned for {@code null}
+     */
+    public static double luminosity(Color c)
+    {
+        if (c == null)
+            return NULL_LUMINOSITY;
+        else
+            return luminosity(c.getRGB());
+    }
+
+    /**
+     * Computes the contrast ratio of two luminosities.
+     * @param l1 the first luminosity
+     * @param l2 the second luminosity
+     * @return the contrast ratio (1..21 for valid luminosities)
+     */
+    public static double contrast(double l1, double l2)
+    {
+        if (l1 > l2)
+            return (l1 + 0.05) / (l2 + 0.05);
+        else
+            return (l2 + 0.05) / (l1 + 0.05);
+    }
+
+    /**
+     * Converts a color to a histogram key, 4 bits per color channel so that similar colors have similar keys.
+     * @param rgb the packed ARGB color
+     * @return the key (0..{@link #HISTOGRAM_KEYS}-1)
+     */
+    public static int histogramKey(int rgb)
+    {
+        return ((rgb >> 12) & 0xf00) | ((rgb >> 8) & 0xf0) | ((rgb >> 4) & 0xf);
+    }
+
+    /**
+     * Converts a color to a histogram key, 4 bits per color channel so that similar colors have similar keys.
+     * @param color the color
+     * @return the key (0..{@link #HISTOGRAM_KEYS}-1)
+     */
+    public static int histogramKey(Color color)
+    {
+        return histogramKey(color.getRGB());
+    }
+
+    //==================================================================
+
+    private static double luminosity(double lr, double lg, double lb)
+    {
+        return lr * 0.2126 +  lg * 0.7152 + lb * 0.0722;
+    }
+
+}
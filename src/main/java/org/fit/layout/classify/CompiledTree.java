@@ -0,0 +1,556 @@
+/**
+ * CompiledTree.java
+ */
+package org.fit.layout.classify;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.meta.FilteredClassifier;
+import weka.classifiers.trees.J48;
+import weka.classifiers.trees.j48.C45Split;
+import weka.classifiers.trees.j48.ClassifierSplitModel;
+import weka.classifiers.trees.j48.ClassifierTree;
+import weka.classifiers.trees.j48.Distribution;
+import weka.classifiers.trees.j48.NoSplit;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.filters.Filter;
+
+/**
+ * A trained J48 decision tree compiled to flat primitive arrays. The tree evaluates the feature
+ * rows directly without any Weka objects and without allocating memory. When the tree has been
+ * trained with a per-attribute linear filter (such as {@code Standardize}), the filter is folded
+ * into the split thresholds so that the raw feature values may be used.
+ * <p>
+ * The class distributions produced are the same as the ones produced by the original classifier;
+ * {@link #verify(Classifier, Instances)} may be used for checking this on a data set.
+ */
+public class CompiledTree implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+    private static Logger log = LoggerFactory.getLogger(CompiledTree.class);
+
+    /** Maximal difference of the probabilities accepted by {@link #verify(Classifier, Instances)}. */
+    public static final double VERIFY_TOLERANCE = 1e-9;
+
+    /** The factor used for increasing the distance of the probes when the filter output does not change */
+    private static final double PROBE_STEP_FACTOR = 1024.0;
+    /** The maximal distance of the filter probes */
+    private static final double MAX_PROBE_STEP = 1e300;
+
+    private static final byte LEAF = 0;
+    private static final byte EMPTY = 1; //a leaf created for an empty son in the original tree
+    private static final byte NUMERIC = 2;
+    private static final byte NOMINAL = 3;
+
+    private int numClasses;
+    private int numNodes;
+    /** Node types */
+    private byte[] type;
+    /** Tested attribute indices */
+    private int[] attr;
+    /** The value must be lower than the threshold for choosing the first child */
+    private double[] threshold;
+    /** Index of the first child in {@code children} */
+    private int[] childStart;
+    /** Number of children */
+    private int[] childCount;
+    /** Child node indices */
+    private int[] children;
+    /** Child weights used for the missing values */
+    private double[] childWeight;
+    /** Class distributions of the leaves (numClasses values per node) */
+    private double[] dist;
+
+    //building state
+    private transient int childCnt;
+
+    private CompiledTree(int numClasses)
+    {
+        this.numClasses = numClasses;
+        type = new byte[16];
+        attr = new int[16];
+        threshold = new double[16];
+        childStart = new int[16];
+        childCount = new int[16];
+        children = new int[16];
+        childWeight = new double[16];
+        dist = new double[16 * numClasses];
+    }
+
+    /**
+     * Compiles a trained classifier. The classifier must be either a {@link J48} tree or
+     * a {@link FilteredClassifier} that combines a J48 tree with a per-attribute linear filter.
+     * @param cls the trained classifier
+     * @param header the header of the training data
+     * @return the compiled tree or {@code null} when the classifier cannot be compiled
+     */
+    public static CompiledTree compile(Classifier cls, Instances header)
+    {
+        try
+        {
+            double[] scale = null;
+            double[] shift = null;
+            if (cls instanceof FilteredClassifier)
+            {
+                FilteredClassifier fc = (FilteredClassifier) cls;
+                double[][] transform = probeFilter(fc.getFilter(), header);
+                if (transform == null)
+                    return null;
+                scale = transform[0];
+                shift = transform[1];
+                cls = fc.getClassifier();
+            }
+            if (!(cls instanceof J48) || ((J48) cls).getUseLaplace())
+                return null;
+
+            ClassifierTree root = (ClassifierTree) getField(J48.class, "m_root", cls);
+            if (root == null)
+                return null;
+
+            CompiledTree ret = new CompiledTree(header.numClasses());
+            ret.childCnt = 0;
+            ret.compileNode(root, header, scale, shift);
+            ret.trim();
+            return ret;
+
+        } catch (UnsupportedOperationException e) {
+            log.debug("Cannot compile the classifier: {}", e.getMessage());
+            return null;
+        } catch (Exception e) {
+            log.warn("Couldn't compile the classifier: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    public int getNumClasses()
+    {
+        return numClasses;
+    }
+
+    public int getNodeCount()
+    {
+        return numNodes;
+    }
+
+    /**
+     * Obtains the indices of all the attributes tested by the tree.
+     * @return a sorted array of attribute indices
+     */
+    public int[] getUsedAttributes()
+    {
+        boolean[] used = new boolean[0];
+        int cnt = 0;
+        for (int i = 0; i < numNodes; i++)
+        {
+            if (type[i] == NUMERIC || type[i] == NOMINAL)
+            {
+                if (attr[i] >= used.length)
+                    used = Arrays.copyOf(used, attr[i] + 1);
+                if (!used[attr[i]])
+                {
+                    used[attr[i]] = true;
+                    cnt++;
+                }
+            }
+        }
+        int[] ret = new int[cnt];
+        int j = 0;
+        for (int i = 0; i < used.length; i++)
+            if (used[i]) ret[j++] = i;
+        return ret;
+    }
+
+    /**
+     * Computes the class probability distribution for a feature row. The missing values are
+     * represented by {@code NaN}.
+     * @param row the array containing the feature values (attribute values in the training data order)
+     * @param offset the index of the first value of the row in the array
+     * @param out the destination array for the class probabilities
+     */
+    public void distribution(double[] row, int offset, double[] out)
+    {
+        int node = 0;
+        while (type[node] >= NUMERIC)
+        {
+            final int s = subset(node, row, offset);
+            if (s == -1)
+            {
+                //missing value, use the weighted sum of all the branches like J48
+                for (int c = 0; c < numClasses; c++)
+                    out[c] = probs(0, c, row, offset, 1.0);
+                return;
+            }
+            node = children[childStart[node] + s];
+        }
+        System.arraycopy(dist, node * numClasses, out, 0, numClasses);
+    }
+
+    /**
+     * Computes the class probability distribution using a feature source. Only the values of
+     * the attributes tested on the path of the tree are requested from the source.
+     * @param source the source of the feature values (attribute values in the training data order)
+     * @param out the destination array for the class probabilities
+     */
+    public void distribution(FeatureSource source, double[] out)
+    {
+        int node = 0;
+        while (type[node] >= NUMERIC)
+        {
+            final int s = subset(node, source.getValue(attr[node]));
+            if (s == -1)
+            {
+                //missing value, use the weighted sum of all the branches like J48
+                for (int c = 0; c < numClasses; c++)
+                    out[c] = probs(0, c, source, 1.0);
+                return;
+            }
+            node = children[childStart[node] + s];
+        }
+        System.arraycopy(dist, node * numClasses, out, 0, numClasses);
+    }
+
+    /**
+     * Computes the class probability distribution for a feature row.
+     * @param row the feature values in the training data attribute order
+     * @return the class probabilities
+     */
+    public double[] distribution(double[] row)
+    {
+        double[] ret = new double[numClasses];
+        distribution(row, 0, ret);
+        return ret;
+    }
+
+    /**
+     * Computes the class probability distribution for an instance.
+     * @param instance the instance to be classified
+     * @return the class probabilities
+     */
+    public double[] distribution(Instance instance)
+    {
+        return distribution(instance.toDoubleArray());
+    }
+
+    /**
+     * Compares the class distributions produced by the compiled tree with the distributions produced by
+     * the original classifier.
+     * @param cls the original classifier
+     * @param data the data set to be used for comparison
+     * @return the number of instances that obtained a different distribution
+     * @throws Exception when the original classifier fails
+     */
+    public int verify(Classifier cls, Instances data) throws Exception
+    {
+        int ret = 0;
+        double[] out = new double[numClasses];
+        for (int i = 0; i < data.numInstances(); i++)
+        {
+            Instance inst = data.instance(i);
+            double[] expected = cls.distributionForInstance(inst);
+            distribution(inst.toDoubleArray(), 0, out);
+            for (int c = 0; c < numClasses; c++)
+            {
+                if (Math.abs(expected[c] - out[c]) > VERIFY_TOLERANCE)
+                {
+                    ret++;
+                    break;
+                }
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CompiledTree[nodes:" + numNodes + " classes:" + numClasses + "]";
+    }
+
+    //==================================================================
+
+    /**
+     * Chooses the branch for the given node like {@code C45Split.whichSubset()}.
+     * @return the child index or -1 for missing (or unknown) values
+     */
+    private int subset(int node, double[] row, int offset)
+    {
+        return subset(node, row[offset + attr[node]]);
+    }
+
+    /**
+     * Chooses the branch for the given node and the value of the tested attribute.
+     * @return the child index or -1 for missing (or unknown) values
+     */
+    private int subset(int node, double v)
+    {
+        if (Double.isNaN(v))
+            return -1;
+        else if (type[node] == NUMERIC)
+            return (v < threshold[node]) ? 0 : 1;
+        else
+        {
+            final int s = (int) v;
+            return (s >= 0 && s < childCount[node]) ? s : -1;
+        }
+    }
+
+    /**
+     * Computes the class probability like {@code ClassifierTree.getProbs()}.
+     */
+    private double probs(int node, int cls, double[] row, int offset, double weight)
+    {
+        if (type[node] == LEAF || type[node] == EMPTY)
+            return weight * dist[node * numClasses + cls];
+        else
+        {
+            final int s = subset(node, row, offset);
+            if (s == -1)
+            {
+                double prob = 0;
+                for (int i = childStart[node]; i < childStart[node] + childCount[node]; i++)
+                {
+                    if (type[children[i]] != EMPTY)
+                        prob += probs(children[i], cls, row, offset, childWeight[i] * weight);
+                }
+                return prob;
+            }
+            else
+                return probs(children[childStart[node] + s], cls, row, offset, weight);
+        }
+    }
+
+    /**
+     * Computes the class probability like {@code ClassifierTree.getProbs()} using a feature source.
+     */
+    private double probs(int node, int cls, FeatureSource source, double weight)
+    {
+        if (type[node] == LEAF || type[node] == EMPTY)
+            return weight * dist[node * numClasses + cls];
+        else
+        {
+            final int s = subset(node, source.getValue(attr[node]));
+            if (s == -1)
+            {
+                double prob = 0;
+                for (int i = childStart[node]; i < childStart[node] + childCount[node]; i++)
+                {
+                    if (type[children[i]] != EMPTY)
+                        prob += probs(children[i], cls, source, childWeight[i] * weight);
+                }
+                return prob;
+            }
+            else
+                return probs(children[childStart[node] + s], cls, source, weight);
+        }
+    }
+
+    private int compileNode(ClassifierTree tree, Instances header, double[] scale, double[] shift) throws Exception
+    {
+        final int node = addNode();
+        final ClassifierSplitModel model = (ClassifierSplitModel) getField(ClassifierTree.class, "m_localModel", tree);
+        final boolean leaf = (Boolean) getField(ClassifierTree.class, "m_isLeaf", tree);
+        if (leaf)
+        {
+            if (!(model instanceof NoSplit))
+                throw new UnsupportedOperationException("unsupported leaf model " + model.getClass().getName());
+            type[node] = LEAF;
+            Distribution d = model.distribution();
+            for (int c = 0; c < numClasses; c++)
+                dist[node * numClasses + c] = d.prob(c);
+        }
+        else
+        {
+            if (!(model instanceof C45Split))
+                throw new UnsupportedOperationException("unsupported split model " + model.getClass().getName());
+            final int att = (Integer) getField(C45Split.class, "m_attIndex", model);
+            final double split = (Double) getField(C45Split.class, "m_splitPoint", model);
+            final Distribution d = model.distribution();
+            final int nsub = model.numSubsets();
+            attr[node] = att;
+            if (header.attribute(att).isNominal())
+                type[node] = NOMINAL;
+            else if (header.attribute(att).isNumeric())
+            {
+                type[node] = NUMERIC;
+                //the tree tests (scale * v + shift) - split < SMALL, i.e. v < (split + SMALL - shift) / scale
+                if (scale != null)
+                    threshold[node] = (split + Utils.SMALL - shift[att]) / scale[att];
+                else
+                    threshold[node] = split + Utils.SMALL;
+            }
+            else
+                throw new UnsupportedOperationException("unsupported attribute type of " + header.attribute(att).name());
+
+            final ClassifierTree[] sons = (ClassifierTree[]) getField(ClassifierTree.class, "m_sons", tree);
+            final int start = reserveChildren(nsub);
+            childStart[node] = start;
+            childCount[node] = nsub;
+            for (int i = 0; i < nsub; i++)
+            {
+                childWeight[start + i] = d.perBag(i) / d.total();
+                final boolean empty = (Boolean) getField(ClassifierTree.class, "m_isEmpty", sons[i]);
+                if (empty)
+                {
+                    //J48 uses the distribution of the split for the empty sons
+                    final int enode = addNode();
+                    type[enode] = EMPTY;
+                    for (int c = 0; c < numClasses; c++)
+                    {
+                        if (Utils.gr(d.perBag(i), 0))
+                            dist[enode * numClasses + c] = d.prob(c, i);
+                        else
+                            dist[enode * numClasses + c] = d.prob(c);
+                    }
+                    children[start + i] = enode;
+                }
+                else
+                {
+                    //the arrays may be reallocated during the recursive call
+                    final int child = compileNode(sons[i], header, scale, shift);
+                    children[start + i] = child;
+                }
+            }
+        }
+        return node;
+    }
+
+    private int addNode()
+    {
+        if (numNodes == type.length)
+        {
+            final int nsize = type.length * 2;
+            type = Arrays.copyOf(type, nsize);
+            attr = Arrays.copyOf(attr, nsize);
+            threshold = Arrays.copyOf(threshold, nsize);
+            childStart = Arrays.copyOf(childStart, nsize);
+            childCount = Arrays.copyOf(childCount, nsize);
+            dist = Arrays.copyOf(dist, nsize * numClasses);
+        }
+        attr[numNodes] = -1;
+        return numNodes++;
+    }
+
+    private int reserveChildren(int cnt)
+    {
+        while (childCnt + cnt > children.length)
+        {
+            children = Arrays.copyOf(children, children.length * 2);
+            childWeight = Arrays.copyOf(childWeight, childWeight.length * 2);
+        }
+        final int ret = childCnt;
+        childCnt += cnt;
+        return ret;
+    }
+
+    private void trim()
+    {
+        type = Arrays.copyOf(type, numNodes);
+        attr = Arrays.copyOf(attr, numNodes);
+        threshold = Arrays.copyOf(threshold, numNodes);
+        childStart = Arrays.copyOf(childStart, numNodes);
+        childCount = Arrays.copyOf(childCount, numNodes);
+        dist = Arrays.copyOf(dist, numNodes * numClasses);
+        children = Arrays.copyOf(children, childCnt);
+        childWeight = Arrays.copyOf(childWeight, childCnt);
+    }
+
+    /**
+     * Finds the linear transformation {@code scale * v + shift} applied by the filter to the individual
+     * attribute values by filtering several probe instances. The probes are spread further apart for the
+     * attributes whose filtered value does not change between the probes (e.g. an attribute with extreme
+     * outliers standardized to a huge deviation).
+     * @return the scale and shift arrays or {@code null} when the filter is not a per-attribute linear filter
+     */
+    private static double[][] probeFilter(Filter filter, Instances header) throws Exception
+    {
+        final double[] out0 = filterProbe(filter, header, 0.0);
+        if (out0 == null)
+            return null;
+
+        final int n = header.numAttributes();
+        final double[] scale = new double[n];
+        final double[] shift = new double[n];
+        final boolean[] pending = new boolean[n];
+        int pendingCnt = 0;
+        for (int i = 0; i < n; i++)
+        {
+            if (header.attribute(i).isNumeric() && i != header.classIndex())
+            {
+                pending[i] = true;
+                pendingCnt++;
+            }
+            else
+            {
+                if (out0[i] != 0.0)
+                    return null; //nominal values changed
+                scale[i] = 1.0;
+                shift[i] = 0.0;
+            }
+        }
+
+        for (double step = 1.0; pendingCnt > 0 && step < MAX_PROBE_STEP; step *= PROBE_STEP_FACTOR)
+        {
+            final double[] out1 = filterProbe(filter, header, step);
+            final double[] out2 = filterProbe(filter, header, 2.0 * step);
+            if (out1 == null || out2 == null)
+                return null;
+            for (int i = 0; i < n; i++)
+            {
+                if (pending[i])
+                {
+                    final double d1 = out1[i] - out0[i];
+                    final double d2 = out2[i] - out1[i];
+                    if (d1 > 0)
+                    {
+                        if (Math.abs(d2 - d1) > 1e-9 * Math.max(1.0, d1))
+                            return null; //not a linear transformation
+                        scale[i] = d1 / step;
+                        shift[i] = out0[i];
+                        pending[i] = false;
+                        pendingCnt--;
+                    }
+                    else if (d1 < 0 || d2 != 0)
+                        return null; //not an increasing linear transformation
+                    //otherwise the step is below the resolution of the filtered value, try a greater one
+                }
+                else if (step == 1.0 && out1[i] != 0.0)
+                    return null; //nominal values changed
+            }
+        }
+        if (pendingCnt > 0)
+            return null; //constant values
+        return new double[][] {scale, shift};
+    }
+
+    private static double[] filterProbe(Filter filter, Instances header, double value) throws Exception
+    {
+        final double[] vals = new double[header.numAttributes()];
+        for (int i = 0; i < vals.length; i++)
+            vals[i] = (header.attribute(i).isNumeric() && i != header.classIndex()) ? value : 0.0;
+        final Instance inst = new DenseInstance(1.0, vals);
+        inst.setDataset(header);
+        if (!filter.input(inst))
+            filter.batchFinished();
+        final Instance out = filter.output();
+        if (out == null || out.numAttributes() != vals.length)
+            return null;
+        return out.toDoubleArray();
+    }
+
+    private static Object getField(Class<?> cls, String name, Object obj) throws Exception
+    {
+        Field f = cls.getDeclaredField(name);
+        f.setAccessible(true);
+        return f.get(obj);
+    }
+
+}
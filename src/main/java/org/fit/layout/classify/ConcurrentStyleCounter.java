@@ -0,0 +1,144 @@
+/**
+ * ConcurrentStyleCounter.java
+ */
+package org.fit.layout.classify;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe counter of style occurences that may be shared by multiple threads, e.g. for gathering
+ * the style statistics of a whole site. Each style has its own {@link LongAdder} so that the threads
+ * counting the same (frequent) style do not contend on a single counter and no global lock is used.
+ * <p>
+ * The recommended use is to count the styles of each page in a local {@link StyleCounter} and to
+ * {@link #merge(StyleCounter)} the page counters to the shared counter. The statistics such as the most
+ * frequent styles are obtained from a {@link #snapshot()}, which reflects the counts at some point during
+ * the snapshot creation when the counter is being updated concurrently.
+ */
+public class ConcurrentStyleCounter<T>
+{
+    /** A placeholder for the {@code null} style that cannot be used as a map key */
+    private static final Object NULL_STYLE = new Object();
+
+    private ConcurrentMap<Object, LongAdder> styles;
+
+    /**
+     * Creates an empty style counter.
+     */
+    public ConcurrentStyleCounter()
+    {
+        styles = new ConcurrentHashMap<Object, LongAdder>();
+    }
+
+    /**
+     * Adds a new occurence to the counter.
+     * @param style The style to be added.
+     */
+    public void add(T style)
+    {
+        getCounter(style).increment();
+    }
+
+    /**
+     * Adds multiple occurences of a style to the counter.
+     * @param style The style to be added.
+     * @param count The number of occurences to be added. A zero count is ignored; the style is not registered.
+     * @throws IllegalArgumentException when the count is negative
+     */
+    public void add(T style, long count)
+    {
+        if (count < 0)
+            throw new IllegalArgumentException("Negative style count " + count);
+        if (count != 0)
+            getCounter(style).add(count);
+    }
+
+    /**
+     * Adds all the occurences registered in another counter to this counter.
+     * @param other the counter to be merged
+     */
+    public void merge(StyleCounter<? extends T> other)
+    {
+        for (Map.Entry<? extends T, Integer> entry : other.getAll().entrySet())
+            add(entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * Adds all the occurences registered in another concurrent counter to this counter.
+     * @param other the counter to be merged
+     */
+    public void merge(ConcurrentStyleCounter<? extends T> other)
+    {
+        for (Map.Entry<Object, LongAdder> entry : other.styles.entrySet())
+            getCounter(entry.getKey()).add(entry.getValue().sum());
+    }
+
+    /**
+     * Obtains total registered number of occurences of the given style.
+     * @param style the style whose number of occurences should be returned
+     * @return the number of occurences
+     */
+    public long getCount(T style)
+    {
+        LongAdder cnt = styles.get(key(style));
+        return (cnt == null) ? 0 : cnt.sum();
+    }
+
+    /**
+     * Obtains the number of distinct styles registered.
+     * @return the number of styles
+     */
+    public int getDistinctCount()
+    {
+        return styles.size();
+    }
+
+    /**
+     * Creates a non-concurrent copy of the current counts that may be used for obtaining
+     * the style statistics.
+     * @return the new counter; the counts greater than {@code Integer.MAX_VALUE} are saturated
+     */
+    @SuppressWarnings("unchecked")
+    public StyleCounter<T> snapshot()
+    {
+        StyleCounter<T> ret = new StyleCounter<T>();
+        for (Map.Entry<Object, LongAdder> entry : styles.entrySet())
+        {
+            final Object style = entry.getKey();
+            final long cnt = entry.getValue().sum();
+            ret.add((style == NULL_STYLE) ? null : (T) style, (int) Math.min(cnt, Integer.MAX_VALUE));
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString()
+    {
+        return snapshot().toString();
+    }
+
+    //==============================================================================================
+
+    private static Object key(Object style)
+    {
+        return (style == null) ? NULL_STYLE : style;
+    }
+
+    private LongAdder getCounter(Object style)
+    {
+        final Object key = key(style);
+        LongAdder ret = styles.get(key);
+        if (ret == null)
+        {
+            final LongAdder created = new LongAdder();
+            ret = styles.putIfAbsent(key, created);
+            if (ret == null)
+                ret = created;
+        }
+        return ret;
+    }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * ConfidencePruning.java
+ */
+package org.fit.layout.classify;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pruning rule for the area tree classification. When an area is classified to the given
+ * class (typically {@code none}) with a sufficient confidence, its descendants are not classified
+ * at all. The numbers of the visited and skipped areas are counted so that the speed-up may be
+ * compared with the change of the classification accuracy.
+ */
+public class ConfidencePruning
+{
+    private int classIndex;
+    private double threshold;
+    private AtomicLong visited;
+    private AtomicLong skipped;
+
+    /**
+     * Creates the pruning rule.
+     * @param classIndex the index of the class that causes the pruning
+     * @param threshold the minimal probability of the class that causes the pruning
+     */
+    public ConfidencePruning(int classIndex, double threshold)
+    {
+        this.classIndex = classIndex;
+        this.threshold = threshold;
+        visited = new AtomicLong();
+        skipped = new AtomicLong();
+    }
+
+    /**
+     * Creates the pruning rule for the given class name.
+     * @param model the model used for the classification
+     * @param className the name of the class that causes the pruning
+     * @param threshold the minimal probability of the class that causes the pruning
+     * @return the pruning rule or {@code null} when the model does not know the class
+     */
+    public static ConfidencePruning forClass(TrainedModel model, String className, double threshold)
+    {
+        int index = model.getHeader().classAttribute().indexOfValue(className);
+        return (index == -1) ? null : new ConfidencePruning(index, threshold);
+    }
+
+    public int getClassIndex()
+    {
+        return classIndex;
+    }
+
+    public double getThreshold()
+    {
+        return threshold;
+    }
+
+    /**
+     * Decides whether the descendants of an area should be skipped.
+     * @param distribution the class distribution obtained for the area
+     * @return {@code true} when the area has been assigned the pruning class with a sufficient probability
+     */
+    public boolean prune(double[] distribution)
+    {
+        return distribution != null
+                && VisualClassifier.getPredictedClass(distribution) == classIndex
+                && distribution[classIndex] >= threshold;
+    }
+
+    /**
+     * Obtains the number of classified areas.
+     * @return the number of areas
+     */
+    public long getVisitedCount()
+    {
+        return visited.get();
+    }
+
+    /**
+     * Obtains the number of areas that have not been classified because of pruning.
+     * @return the number of areas
+     */
+    public long getSkippedCount()
+    {
+        return skipped.get();
+    }
+
+    /**
+     * Resets the counters.
+     */
+    public void reset()
+    {
+        visited.set(0);
+        skipped.set(0);
+    }
+
+    void addVisited()
+    {
+        visited.incrementAndGet();
+    }
+
+    void addSkipped(long count)
+    {
+        skipped.addAndGet(count);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ConfidencePruning[class:" + classIndex + " threshold:" + threshold
+                + " visited:" + getVisitedCount() + " skipped:" + getSkippedCount() + "]";
+    }
+
+}
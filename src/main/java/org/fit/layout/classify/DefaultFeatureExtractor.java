@@ -25,7 +25,11 @@ public abstract class DefaultFeatureExtractor implements FeatureExtractor
         InputStream is = DefaultFeatureExtractor.class.getResourceAsStream(filename);
         DataSource source = new DataSource(is);
         Instances tdata = source.getDataSet();
-        tdata.setClassIndex(0);
+        //use the 'class' attribute when present (the first attribute is usually the area id)
+        if (tdata.attribute("class") != null)
+            tdata.setClass(tdata.attribute("class"));
+        else
+            tdata.setClassIndex(0);
         return tdata;
     }
     
@@ -0,0 +1,99 @@
+/**
+ * Feature.java
+ */
+package org.fit.layout.classify;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.fit.layout.model.Area;
+
+/**
+ * A declaration of a single feature (a data set attribute) computed by a feature extractor.
+ * Each feature declares its name, its estimated cost and the features it depends on. The values
+ * of the dependencies are always computed before the feature itself so that they may be read from
+ * the feature row.
+ */
+public abstract class Feature
+{
+    private String name;
+    private List<String> values;
+    private int cost;
+    private List<String> dependencies;
+
+    /**
+     * Declares a numeric feature.
+     * @param name the feature (attribute) name
+     * @param cost the estimated relative cost of computing the feature for a single area
+     * @param dependencies the names of the features whose values are used for computing this feature
+     */
+    public Feature(String name, int cost, String... dependencies)
+    {
+        this(name, null, cost, dependencies);
+    }
+
+    /**
+     * Declares a nominal feature.
+     * @param name the feature (attribute) name
+     * @param values the nominal values or {@code null} for a numeric feature
+     * @param cost the estimated relative cost of computing the feature for a single area
+     * @param dependencies the names of the features whose values are used for computing this feature
+     */
+    public Feature(String name, String[] values, int cost, String... dependencies)
+    {
+        this.name = name;
+        this.values = (values == null) ? null : Collections.unmodifiableList(Arrays.asList(values));
+        this.cost = cost;
+        this.dependencies = Collections.unmodifiableList(Arrays.asList(dependencies));
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Checks whether the feature is nominal.
+     * @return {@code true} for nominal features, {@code false} for numeric features
+     */
+    public boolean isNominal()
+    {
+        return values != null;
+    }
+
+    /**
+     * Obtains the nominal values of the feature.
+     * @return the list of values or {@code null} for numeric features
+     */
+    public List<String> getValues()
+    {
+        return values;
+    }
+
+    public int getCost()
+    {
+        return cost;
+    }
+
+    public List<String> getDependencies()
+    {
+        return dependencies;
+    }
+
+    /**
+     * Computes the feature value for an area.
+     * @param area the area
+     * @param row the feature row that already contains the values of the dependencies
+     * @param offset the index of the first value of the row
+     * @return the feature value (the value index for nominal features) or {@code NaN} for a missing value
+     */
+    public abstract double compute(Area area, double[] row, int offset);
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+
+}
@@ -0,0 +1,173 @@
+/**
+ * FeatureMatrix.java
+ */
+package org.fit.layout.classify;
+
+import java.util.Arrays;
+
+import org.fit.layout.model.Area;
+
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * The feature values of all the areas of a tree stored in a single contiguous array. There is one row
+ * for each area in the pre-order of the {@link AreaTreeIndex} and one column for each feature (the data set
+ * attributes in the data set order). The rows may be evaluated directly by the compiled models (see {@link TrainedModel#distribution(double[], int)})
+ * so that no per-area objects are created; the Weka instances are created on demand only.
+ */
+public class FeatureMatrix
+{
+    private AreaTreeIndex index;
+    private int columns;
+    private double[] data;
+
+    /**
+     * Creates an empty matrix. All the values are initialized as missing.
+     * @param index the index of the area tree
+     * @param columns the number of columns (attributes)
+     */
+    public FeatureMatrix(AreaTreeIndex index, int columns)
+    {
+        this.index = index;
+        this.columns = columns;
+        data = new double[index.size() * columns];
+        Arrays.fill(data, Double.NaN);
+    }
+
+    /**
+     * Creates a matrix and extracts the features of all the areas of the tree.
+     * @param index the index of the area tree
+     * @param features the feature extractor initialized for the tree
+     * @param dataset the data set that defines the attributes
+     * @return the matrix
+     */
+    public static FeatureMatrix extract(AreaTreeIndex index, FeatureExtractor features, Instances dataset)
+    {
+        FeatureMatrix ret = new FeatureMatrix(index, getRowSize(features, dataset));
+        for (int i = 0; i < index.size(); i++)
+            ret.extractRow(i, features, dataset);
+        return ret;
+    }
+
+    /**
+     * Checks whether the extractor is able to fill the matrix rows directly.
+     * @param features the feature extractor
+     * @param dataset the data set that defines the attributes
+     * @return {@code true} when the extractor is a {@link FeatureRowExtractor} that produces
+     * the values of all the data set attributes
+     */
+    public static boolean isRowExtractor(FeatureExtractor features, Instances dataset)
+    {
+        return (features instanceof FeatureRowExtractor)
+                && ((FeatureRowExtractor) features).getFeatureCount() >= dataset.numAttributes();
+    }
+
+    /**
+     * Obtains the number of values of a row produced by the feature extractor. This is the
+     * feature count for the row extractors and the number of data set attributes otherwise.
+     * @param features the feature extractor
+     * @param dataset the data set that defines the attributes
+     * @return the row size
+     */
+    public static int getRowSize(FeatureExtractor features, Instances dataset)
+    {
+        if (isRowExtractor(features, dataset))
+            return ((FeatureRowExtractor) features).getFeatureCount();
+        else
+            return dataset.numAttributes();
+    }
+
+    public AreaTreeIndex getIndex()
+    {
+        return index;
+    }
+
+    public int getRowCount()
+    {
+        return index.size();
+    }
+
+    public int getColumnCount()
+    {
+        return columns;
+    }
+
+    /**
+     * Obtains the array that contains the matrix values. The values of the row {@code r} start
+     * at {@code getOffset(r)}.
+     * @return the value array
+     */
+    public double[] getData()
+    {
+        return data;
+    }
+
+    /**
+     * Obtains the position of the first value of a row in the data array.
+     * @param row the row (area) index
+     * @return the offset
+     */
+    public int getOffset(int row)
+    {
+        return row * columns;
+    }
+
+    public double get(int row, int column)
+    {
+        return data[row * columns + column];
+    }
+
+    public void set(int row, int column, double value)
+    {
+        data[row * columns + column] = value;
+    }
+
+    /**
+     * Extracts the features of an area and stores them to the corresponding row. Different rows may
+     * be extracted concurrently when the feature extractor allows it.
+     * @param row the row (area) index
+     * @param features the feature extractor initialized for the tree
+     * @param dataset the data set that defines the attributes
+     */
+    public void extractRow(int row, FeatureExtractor features, Instances dataset)
+    {
+        final Area area = index.getArea(row);
+        if (isRowExtractor(features, dataset))
+            ((FeatureRowExtractor) features).getAreaFeatures(area, data, row * columns);
+        else
+        {
+            final Instance inst = features.getAreaFeatures(area, dataset);
+            for (int i = 0; i < columns; i++)
+                data[row * columns + i] = inst.value(i);
+        }
+    }
+
+    /**
+     * Creates a Weka instance that contains the values of a row.
+     * @param row the row (area) index
+     * @param dataset the data set the created instance should belong to
+     * @return the instance
+     */
+    public Instance getInstance(int row, Instances dataset)
+    {
+        Instance ret = new DenseInstance(1.0, Arrays.copyOfRange(data, row * columns, (row + 1) * columns));
+        ret.setDataset(dataset);
+        return ret;
+    }
+
+    /**
+     * Creates a data set that contains all the rows of the matrix.
+     * @param header the data set that defines the attributes
+     * @return the new data set
+     */
+    public Instances toInstances(Instances header)
+    {
+        Instances ret = new Instances(header, index.size());
+        for (int i = 0; i < index.size(); i++)
+            ret.add(getInstance(i, ret));
+        return ret;
+    }
+
+}
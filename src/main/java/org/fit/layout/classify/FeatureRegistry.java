@@ -0,0 +1,175 @@
+/**
+ * FeatureRegistry.java
+ */
+package org.fit.layout.classify;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fit.layout.model.Area;
+
+import weka.core.Attribute;
+import weka.core.Instances;
+
+/**
+ * An ordered set of features computed by a feature extractor. The order of the features corresponds
+ * to the order of the attributes in the data set header that is generated from the registry. The features
+ * must be registered after all their dependencies so that the registry order is a valid computation order.
+ * <p>
+ * When it is known which attributes are actually used by a model (see {@link CompiledTree#getUsedAttributes()}),
+ * the remaining features may be skipped during the extraction (see {@link #select(int[])}).
+ */
+public class FeatureRegistry
+{
+    private String relation;
+    private String classAttribute;
+    private List<Feature> features;
+    private Map<String, Integer> indices;
+    private List<int[]> dependencyIndices;
+    private Instances header;
+
+    /**
+     * Creates an empty registry.
+     * @param relation the relation name used in the generated data set header
+     * @param classAttribute the name of the class attribute or {@code null} when there is no class attribute
+     */
+    public FeatureRegistry(String relation, String classAttribute)
+    {
+        this.relation = relation;
+        this.classAttribute = classAttribute;
+        features = new ArrayList<Feature>();
+        indices = new HashMap<String, Integer>();
+        dependencyIndices = new ArrayList<int[]>();
+    }
+
+    /**
+     * Registers a new feature.
+     * @param feature the feature to be added
+     * @throws IllegalArgumentException when the feature name is already used or some of the dependencies are not registered
+     */
+    public synchronized void add(Feature feature)
+    {
+        if (indices.containsKey(feature.getName()))
+            throw new IllegalArgumentException("Duplicate feature " + feature.getName());
+        for (String dep : feature.getDependencies())
+        {
+            if (!indices.containsKey(dep))
+                throw new IllegalArgumentException("Feature " + feature.getName() + " depends on an unknown feature " + dep);
+        }
+        int[] deps = new int[feature.getDependencies().size()];
+        for (int i = 0; i < deps.length; i++)
+            deps[i] = indices.get(feature.getDependencies().get(i));
+        indices.put(feature.getName(), features.size());
+        features.add(feature);
+        dependencyIndices.add(deps);
+        header = null;
+    }
+
+    /**
+     * Obtains the number of the registered features.
+     * @return the number of features
+     */
+    public int size()
+    {
+        return features.size();
+    }
+
+    public Feature getFeature(int index)
+    {
+        return features.get(index);
+    }
+
+    /**
+     * Obtains the indices of the features the given feature depends on.
+     * @param index the feature index
+     * @return the indices of the dependencies; all of them are lower than the feature index
+     */
+    public int[] getDependencyIndices(int index)
+    {
+        return dependencyIndices.get(index);
+    }
+
+    /**
+     * Finds the index of a feature.
+     * @param name the feature name
+     * @return the feature index or -1 when there is no such feature
+     */
+    public int indexOf(String name)
+    {
+        Integer ret = indices.get(name);
+        return (ret == null) ? -1 : ret;
+    }
+
+    /**
+     * Obtains the data set header generated from the registered features. The header is generated once
+     * and cached.
+     * @return an empty data set with the header; it should not be modified
+     */
+    public synchronized Instances getHeader()
+    {
+        if (header == null)
+        {
+            ArrayList<Attribute> atts = new ArrayList<Attribute>(features.size());
+            for (Feature f : features)
+            {
+                if (f.isNominal())
+                    atts.add(new Attribute(f.getName(), new ArrayList<String>(f.getValues())));
+                else
+                    atts.add(new Attribute(f.getName()));
+            }
+            header = new Instances(relation, atts, 0);
+            if (classAttribute != null && header.attribute(classAttribute) != null)
+                header.setClass(header.attribute(classAttribute));
+        }
+        return header;
+    }
+
+    /**
+     * Selects the features required for computing the given attributes including their dependencies.
+     * @param usedAttributes the indices of the attributes that are used
+     * @return the selection
+     */
+    public FeatureSelection select(int[] usedAttributes)
+    {
+        final int n = features.size();
+        boolean[] required = new boolean[n];
+        for (int a : usedAttributes)
+        {
+            if (a >= 0 && a < n)
+                required[a] = true;
+        }
+        //the dependencies always precede the feature, a single backward pass is sufficient
+        for (int i = n - 1; i >= 0; i--)
+        {
+            if (required[i])
+            {
+                for (String dep : features.get(i).getDependencies())
+                    required[indices.get(dep)] = true;
+            }
+        }
+        return new FeatureSelection(this, required);
+    }
+
+    /**
+     * Computes the feature values of an area.
+     * @param area the area
+     * @param dest the destination array
+     * @param offset the index of the first value in the destination array
+     * @param required the features that should be computed or {@code null} for all the features;
+     * the values of the remaining features are set to {@code NaN} (missing)
+     */
+    public void compute(Area area, double[] dest, int offset, boolean[] required)
+    {
+        final int n = features.size();
+        for (int i = 0; i < n; i++)
+        {
+            if (required == null || required[i])
+                dest[offset + i] = features.get(i).compute(area, dest, offset);
+            else
+                dest[offset + i] = Double.NaN;
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+/**
+ * FeatureRowExtractor.java
+ */
+package org.fit.layout.classify;
+
+import org.fit.layout.model.Area;
+
+/**
+ * A feature extractor that is able to store the feature values of an area directly to an array
+ * without creating any intermediate objects. This is used for filling a {@link FeatureMatrix}
+ * and for the classification by compiled models.
+ */
+public interface FeatureRowExtractor extends FeatureExtractor
+{
+
+    /**
+     * Obtains the number of values in a feature row. This corresponds to the number of attributes
+     * of the data set created by {@link #createEmptyDataset()}.
+     * @return the number of values
+     */
+    public int getFeatureCount();
+    
+    /**
+     * Computes the feature values of an area. The values are stored in the order of the attributes
+     * of the data set created by {@link #createEmptyDataset()}; the missing values are represented
+     * by {@code NaN}.
+     * @param area the area whose features should be computed
+     * @param dest the destination array
+     * @param offset the index of the first value in the destination array
+     */
+    public void getAreaFeatures(Area area, double[] dest, int offset);
+    
+    /**
+     * Computes the selected feature values of an area. The values of the features that are not selected
+     * are set to {@code NaN} (missing).
+     * @param area the area whose features should be computed
+     * @param dest the destination array
+     * @param offset the index of the first value in the destination array
+     * @param required the flags of the features that should be computed or {@code null} for all the features
+     */
+    public void getAreaFeatures(Area area, double[] dest, int offset, boolean[] required);
+    
+    /**
+     * Obtains the declarations of the features computed by the extractor.
+     * @return the feature registry or {@code null} when the features are not declared
+     */
+    public FeatureRegistry getFeatureRegistry();
+    
+}
@@ -0,0 +1,127 @@
+/**
+ * FeatureSelection.java
+ */
+package org.fit.layout.classify;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A subset of the features of a {@link FeatureRegistry} that should be computed during the extraction.
+ * The skipped features are reported together with the estimated time saved by skipping them; the estimate
+ * is based on the measured extraction time and the declared feature costs.
+ */
+public class FeatureSelection
+{
+    private boolean[] required;
+    private List<String> skipped;
+    private int requiredCost;
+    private int skippedCost;
+    private AtomicLong extractionTime;
+    private AtomicLong extractionCount;
+
+    /**
+     * Creates a selection.
+     * @param registry the feature registry
+     * @param required the flags of the required features in the registry order
+     */
+    public FeatureSelection(FeatureRegistry registry, boolean[] required)
+    {
+        this.required = required;
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < registry.size(); i++)
+        {
+            final Feature f = registry.getFeature(i);
+            if (required[i])
+                requiredCost += f.getCost();
+            else
+            {
+                skippedCost += f.getCost();
+                names.add(f.getName());
+            }
+        }
+        skipped = Collections.unmodifiableList(names);
+        extractionTime = new AtomicLong();
+        extractionCount = new AtomicLong();
+    }
+
+    /**
+     * Obtains the flags of the required features.
+     * @return an array of flags in the registry order
+     */
+    public boolean[] getRequired()
+    {
+        return required;
+    }
+
+    /**
+     * Obtains the names of the skipped features.
+     * @return the list of names
+     */
+    public List<String> getSkipped()
+    {
+        return skipped;
+    }
+
+    public int getRequiredCost()
+    {
+        return requiredCost;
+    }
+
+    public int getSkippedCost()
+    {
+        return skippedCost;
+    }
+
+    /**
+     * Records the time spent by extracting the features of a single area.
+     * @param nanos the extraction time in nanoseconds
+     */
+    public void addExtraction(long nanos)
+    {
+        extractionTime.addAndGet(nanos);
+        extractionCount.incrementAndGet();
+    }
+
+    /**
+     * Obtains the number of areas whose features have been extracted using this selection.
+     * @return the number of areas
+     */
+    public long getExtractionCount()
+    {
+        return extractionCount.get();
+    }
+
+    /**
+     * Obtains the total time spent by extracting the selected features.
+     * @return the time in milliseconds
+     */
+    public double getExtractionTime()
+    {
+        return extractionTime.get() / 1000000.0;
+    }
+
+    /**
+     * Estimates the time saved by skipping the features. The estimate assumes that the measured time
+     * corresponds to the cost of the required features.
+     * @return the estimated time in milliseconds
+     */
+    public double getEstimatedSavedTime()
+    {
+        if (requiredCost == 0)
+            return 0;
+        else
+            return getExtractionTime() * skippedCost / requiredCost;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "FeatureSelection[required:" + (required.length - skipped.size()) + "/" + required.length
+                + " skipped:" + skipped + " areas:" + getExtractionCount()
+                + String.format(" time:%.1fms estimated saving:~%.1fms", getExtractionTime(), getEstimatedSavedTime()) + "]";
+    }
+
+}
@@ -0,0 +1,20 @@
+/**
+ * FeatureSource.java
+ */
+package org.fit.layout.classify;
+
+/**
+ * A source of feature values that may be computed on demand. It is used by the compiled models
+ * that only request the values of the attributes they actually test.
+ */
+public interface FeatureSource
+{
+
+    /**
+     * Obtains the value of a feature.
+     * @param index the feature (attribute) index
+     * @return the feature value or {@code NaN} for a missing value
+     */
+    public double getValue(int index);
+    
+}
@@ -0,0 +1,184 @@
+/**
+ * IncrementalModel.java
+ */
+package org.fit.layout.classify;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.UpdateableClassifier;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * A model that is trained incrementally using a Weka updateable classifier (e.g. the
+ * {@code NaiveBayesUpdateable} or {@code HoeffdingTree} backends). New batches of training instances
+ * (e.g. obtained from the {@link InstanceExtractor}) are absorbed without retraining the model
+ * on the whole corpus. After each update, a new immutable {@link TrainedModel} version is published;
+ * the already published versions are not affected by the further updates so that they may be
+ * still used for the classification.
+ * <p>
+ * Unlike the models trained by {@link VisualClassifier}, the incremental models do not use
+ * the standardization filter because the filter requires the statistics of the whole data set.
+ */
+public class IncrementalModel
+{
+    private static Logger log = LoggerFactory.getLogger(IncrementalModel.class);
+
+    /** The maximal number of instances of a batch used for measuring the classification latency. */
+    private static final int LATENCY_SAMPLES = 100;
+
+    private ClassifierBackend backend;
+    private String options;
+    private Classifier classifier;
+    private Instances header;
+    private long instanceCount;
+    private volatile int version;
+    private volatile TrainedModel current;
+
+    /**
+     * Creates a new incremental model and trains it on the initial data.
+     * @param backend the classifier backend; it must create an updateable classifier
+     * @param options the classifier options or {@code null} for the default options
+     * @param initial the initial training data (it may be empty); the class index must be set
+     * @throws IllegalArgumentException when the backend does not provide an updateable classifier
+     * @throws Exception when the classifier could not be created or trained
+     */
+    public IncrementalModel(ClassifierBackend backend, String options, Instances initial) throws Exception
+    {
+        this.backend = backend;
+        this.options = (options == null) ? backend.getDefaultOptions() : options;
+        classifier = backend.createClassifier(this.options);
+        if (!(classifier instanceof UpdateableClassifier))
+            throw new IllegalArgumentException("The classifier " + backend.getId() + " is not updateable");
+        if (initial.classIndex() < 0)
+            throw new IllegalArgumentException("The class index of the training data is not set");
+        header = new Instances(initial, 0);
+        final long t0 = System.currentTimeMillis();
+        classifier.buildClassifier(initial);
+        instanceCount = initial.numInstances();
+        version = 0;
+        publish(initial, System.currentTimeMillis() - t0);
+    }
+
+    public ClassifierBackend getBackend()
+    {
+        return backend;
+    }
+
+    public String getOptions()
+    {
+        return options;
+    }
+
+    /**
+     * Obtains the header of the training data.
+     * @return an empty data set with the training data header
+     */
+    public Instances getHeader()
+    {
+        return header;
+    }
+
+    /**
+     * Obtains the current model version. The version is increased by each update.
+     * @return the version number (0 for the initial model)
+     */
+    public int getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Obtains the total number of training instances absorbed by the model.
+     * @return the number of instances
+     */
+    public synchronized long getInstanceCount()
+    {
+        return instanceCount;
+    }
+
+    /**
+     * Obtains the latest published version of the model.
+     * @return the model
+     */
+    public TrainedModel getCurrentModel()
+    {
+        return current;
+    }
+
+    /**
+     * Updates the model with a new batch of training instances and publishes a new model version.
+     * The update cost depends on the batch size and the model size only.
+     * @param batch the new training instances; the header must be compatible with the initial data
+     * @return the new model version
+     * @throws IllegalArgumentException when the batch header is not compatible with the model
+     * @throws Exception when the classifier update fails
+     */
+    public synchronized TrainedModel update(Instances batch) throws Exception
+    {
+        if (!header.equalHeaders(batch))
+            throw new IllegalArgumentException("Incompatible training data: " + header.equalHeadersMsg(batch));
+        final long t0 = System.currentTimeMillis();
+        UpdateableClassifier ucls = (UpdateableClassifier) classifier;
+        int cnt = 0;
+        for (int i = 0; i < batch.numInstances(); i++)
+        {
+            Instance inst = batch.instance(i);
+            if (!inst.classIsMissing())
+            {
+                ucls.updateClassifier(inst);
+                cnt++;
+            }
+        }
+        instanceCount += cnt;
+        version++;
+        TrainedModel ret = publish(batch, System.currentTimeMillis() - t0);
+        log.info("Incremental model updated with {} instances, version {}: {}", cnt, version, ret.getStatistics());
+        return ret;
+    }
+
+    //==================================================================
+
+    /**
+     * Creates and publishes a snapshot of the current classifier state.
+     * @param batch the last training batch used for measuring the latency
+     * @param updateTime the time spent by the last update in milliseconds
+     * @return the published model
+     */
+    private TrainedModel publish(Instances batch, long updateTime) throws Exception
+    {
+        //snapshot the classifier so that the further updates do not affect the published model
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream os = new ObjectOutputStream(bos);
+        os.writeObject(classifier);
+        os.close();
+        byte[] bytes = bos.toByteArray();
+        ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        Classifier copy = (Classifier) is.readObject();
+        is.close();
+
+        TrainedModel model = new TrainedModel(copy, header);
+        //measure the latency on the last batch
+        final int samples = Math.min(batch.numInstances(), LATENCY_SAMPLES);
+        double latency = 0;
+        if (samples > 0)
+        {
+            final long t1 = System.nanoTime();
+            for (int i = 0; i < samples; i++)
+                model.distributionForInstance(batch.instance(i));
+            latency = (System.nanoTime() - t1) / (double) samples;
+        }
+        ModelStatistics stats = new ModelStatistics(backend.getId(), options, (int) instanceCount,
+                updateTime, latency, bytes.length);
+        current = new TrainedModel(model, stats);
+        return current;
+    }
+
+}
@@ -56,6 +56,18 @@ public class InstanceExtractor
         data = features.createEmptyDataset();
     }
     
+    /**
+     * Obtains the instances extracted so far and starts collecting a new batch. This may be used
+     * for passing the newly extracted instances to an {@link IncrementalModel}.
+     * @return the instances extracted since the last call of this method or {@link #clear()}
+     */
+    public Instances takeData()
+    {
+        Instances ret = data;
+        data = features.createEmptyDataset();
+        return ret;
+    }
+    
     public void extractInstances(Area root)
     {
         features.setTree(root);
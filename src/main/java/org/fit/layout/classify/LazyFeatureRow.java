@@ -0,0 +1,150 @@
+/**
+ * LazyFeatureRow.java
+ */
+package org.fit.layout.classify;
+
+import org.fit.layout.model.Area;
+
+/**
+ * A feature row of a single area whose values are computed on demand. Each feature of the registry
+ * is computed when its value is requested for the first time (after computing its dependencies)
+ * and the value is remembered until another area is set. When used with a {@link CompiledTree},
+ * only the features tested on the decision path of the area are computed.
+ * <p>
+ * The row is not thread-safe; each thread should use its own row. The numbers of the computed
+ * values may be collected from multiple rows using {@link #merge(LazyFeatureRow)}.
+ */
+public class LazyFeatureRow implements FeatureSource
+{
+    private FeatureRegistry registry;
+    private Area area;
+    private double[] values;
+    /** The generation in which the value has been computed */
+    private int[] computed;
+    private int generation;
+    /** The number of computations of the individual features */
+    private long[] counts;
+    private long areaCount;
+
+    /**
+     * Creates an empty row.
+     * @param registry the registry of the features to be computed
+     */
+    public LazyFeatureRow(FeatureRegistry registry)
+    {
+        this.registry = registry;
+        final int n = registry.size();
+        values = new double[n];
+        computed = new int[n];
+        counts = new long[n];
+    }
+
+    public FeatureRegistry getRegistry()
+    {
+        return registry;
+    }
+
+    public Area getArea()
+    {
+        return area;
+    }
+
+    /**
+     * Sets the area whose features are provided. All the remembered values are discarded.
+     * @param area the new area
+     */
+    public void setArea(Area area)
+    {
+        this.area = area;
+        if (generation == Integer.MAX_VALUE)
+        {
+            for (int i = 0; i < computed.length; i++)
+                computed[i] = 0;
+            generation = 0;
+        }
+        generation++;
+        areaCount++;
+    }
+
+    /**
+     * Obtains the value of a feature of the current area. The value is computed when it has not
+     * been computed yet.
+     * @param index the feature index
+     * @return the feature value or {@code NaN} for a missing value or an unknown feature
+     */
+    @Override
+    public double getValue(int index)
+    {
+        if (index < 0 || index >= values.length)
+            return Double.NaN;
+        if (computed[index] != generation)
+        {
+            //the dependencies are read from the row by the feature
+            for (int dep : registry.getDependencyIndices(index))
+                getValue(dep);
+            values[index] = registry.getFeature(index).compute(area, values, 0);
+            computed[index] = generation;
+            counts[index]++;
+        }
+        return values[index];
+    }
+
+    /**
+     * Obtains the number of areas set to this row.
+     * @return the number of areas
+     */
+    public long getAreaCount()
+    {
+        return areaCount;
+    }
+
+    /**
+     * Obtains the number of times the feature has been computed.
+     * @param index the feature index
+     * @return the number of computations
+     */
+    public long getComputedCount(int index)
+    {
+        return counts[index];
+    }
+
+    /**
+     * Adds the numbers of the computed values of another row to this row.
+     * @param other the other row that uses the same registry
+     */
+    public synchronized void merge(LazyFeatureRow other)
+    {
+        for (int i = 0; i < counts.length; i++)
+            counts[i] += other.counts[i];
+        areaCount += other.areaCount;
+    }
+
+    /**
+     * Computes the ratio of the declared cost of the computed features to the cost of computing
+     * all the features for all the areas.
+     * @return the cost ratio (0..1)
+     */
+    public double getCostRatio()
+    {
+        long total = 0;
+        long used = 0;
+        for (int i = 0; i < counts.length; i++)
+        {
+            final int cost = registry.getFeature(i).getCost();
+            total += cost * areaCount;
+            used += cost * counts[i];
+        }
+        return (total == 0) ? 0 : used / (double) total;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        long total = 0;
+        for (long c : counts)
+            total += c;
+        return "LazyFeatureRow[areas:" + areaCount + " computed:" + total + "/" + (areaCount * counts.length)
+                + String.format(" cost:%.1f%%", getCostRatio() * 100.0) + "]";
+    }
+
+}
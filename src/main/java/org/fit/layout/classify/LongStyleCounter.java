@@ -0,0 +1,249 @@
+/**
+ * LongStyleCounter.java
+ */
+package org.fit.layout.classify;
+
+import java.util.Arrays;
+
+/**
+ * Statistical analyzer of style occurences for styles represented by primitive keys, e.g. the style IDs
+ * assigned by a {@link StylePool}. It works in the same way as {@link StyleCounter} but the keys are
+ * never boxed.
+ */
+public class LongStyleCounter
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The distinct keys in the order of their first occurence */
+    private long[] keys;
+    /** The key counts */
+    private int[] counts;
+    /** The number of distinct keys */
+    private int size;
+    /** The hash table; it contains the key index + 1 or 0 for empty slots */
+    private int[] table;
+    /** The index of the most frequent key or -1 */
+    private int maxIndex;
+
+    /**
+     * Creates an empty style counter.
+     */
+    public LongStyleCounter()
+    {
+        keys = new long[INITIAL_CAPACITY];
+        counts = new int[INITIAL_CAPACITY];
+        table = new int[2 * INITIAL_CAPACITY];
+        maxIndex = -1;
+    }
+
+    /**
+     * Adds a new occurence to the counter.
+     * @param style The style key to be added.
+     */
+    public void add(long style)
+    {
+        add(style, 1);
+    }
+
+    /**
+     * Adds multiple occurences of a style to the counter.
+     * @param style The style key to be added.
+     * @param count The number of occurences to be added. A zero count is ignored; the style is not registered.
+     * @throws IllegalArgumentException when the count is negative
+     */
+    public void add(long style, int count)
+    {
+        if (count < 0)
+            throw new IllegalArgumentException("Negative style count " + count);
+        if (count == 0)
+            return;
+        int i = find(style);
+        if (i == -1)
+            i = insert(style);
+        counts[i] += count;
+        if (maxIndex == -1 || counts[i] > counts[maxIndex])
+            maxIndex = i;
+    }
+
+    /**
+     * Adds all the occurences registered in another counter to this counter.
+     * @param other the counter to be merged
+     */
+    public void merge(LongStyleCounter other)
+    {
+        for (int i = 0; i < other.size; i++)
+            add(other.keys[i], other.counts[i]);
+    }
+
+    /**
+     * Obtains total registered number of occurences of the given style.
+     * @param style the style key
+     * @return the number of occurences
+     */
+    public int getCount(long style)
+    {
+        final int i = find(style);
+        return (i == -1) ? 0 : counts[i];
+    }
+
+    /**
+     * Obtains the number of distinct styles registered.
+     * @return the number of styles
+     */
+    public int getDistinctCount()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Obtains the frequency of the most frequent style.
+     * @return the maximal frequency or 0 when the counter is empty
+     */
+    public int getMaxFrequency()
+    {
+        return (maxIndex == -1) ? 0 : counts[maxIndex];
+    }
+
+    /**
+     * Obtains the most frequent style. If there are multiple styles with the same frequency then
+     * only one of them is returned.
+     * @return The most frequent style key
+     * @throws IllegalStateException when the counter is empty
+     */
+    public long getMostFrequent()
+    {
+        if (maxIndex == -1)
+            throw new IllegalStateException("No styles have been counted");
+        return keys[maxIndex];
+    }
+
+    /**
+     * Obtains the most frequent style or styles when multiple of them have the maximal frequency.
+     * @return The keys of the styles with the maximal frequency.
+     */
+    public long[] getMostFrequentAll()
+    {
+        final int maxfreq = getMaxFrequency();
+        int cnt = 0;
+        for (int i = 0; i < size; i++)
+            if (counts[i] == maxfreq) cnt++;
+        long[] ret = new long[cnt];
+        int j = 0;
+        for (int i = 0; i < size; i++)
+            if (counts[i] == maxfreq) ret[j++] = keys[i];
+        return ret;
+    }
+
+    /**
+     * Obtains all distinct styles that have been seen independently on their frequencies.
+     * @return the style keys in the order of their first occurence
+     */
+    public long[] getDistinctStyles()
+    {
+        return Arrays.copyOf(keys, size);
+    }
+
+    /**
+     * Obtains the frequent style where the frequency is greater or equal than factor*max_frequency.
+     * @return The keys of the frequent styles
+     */
+    public long[] getFrequentStyles(float factor)
+    {
+        final float minfreq = factor * getMaxFrequency();
+        int cnt = 0;
+        for (int i = 0; i < size; i++)
+            if (counts[i] >= minfreq) cnt++;
+        long[] ret = new long[cnt];
+        int j = 0;
+        for (int i = 0; i < size; i++)
+            if (counts[i] >= minfreq) ret[j++] = keys[i];
+        return ret;
+    }
+
+    /**
+     * Obtains all the registered styles sorted by their frequencies. The styles with the same frequency
+     * are sorted in the order of their first occurence.
+     * @return The style keys sorted by the decreasing frequency
+     */
+    public long[] getAllSorted()
+    {
+        long[] ret = new long[size];
+        int j = 0;
+        for (int i : StyleCounter.sortedIndices(counts, size))
+            ret[j++] = keys[i];
+        return ret;
+    }
+
+    //==============================================================================================
+
+    @Override
+    public String toString()
+    {
+        StringBuilder ret = new StringBuilder();
+        for (int i : StyleCounter.sortedIndices(counts, size))
+            ret.append(counts[i]).append("x(").append(keys[i]).append(") ");
+        return ret.toString();
+    }
+
+    //==============================================================================================
+
+    private static int hash(long style)
+    {
+        final long h = style * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Finds the index of a key.
+     * @return the key index or -1 when the key is not present
+     */
+    private int find(long style)
+    {
+        final int mask = table.length - 1;
+        for (int slot = hash(style) & mask; table[slot] != 0; slot = (slot + 1) & mask)
+        {
+            final int i = table[slot] - 1;
+            if (keys[i] == style)
+                return i;
+        }
+        return -1;
+    }
+
+    private int insert(long style)
+    {
+        if (size == keys.length)
+            grow();
+        final int i = size++;
+        keys[i] = style;
+        place(i);
+        return i;
+    }
+
+    private void place(int i)
+    {
+        final int mask = table.length - 1;
+        int slot = hash(keys[i]) & mask;
+        while (table[slot] != 0)
+            slot = (slot + 1) & mask;
+        table[slot] = i + 1;
+    }
+
+    /**
+     * Doubles the capacity and rebuilds the hash table. The table is kept at most half full.
+     */
+    private void grow()
+    {
+        final int cap = keys.length * 2;
+        keys = Arrays.copyOf(keys, cap);
+        counts = Arrays.copyOf(counts, cap);
+        table = new int[2 * cap];
+        for (int i = 0; i < size; i++)
+            place(i);
+    }
+
+}
@@ -0,0 +1,330 @@
+/**
+ * ModelCache.java
+ */
+package org.fit.layout.classify;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import weka.core.SerializationHelper;
+import weka.core.Version;
+
+/**
+ * A disk store of trained model snapshots. The snapshots are keyed by a hash of the training
+ * data and the classifier settings so that a model is only trained again when the training
+ * data or the classifier configuration changes.
+ * <p>
+ * The cache directory is created with owner-only permissions. The snapshots are only read when
+ * the directory and the snapshot file are owned by the current user and not writable by anyone else,
+ * and only the classes from the allowed packages (Weka, the classifier itself and the basic Java
+ * packages) may be deserialized.
+ */
+public class ModelCache
+{
+    private static Logger log = LoggerFactory.getLogger(ModelCache.class);
+
+    /** The system property that may be used for specifying the cache directory. Use {@code none} for disabling the default cache. */
+    public static final String CACHE_DIR_PROPERTY = "fitlayout.classify.cache";
+    /** The default cache directory relative to the user home directory. */
+    public static final String DEFAULT_DIR_NAME = ".fitlayout/models";
+    /** The packages of the classes that may be deserialized from the snapshots by default. */
+    public static final String[] DEFAULT_ALLOWED_PACKAGES = {
+        "weka.", "libsvm.", "org.fit.layout.classify.",
+        "java.lang.", "java.util.", "java.text.", "java.math."
+    };
+
+    private static final String SUFFIX = ".model";
+    /** Snapshot format version; change when the contents of {@link TrainedModel} or the way they are computed change */
+    private static final int FORMAT_VERSION = 4;
+
+    private static ModelCache defaultCache;
+    private static boolean defaultCreated = false;
+
+    private File dir;
+    private List<String> allowedPackages;
+
+    /**
+     * Creates a model cache that uses the given directory. The directory is created when
+     * the first model is stored.
+     * @param dir the cache directory
+     */
+    public ModelCache(File dir)
+    {
+        this.dir = dir;
+        allowedPackages = new ArrayList<String>(Arrays.asList(DEFAULT_ALLOWED_PACKAGES));
+    }
+
+    /**
+     * Obtains the default cache. The cache directory is taken from the {@code fitlayout.classify.cache}
+     * system property or the {@code .fitlayout/models} subdirectory of the user home directory
+     * is used when the property is not set.
+     * @return the default cache or {@code null} when the default cache has been disabled by setting
+     * the property to {@code none}.
+     */
+    public static synchronized ModelCache getDefault()
+    {
+        if (!defaultCreated)
+        {
+            String path = System.getProperty(CACHE_DIR_PROPERTY);
+            if (path == null || path.trim().isEmpty())
+                defaultCache = new ModelCache(new File(System.getProperty("user.home"), DEFAULT_DIR_NAME));
+            else if (!path.trim().equalsIgnoreCase("none"))
+                defaultCache = new ModelCache(new File(path.trim()));
+            defaultCreated = true;
+        }
+        return defaultCache;
+    }
+
+    public File getDirectory()
+    {
+        return dir;
+    }
+
+    /**
+     * Allows deserializing the classes from an additional package, e.g. the classifier classes
+     * used by a custom {@link ClassifierBackend}.
+     * @param prefix the package name prefix including the trailing dot (e.g. {@code com.example.})
+     */
+    public void addAllowedPackage(String prefix)
+    {
+        allowedPackages.add(prefix);
+    }
+
+    /**
+     * Computes the cache key for the given training data and classifier settings.
+     * @param data the contents of the training ARFF file
+     * @param classindex the class attribute index
+     * @param classifier the classifier description (e.g. the class name)
+     * @param options the classifier options
+     * @return the key string
+     */
+    public static String computeKey(byte[] data, int classindex, String classifier, String options)
+    {
+        try
+        {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(data);
+            //the serialized models are only valid for the same Weka version
+            String settings = "|" + classindex + "|" + classifier + "|" + options + "|" + Version.VERSION + "|" + FORMAT_VERSION;
+            md.update(settings.getBytes(StandardCharsets.UTF_8));
+            byte[] digest = md.digest();
+            StringBuilder ret = new StringBuilder(digest.length * 2);
+            for (byte b : digest)
+                ret.append(String.format("%02x", b & 0xff));
+            return ret.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); //should not happen, SHA-256 is mandatory
+        }
+    }
+
+    /**
+     * Loads a model snapshot from the cache. The snapshot is ignored when the cache directory
+     * or the snapshot file may have been modified by another user or when it contains
+     * classes that are not allowed.
+     * @param key the model key
+     * @return the loaded model or {@code null} when there is no such model in the cache or it could not be loaded
+     */
+    public TrainedModel load(String key)
+    {
+        File file = getFile(key);
+        if (file.isFile())
+        {
+            try
+            {
+                if (!isPrivate(dir.toPath().toRealPath()) || !isPrivate(file.toPath()))
+                {
+                    log.warn("Ignoring cached model {}: the cache is accessible to other users", file);
+                    return null;
+                }
+                Object o = readModel(file);
+                if (o instanceof TrainedModel)
+                    return (TrainedModel) o;
+                else
+                    log.warn("Ignoring invalid cached model {}", file);
+            } catch (Exception e) {
+                log.warn("Couldn't load cached model {}: {}", file, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores a model snapshot to the cache. The snapshot is written to a temporary file first
+     * so that concurrent readers never see an incomplete snapshot. The cache directory is created
+     * when necessary and it is only accessible to the current user.
+     * @param key the model key
+     * @param model the model to be stored
+     * @return {@code true} when the model has been stored successfully
+     */
+    public boolean store(String key, TrainedModel model)
+    {
+        File tmp = null;
+        try
+        {
+            createDirectory();
+            if (!isPrivate(dir.toPath().toRealPath()))
+                throw new IOException("The directory " + dir + " is accessible to other users");
+            tmp = Files.createTempFile(dir.toPath(), key, ".tmp").toFile(); //owner-only permissions
+            SerializationHelper.write(tmp.getAbsolutePath(), model);
+            try {
+                Files.move(tmp.toPath(), getFile(key).toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), getFile(key).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (Exception e) {
+            log.warn("Couldn't store the model to the cache: {}", e.getMessage());
+            if (tmp != null)
+                tmp.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Removes a model snapshot from the cache.
+     * @param key the model key
+     * @return {@code true} when the model has been removed
+     */
+    public boolean remove(String key)
+    {
+        return getFile(key).delete();
+    }
+
+    //==================================================================
+
+    private File getFile(String key)
+    {
+        return new File(dir, key + SUFFIX);
+    }
+
+    /**
+     * Creates the cache directory including its missing parents with owner-only permissions.
+     */
+    private void createDirectory() throws IOException
+    {
+        if (!dir.isDirectory())
+        {
+            Path path = dir.toPath();
+            if (path.getFileSystem().supportedFileAttributeViews().contains("posix"))
+                Files.createDirectories(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            else
+            {
+                Files.createDirectories(path);
+                //the best we can do without POSIX permissions
+                dir.setReadable(false, false);
+                dir.setWritable(false, false);
+                dir.setExecutable(false, false);
+                dir.setReadable(true, true);
+                dir.setWritable(true, true);
+                dir.setExecutable(true, true);
+            }
+        }
+    }
+
+    /**
+     * Checks that a file or directory is owned by the current user and that it is not writable
+     * by the group or others. Symbolic links are not followed.
+     */
+    private static boolean isPrivate(Path path) throws IOException
+    {
+        if (Files.isSymbolicLink(path))
+            return false;
+        UserPrincipal owner = Files.getOwner(path, LinkOption.NOFOLLOW_LINKS);
+        UserPrincipal user = path.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!owner.equals(user))
+            return false;
+        PosixFileAttributeView posix = Files.getFileAttributeView(path, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+        if (posix != null)
+        {
+            Set<PosixFilePermission> perms = posix.readAttributes().permissions();
+            if (perms.contains(PosixFilePermission.GROUP_WRITE) || perms.contains(PosixFilePermission.OTHERS_WRITE))
+                return false;
+        }
+        return true;
+    }
+
+    private Object readModel(File file) throws IOException, ClassNotFoundException
+    {
+        ObjectInputStream in = new FilteredInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())));
+        try
+        {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    private boolean isAllowed(String className)
+    {
+        //array classes: check the component type
+        String name = className;
+        while (name.startsWith("["))
+            name = name.substring(1);
+        if (name.length() != className.length())
+        {
+            if (name.length() == 1)
+                return true; //primitive array
+            if (name.startsWith("L") && name.endsWith(";"))
+                name = name.substring(1, name.length() - 1);
+        }
+        for (String prefix : allowedPackages)
+        {
+            if (name.startsWith(prefix))
+                return true;
+        }
+        return false;
+    }
+
+    //==================================================================
+
+    /**
+     * An object input stream that refuses the classes that are not allowed to be deserialized.
+     */
+    private class FilteredInputStream extends ObjectInputStream
+    {
+        public FilteredInputStream(InputStream in) throws IOException
+        {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+        {
+            if (!isAllowed(desc.getName()))
+                throw new InvalidClassException(desc.getName(), "class not allowed in a cached model");
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException
+        {
+            throw new InvalidClassException("proxy classes are not allowed in a cached model");
+        }
+    }
+
+}
@@ -0,0 +1,295 @@
+/**
+ * ModelRegistry.java
+ */
+package org.fit.layout.classify;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A process-wide registry of the trained models. Each model is trained (or loaded from the
+ * model cache) only once and the same model instance is then shared by all the users
+ * and threads.
+ */
+public class ModelRegistry
+{
+    private static Logger log = LoggerFactory.getLogger(ModelRegistry.class);
+
+    private static final ModelRegistry instance = new ModelRegistry();
+
+    private ConcurrentHashMap<String, FutureTask<TrainedModel>> models;
+    private ModelCache cache;
+
+    //statistics
+    private AtomicLong hits;
+    private AtomicLong misses;
+    private AtomicLong loadTime;
+
+    /**
+     * Creates a new empty registry that uses the default model cache. Usually, the shared
+     * registry obtained using {@link #getInstance()} should be used.
+     */
+    public ModelRegistry()
+    {
+        models = new ConcurrentHashMap<String, FutureTask<TrainedModel>>();
+        cache = ModelCache.getDefault();
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+        loadTime = new AtomicLong();
+    }
+
+    /**
+     * Obtains the shared registry instance.
+     * @return the registry
+     */
+    public static ModelRegistry getInstance()
+    {
+        return instance;
+    }
+
+    public ModelCache getCache()
+    {
+        return cache;
+    }
+
+    /**
+     * Sets the model cache used for loading the models that are not present in the registry yet.
+     * @param cache the cache to use or {@code null} for always training the models
+     */
+    public void setCache(ModelCache cache)
+    {
+        this.cache = cache;
+    }
+
+    /**
+     * Obtains the model trained on the given training file using the default classifier backend.
+     * The model is trained or loaded only when it is requested for the first time; the concurrent
+     * requests for the same model wait until the model is available.
+     *
+     * @param trainFile path to the training ARFF file. Use the {@code res:} prefix for denoting
+     * classpath resources (e.g. {@code res:train.arff}).
+     * @param classIndex index of the class attribute in the ARFF file
+     * @return the trained model or {@code null} when the model could not be trained
+     */
+    public TrainedModel getModel(String trainFile, int classIndex)
+    {
+        return getModel(trainFile, classIndex, ClassifierBackends.DEFAULT_BACKEND, null);
+    }
+
+    /**
+     * Obtains the model trained on the given training file using the given classifier backend.
+     * The model is trained or loaded only when it is requested for the first time; the concurrent
+     * requests for the same model wait until the model is available.
+     *
+     * @param trainFile path to the training ARFF file. Use the {@code res:} prefix for denoting
+     * classpath resources (e.g. {@code res:train.arff}).
+     * @param classIndex index of the class attribute in the ARFF file
+     * @param backendId the ID of the classifier backend
+     * @param options the classifier options or {@code null} for the default backend options
+     * @return the trained model or {@code null} when the model could not be trained
+     */
+    public TrainedModel getModel(final String trainFile, final int classIndex, final String backendId, String options)
+    {
+        final String opts = normalizeOptions(backendId, options);
+        final String key = createKey(trainFile, classIndex, backendId, opts);
+        FutureTask<TrainedModel> task = models.get(key);
+        if (task == null)
+        {
+            FutureTask<TrainedModel> newTask = new FutureTask<TrainedModel>(new Callable<TrainedModel>() {
+                @Override
+                public TrainedModel call() throws Exception
+                {
+                    return VisualClassifier.loadModel(trainFile, classIndex, backendId, opts, cache);
+                }
+            });
+            task = models.putIfAbsent(key, newTask);
+            if (task == null) //we are the first one, load the model
+            {
+                task = newTask;
+                misses.incrementAndGet();
+                final long t0 = System.nanoTime();
+                newTask.run();
+                loadTime.addAndGet(System.nanoTime() - t0);
+            }
+            else
+                hits.incrementAndGet();
+        }
+        else
+            hits.incrementAndGet();
+
+        try {
+            TrainedModel ret = task.get();
+            if (ret == null)
+                models.remove(key, task); //do not keep the failures, allow retrying
+            return ret;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            log.error("Couldn't obtain the model for {}: {}", trainFile, e.getMessage());
+            models.remove(key, task);
+            return null;
+        }
+    }
+
+    /**
+     * Publishes a model under the given training settings. The published model replaces any model
+     * already registered for the same settings and it is returned by the subsequent calls of
+     * {@link #getModel(String, int, String, String)}. This may be used for publishing the new versions
+     * of an {@link IncrementalModel}.
+     *
+     * @param trainFile the training file name the model should be registered for
+     * @param classIndex index of the class attribute
+     * @param backendId the ID of the classifier backend
+     * @param options the classifier options or {@code null} for the default backend options
+     * @param model the model to publish
+     */
+    public void publishModel(String trainFile, int classIndex, String backendId, String options, final TrainedModel model)
+    {
+        final String key = createKey(trainFile, classIndex, backendId, normalizeOptions(backendId, options));
+        FutureTask<TrainedModel> task = new FutureTask<TrainedModel>(new Callable<TrainedModel>() {
+            @Override
+            public TrainedModel call() throws Exception
+            {
+                return model;
+            }
+        });
+        task.run();
+        models.put(key, task);
+    }
+
+    /**
+     * Chooses a model according to the measured classification latency. The models for all the
+     * candidate backends are obtained (trained or loaded) using their default options and the first
+     * one whose latency does not exceed the limit is returned.
+     *
+     * @param trainFile path to the training ARFF file. Use the {@code res:} prefix for denoting
+     * classpath resources (e.g. {@code res:train.arff}).
+     * @param classIndex index of the class attribute in the ARFF file
+     * @param backendIds the IDs of the candidate backends in the order of preference
+     * @param maxLatency the maximal accepted latency per instance in nanoseconds
+     * @return the first model that fulfills the latency limit, the fastest model when no model
+     * fulfills the limit or {@code null} when no model could be obtained
+     */
+    public TrainedModel selectModel(String trainFile, int classIndex, List<String> backendIds, double maxLatency)
+    {
+        return selectModel(trainFile, classIndex, backendIds, null, maxLatency);
+    }
+
+    /**
+     * Chooses a model according to the measured classification latency. The models for all the
+     * candidate backends are obtained (trained or loaded) and the first one whose latency does not
+     * exceed the limit is returned. The classifier options are specific to a backend; therefore, they
+     * are only used when a single backend is given and the default options are used otherwise.
+     *
+     * @param trainFile path to the training ARFF file. Use the {@code res:} prefix for denoting
+     * classpath resources (e.g. {@code res:train.arff}).
+     * @param classIndex index of the class attribute in the ARFF file
+     * @param backendIds the IDs of the candidate backends in the order of preference
+     * @param options the classifier options for a single backend or {@code null} for the default options
+     * @param maxLatency the maximal accepted latency per instance in nanoseconds
+     * @return the first model that fulfills the latency limit, the fastest model when no model
+     * fulfills the limit or {@code null} when no model could be obtained
+     */
+    public TrainedModel selectModel(String trainFile, int classIndex, List<String> backendIds, String options, double maxLatency)
+    {
+        final String opts = (backendIds.size() == 1) ? options : null;
+        TrainedModel fastest = null;
+        for (String id : backendIds)
+        {
+            TrainedModel model = getModel(trainFile, classIndex, id, opts);
+            if (model != null)
+            {
+                ModelStatistics stats = model.getStatistics();
+                if (stats == null || stats.getLatency() <= maxLatency)
+                    return model;
+                if (fastest == null || stats.getLatency() < fastest.getStatistics().getLatency())
+                    fastest = model;
+            }
+        }
+        if (fastest != null)
+            log.info("No model fulfills the latency limit of {}ns, using the fastest one: {}", maxLatency, fastest.getStatistics());
+        return fastest;
+    }
+
+    /**
+     * Removes all the models from the registry and resets the statistics.
+     */
+    public void clear()
+    {
+        models.clear();
+        hits.set(0);
+        misses.set(0);
+        loadTime.set(0);
+    }
+
+    /**
+     * Obtains the number of models currently held by the registry.
+     * @return the number of models
+     */
+    public int getModelCount()
+    {
+        return models.size();
+    }
+
+    /**
+     * Obtains the number of model requests served by an already present model.
+     * @return the number of hits
+     */
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Obtains the number of model requests that required training or loading the model.
+     * @return the number of misses
+     */
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Obtains the total time spent by training or loading the models.
+     * @return the time in milliseconds
+     */
+    public long getLoadTime()
+    {
+        return loadTime.get() / 1000000;
+    }
+
+    //==============================================================================================
+
+    private static String createKey(String trainFile, int classIndex, String backendId, String options)
+    {
+        return trainFile + "|" + classIndex + "|" + backendId + "|" + options;
+    }
+
+    /**
+     * Replaces the missing options with the default options of the backend so that the same model
+     * is registered only once no matter whether the default options are given explicitly.
+     */
+    private static String normalizeOptions(String backendId, String options)
+    {
+        if (options != null && !options.trim().isEmpty())
+            return options.trim();
+        ClassifierBackend backend = ClassifierBackends.findBackend(backendId);
+        return (backend == null) ? null : backend.getDefaultOptions().trim();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ModelRegistry[models:" + getModelCount() + " hits:" + getHitCount()
+                + " misses:" + getMissCount() + " load:" + getLoadTime() + "ms]";
+    }
+
+}
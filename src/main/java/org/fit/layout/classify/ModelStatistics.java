@@ -0,0 +1,125 @@
+/**
+ * ModelStatistics.java
+ */
+package org.fit.layout.classify;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * The measured cost of a trained model: the training time, the inference latency and the model size.
+ */
+public class ModelStatistics implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private String backend;
+    private String options;
+    private int trainInstances;
+    private long trainTime;
+    private double latency;
+    private long modelSize;
+
+    /**
+     * Creates the statistics.
+     * @param backend the backend ID
+     * @param options the classifier options used
+     * @param trainInstances the number of training instances
+     * @param trainTime the training time in milliseconds
+     * @param latency the average inference time per instance in nanoseconds
+     * @param modelSize the size of the serialized model in bytes
+     */
+    public ModelStatistics(String backend, String options, int trainInstances, long trainTime, double latency, long modelSize)
+    {
+        this.backend = backend;
+        this.options = options;
+        this.trainInstances = trainInstances;
+        this.trainTime = trainTime;
+        this.latency = latency;
+        this.modelSize = modelSize;
+    }
+
+    public String getBackend()
+    {
+        return backend;
+    }
+
+    public String getOptions()
+    {
+        return options;
+    }
+
+    public int getTrainInstances()
+    {
+        return trainInstances;
+    }
+
+    /**
+     * Obtains the time spent by training the model.
+     * @return the training time in milliseconds
+     */
+    public long getTrainTime()
+    {
+        return trainTime;
+    }
+
+    /**
+     * Obtains the average time necessary for classifying a single instance.
+     * @return the latency in nanoseconds
+     */
+    public double getLatency()
+    {
+        return latency;
+    }
+
+    /**
+     * Obtains the size of the serialized model.
+     * @return the model size in bytes
+     */
+    public long getModelSize()
+    {
+        return modelSize;
+    }
+
+    @Override
+    public String toString()
+    {
+        return backend + " [" + options + "] train:" + trainTime + "ms latency:"
+                + String.format("%.1f", latency) + "ns size:" + modelSize + "B";
+    }
+
+    /**
+     * Computes the size of the serialized form of an object.
+     * @param obj the object to be measured
+     * @return the size in bytes
+     * @throws IOException
+     */
+    public static long serializedSize(Object obj) throws IOException
+    {
+        CountingOutputStream cos = new CountingOutputStream();
+        ObjectOutputStream os = new ObjectOutputStream(cos);
+        os.writeObject(obj);
+        os.close();
+        return cos.count;
+    }
+
+    private static class CountingOutputStream extends OutputStream
+    {
+        long count = 0;
+
+        @Override
+        public void write(int b)
+        {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+            count += len;
+        }
+    }
+
+}
@@ -6,7 +6,6 @@
 package org.fit.layout.classify;
 
 import java.awt.Color;
-import java.util.Vector;
 
 import org.fit.layout.model.Area;
 import org.fit.layout.model.AreaTopology;
@@ -14,7 +13,8 @@ import org.fit.layout.model.Box;
 
 /**
  * This class represents the features of the node style that are important for node purpose
- * comparison.
+ * comparison. The style is immutable; it is stored in primitive fields and its hash code is computed
+ * only once. Equal styles may be shared using a {@link StylePool}.
  * @author burgetr
  */
 public class NodeStyle
@@ -22,8 +22,12 @@ public class NodeStyle
     private float fontSize;
     private float style;
     private float weight;
-    private Color color;
+    /** The ARGB color value */
+    private int color;
+    /** The color is not known (the first box has no color) */
+    private boolean noColor;
     private int indent;
+    private int hash;
     
     /**
      * Computes the style of an area node.
@@ -31,16 +35,15 @@ public class NodeStyle
      */
     public NodeStyle(Area area)
     {
-        Vector<Box> boxes = area.getAllBoxes();
-        
         fontSize = area.getFontSize();
         style = area.getFontStyle();
         weight = area.getFontWeight();
-        if (!boxes.isEmpty())
-            color = boxes.firstElement().getColor();
-        else
-            color = Color.BLACK;
+        Box first = findFirstBox(area);
+        Color c = (first != null) ? first.getColor() : Color.BLACK;
+        noColor = (c == null);
+        color = noColor ? 0 : c.getRGB();
         indent = (int) Math.round(computeIndentation(area));
+        hash = computeHashCode();
     }
     
     /**
@@ -52,8 +55,10 @@ public class NodeStyle
         this.fontSize = src.fontSize;
         this.style = src.style;
         this.weight = src.weight;
-        this.color = new Color(src.color.getRed(), src.color.getGreen(), src.color.getGreen(), src.color.getAlpha());
+        this.color = src.color;
+        this.noColor = src.noColor;
         this.indent = src.indent;
+        this.hash = src.hash;
     }
     
     public float getFontSize()
@@ -72,6 +77,15 @@ public class NodeStyle
     }
 
     public Color getColor()
+    {
+        return noColor ? null : new Color(color, true);
+    }
+    
+    /**
+     * Obtains the color as a packed value.
+     * @return the ARGB color value (0 when the color is not known)
+     */
+    public int getColorRGB()
     {
         return color;
     }
@@ -84,14 +98,7 @@ public class NodeStyle
     @Override
     public int hashCode()
     {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((color == null) ? 0 : color.hashCode());
-        result = prime * result + Float.floatToIntBits(fontSize);
-        result = prime * result + indent;
-        result = prime * result + Float.floatToIntBits(style);
-        result = prime * result + Float.floatToIntBits(weight);
-        return result;
+        return hash;
     }
 
     @Override
@@ -101,11 +108,8 @@ public class NodeStyle
         if (obj == null) return false;
         if (getClass() != obj.getClass()) return false;
         NodeStyle other = (NodeStyle) obj;
-        if (color == null)
-        {
-            if (other.color != null) return false;
-        }
-        else if (!color.equals(other.color)) return false;
+        if (hash != other.hash) return false;
+        if (color != other.color || noColor != other.noColor) return false;
         if (Float.floatToIntBits(fontSize) != Float
                 .floatToIntBits(other.fontSize)) return false;
         if (indent != other.indent) return false;
@@ -120,7 +124,7 @@ public class NodeStyle
     public String toString()
     {
         String ret = "[fs:" + fontSize + " w:" + weight + " s:" + style + " c:";
-        ret += String.format("#%02x%02x%02x", color.getRed(), color.getGreen(), color.getBlue());
+        ret += String.format("#%06x", color & 0xffffff);
         ret += " i:" + indent;
         ret += "]";
         return ret;
@@ -129,10 +133,57 @@ public class NodeStyle
     public String toARFFString()
     {
         return fontSize + "," + weight + "," + style + "," 
-                + (color.getRed() / 255.0) + "," + (color.getGreen() / 255.0) + "," + (color.getBlue() / 255.0)
+                + (getRed() / 255.0) + "," + (getGreen() / 255.0) + "," + (getBlue() / 255.0)
                 + "," + indent; 
     }
     
+    //==================================================================
+    
+    private int getRed()
+    {
+        return (color >> 16) & 0xff;
+    }
+    
+    private int getGreen()
+    {
+        return (color >> 8) & 0xff;
+    }
+    
+    private int getBlue()
+    {
+        return color & 0xff;
+    }
+    
+    private int computeHashCode()
+    {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + (noColor ? 0 : color);
+        result = prime * result + Float.floatToIntBits(fontSize);
+        result = prime * result + indent;
+        result = prime * result + Float.floatToIntBits(style);
+        result = prime * result + Float.floatToIntBits(weight);
+        return result;
+    }
+    
+    /**
+     * Finds the first box in the order of {@code Area.getAllBoxes()} (the boxes of the area followed
+     * by the boxes of the child areas) without collecting all the boxes of the subtree.
+     * @return the first box or {@code null} when there are no boxes in the subtree
+     */
+    private static Box findFirstBox(Area area)
+    {
+        if (!area.getBoxes().isEmpty())
+            return area.getBoxes().get(0);
+        for (int i = 0; i < area.getChildCount(); i++)
+        {
+            Box ret = findFirstBox(area.getChildArea(i));
+            if (ret != null)
+                return ret;
+        }
+        return null;
+    }
+    
     private double computeIndentation(Area area)
     {
         final double max_levels = 3;
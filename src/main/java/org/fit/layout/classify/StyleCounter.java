@@ -6,58 +6,125 @@
 package org.fit.layout.classify;
 
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.Vector;
 
 /**
  * Statistical analyzer of style occurences. Any implementation of the style may be provided,
  * e.g. the default {@code NodeStyle}. The style implementation must correctly implement the
- * {@code equals()} and {@code hashCode()} methods. 
- * 
+ * {@code equals()} and {@code hashCode()} methods.
+ * <p>
+ * The counts are stored in an open-addressing hash table with primitive counters; the styles are kept
+ * in the order of their first occurence. The maximal frequency is tracked during the insertion so that
+ * the most frequent style is available immediately. For counting primitive style keys
+ * (e.g. the IDs assigned by a {@link StylePool}), {@link LongStyleCounter} may be used.
+ *
  * @author burgetr
  */
 public class StyleCounter<T>
 {
-    private Map<T, Integer> styles;
-    
-    
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The distinct styles in the order of their first occurence */
+    private Object[] styles;
+    /** The hash codes of the styles */
+    private int[] hashes;
+    /** The style counts */
+    private int[] counts;
+    /** The number of distinct styles */
+    private int size;
+    /** The hash table; it contains the style index + 1 or 0 for empty slots */
+    private int[] table;
+    /** The index of the most frequent style or -1 */
+    private int maxIndex;
+
+
     /**
      * Creates an empty style counter.
      */
     public StyleCounter()
     {
-        styles = new HashMap<T, Integer>();
+        styles = new Object[INITIAL_CAPACITY];
+        hashes = new int[INITIAL_CAPACITY];
+        counts = new int[INITIAL_CAPACITY];
+        table = new int[2 * INITIAL_CAPACITY];
+        maxIndex = -1;
     }
-    
+
     /**
      * Adds a new occurence to the counter.
      * @param style The style to be added.
      */
     public void add(T style)
     {
-        Integer cnt = styles.get(style);
-        if (cnt == null)
-            styles.put(style, 1);
-        else
-            styles.put(style, cnt+1);
+        add(style, 1);
+    }
+
+    /**
+     * Adds multiple occurences of a style to the counter.
+     * @param style The style to be added.
+     * @param count The number of occurences to be added. A zero count is ignored; the style is not registered.
+     * @throws IllegalArgumentException when the count is negative
+     */
+    public void add(T style, int count)
+    {
+        if (count < 0)
+            throw new IllegalArgumentException("Negative style count " + count);
+        if (count == 0)
+            return;
+        final int h = hash(style);
+        int i = find(style, h);
+        if (i == -1)
+            i = insert(style, h);
+        counts[i] += count;
+        if (maxIndex == -1 || counts[i] > counts[maxIndex])
+            maxIndex = i;
     }
-    
+
     /**
-     * Obtains total registered number of occurences of the given style. 
+     * Adds all the occurences registered in another counter to this counter.
+     * @param other the counter to be merged
+     */
+    public void merge(StyleCounter<? extends T> other)
+    {
+        for (int i = 0; i < other.size; i++)
+            add(other.getStyle(i), other.counts[i]);
+    }
+
+    /**
+     * Obtains total registered number of occurences of the given style.
      * @param style the style whose number of occurences should be returned
      * @return
      */
     public int getCount(T style)
     {
-        Integer cnt = styles.get(style);
-        return cnt == null ? 0 : cnt;
+        final int i = find(style, hash(style));
+        return (i == -1) ? 0 : counts[i];
+    }
+
+    /**
+     * Obtains the number of distinct styles registered.
+     * @return the number of styles
+     */
+    public int getDistinctCount()
+    {
+        return size;
+    }
+
+    /**
+     * Obtains the frequency of the most frequent style.
+     * @return the maximal frequency or 0 when the counter is empty
+     */
+    public int getMaxFrequency()
+    {
+        return (maxIndex == -1) ? 0 : counts[maxIndex];
     }
-    
+
     /**
      * Obtains the most frequent style. If there are multiple styles with the same frequency then
      * only one of them is returned.
@@ -65,19 +132,9 @@ public class StyleCounter<T>
      */
     public T getMostFrequent()
     {
-        T ret = null;
-        int freq = 0;
-        for (Map.Entry<T, Integer> entry : styles.entrySet())
-        {
-            if (entry.getValue() > freq)
-            {
-                ret = entry.getKey();
-                freq = entry.getValue();
-            }
-        }
-        return ret;
+        return (maxIndex == -1) ? null : getStyle(maxIndex);
     }
-    
+
     /**
      * Obtains the most frequent style or styles when multiple of them have the maximal frequency.
      * @return The list of styles with the maximal frequency.
@@ -85,38 +142,40 @@ public class StyleCounter<T>
     public List<T> getMostFrequentAll()
     {
         List<T> ret = new Vector<T>();
-        int maxfreq = 0;
-        for (Map.Entry<T, Integer> entry : styles.entrySet())
+        final int maxfreq = getMaxFrequency();
+        for (int i = 0; i < size; i++)
         {
-            if (entry.getValue() > maxfreq)
-                maxfreq = entry.getValue();
-        }
-        for (Map.Entry<T, Integer> entry : styles.entrySet())
-        {
-            if (entry.getValue() == maxfreq)
-                ret.add(entry.getKey());
+            if (counts[i] == maxfreq)
+                ret.add(getStyle(i));
         }
         return ret;
     }
 
     /**
      * Obtains all the registered styles and their frequencies.
-     * @return A map that assigns a frequency to each unique style.
+     * @return A map that assigns a frequency to each unique style. The map is a copy of the current
+     * state of the counter.
      */
     public Map<T, Integer> getAll()
     {
-    	return styles;
+        Map<T, Integer> ret = new LinkedHashMap<T, Integer>(size * 2);
+        for (int i = 0; i < size; i++)
+            ret.put(getStyle(i), counts[i]);
+    	return ret;
     }
-    
+
     /**
      * Obtains all distinct styles that have been seen independently on their frequencies.
      * @return the set of available styles
      */
     public Set<T> getDistinctStyles()
     {
-        return styles.keySet();
+        Set<T> ret = new LinkedHashSet<T>(size * 2);
+        for (int i = 0; i < size; i++)
+            ret.add(getStyle(i));
+        return ret;
     }
-    
+
     /**
      * Obtains the frequent style where the frequency is greater or equal than factor*max_frequency.
      * @return The list of frequent styles
@@ -124,76 +183,127 @@ public class StyleCounter<T>
     public List<T> getFrequentSyles(float factor)
     {
         List<T> ret = new ArrayList<T>();
-        int maxfreq = 0;
-        for (Map.Entry<T, Integer> entry : styles.entrySet())
+        final int maxfreq = getMaxFrequency();
+        for (int i = 0; i < size; i++)
         {
-            if (entry.getValue() > maxfreq)
-                maxfreq = entry.getValue();
-        }
-        for (Map.Entry<T, Integer> entry : styles.entrySet())
-        {
-            if (entry.getValue() >= factor * maxfreq)
-                ret.add(entry.getKey());
+            if (counts[i] >= factor * maxfreq)
+                ret.add(getStyle(i));
         }
         return ret;
     }
-    
+
     /**
      * Obtains all the registered styles and their frequencies, sort by frequenct.
+     * The styles with the same frequency are sorted in the order of their first occurence.
      * @return A map that assigns a frequency to each unique style.
      */
     public Map<T, Integer> getAllSorted()
     {
-        Map<T, Integer> map = styles;
-        TreeMap<T, Integer> smap = new TreeMap<T, Integer>(new StyleCountComparator(map));
-        smap.putAll(map);
-        return smap;
+        Map<T, Integer> ret = new LinkedHashMap<T, Integer>(size * 2);
+        for (int i : sortedIndices(counts, size))
+            ret.put(getStyle(i), counts[i]);
+        return ret;
     }
-    
+
     //==============================================================================================
-    
+
 	@Override
-	public String toString() 
+	public String toString()
 	{
-		Map<T, Integer> map = getAllSorted();
 		StringBuilder ret = new StringBuilder();
-		for (Map.Entry<T, Integer> entry : map.entrySet())
+		for (int i : sortedIndices(counts, size))
 		{
-			ret.append(entry.getValue()).append("x(");
-			ret.append(entry.getKey().toString());
+			ret.append(counts[i]).append("x(");
+			ret.append(String.valueOf(styles[i]));
 			ret.append(") ");
 		}
 		return ret.toString();
 	}
-	
+
     //==============================================================================================
-	
+
+    @SuppressWarnings("unchecked")
+    private T getStyle(int i)
+    {
+        return (T) styles[i];
+    }
+
+    private static int hash(Object style)
+    {
+        if (style == null)
+            return 0;
+        final int h = style.hashCode() * 0x9E3779B9; //spread the bits of the poor hash codes
+        return h ^ (h >>> 16);
+    }
+
     /**
-     * A comparator used for sorting style maps according to the style count.
+     * Finds the index of a style.
+     * @return the style index or -1 when the style is not present
      */
-    class StyleCountComparator implements Comparator<T>
+    private int find(Object style, int h)
     {
-        Map<T, Integer> base;
-
-        public StyleCountComparator(Map<T, Integer> base)
+        final int mask = table.length - 1;
+        for (int slot = h & mask; table[slot] != 0; slot = (slot + 1) & mask)
         {
-            this.base = base;
+            final int i = table[slot] - 1;
+            if (hashes[i] == h && (style == null ? styles[i] == null : style.equals(styles[i])))
+                return i;
         }
+        return -1;
+    }
 
-        // Note: this comparator imposes orderings that are inconsistent with
-        // equals.
-        public int compare(T a, T b)
-        {
-            if (base.get(a) >= base.get(b))
-            {
-                return -1;
-            }
-            else
-            {
-                return 1;
-            } // returning 0 would merge keys
-        }
+    private int insert(Object style, int h)
+    {
+        if (size == styles.length)
+            grow();
+        final int i = size++;
+        styles[i] = style;
+        hashes[i] = h;
+        place(i);
+        return i;
+    }
+
+    private void place(int i)
+    {
+        final int mask = table.length - 1;
+        int slot = hashes[i] & mask;
+        while (table[slot] != 0)
+            slot = (slot + 1) & mask;
+        table[slot] = i + 1;
+    }
+
+    /**
+     * Doubles the capacity and rebuilds the hash table. The table is kept at most half full.
+     */
+    private void grow()
+    {
+        final int cap = styles.length * 2;
+        styles = Arrays.copyOf(styles, cap);
+        hashes = Arrays.copyOf(hashes, cap);
+        counts = Arrays.copyOf(counts, cap);
+        table = new int[2 * cap];
+        for (int i = 0; i < size; i++)
+            place(i);
+    }
+
+    /**
+     * Sorts the indices of the counts by the decreasing count. The equal counts are sorted
+     * by the increasing index.
+     * @param counts the counts
+     * @param size the number of counts used
+     * @return the sorted indices
+     */
+    static int[] sortedIndices(int[] counts, int size)
+    {
+        //the (count, inverted index) pairs packed to longs are sorted by a primitive sort and reversed
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++)
+            keys[i] = ((long) counts[i] << 32) | (0xffffffffL - i);
+        Arrays.sort(keys);
+        int[] ret = new int[size];
+        for (int i = 0; i < size; i++)
+            ret[i] = (int) (0xffffffffL - (keys[size - 1 - i] & 0xffffffffL));
+        return ret;
     }
 
-    
 }
@@ -0,0 +1,88 @@
+/**
+ * StylePool.java
+ */
+package org.fit.layout.classify;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fit.layout.model.Area;
+
+/**
+ * An interning pool of node styles. Each distinct style is stored only once and it is assigned a small
+ * integer ID so that the styles may be counted and compared as primitive values (e.g. using
+ * {@code styleA == styleB} for the IDs). The pool may be shared by multiple threads.
+ */
+public class StylePool
+{
+    private Map<NodeStyle, Integer> ids;
+    private List<NodeStyle> styles;
+
+    /**
+     * Creates an empty pool.
+     */
+    public StylePool()
+    {
+        ids = new HashMap<NodeStyle, Integer>();
+        styles = new ArrayList<NodeStyle>();
+    }
+
+    /**
+     * Obtains the ID of a style. A new ID is assigned when the style has not been seen before.
+     * @param style the style
+     * @return the style ID (0..{@link #size()}-1)
+     */
+    public synchronized int getId(NodeStyle style)
+    {
+        Integer id = ids.get(style);
+        if (id == null)
+        {
+            id = styles.size();
+            ids.put(style, id);
+            styles.add(style);
+        }
+        return id;
+    }
+
+    /**
+     * Computes the style of an area and obtains its ID.
+     * @param area the area
+     * @return the style ID
+     */
+    public int getId(Area area)
+    {
+        return getId(new NodeStyle(area));
+    }
+
+    /**
+     * Obtains the shared instance of a style.
+     * @param style the style
+     * @return the pooled instance equal to the given style
+     */
+    public synchronized NodeStyle intern(NodeStyle style)
+    {
+        return styles.get(getId(style));
+    }
+
+    /**
+     * Obtains the style with the given ID.
+     * @param id the style ID
+     * @return the style
+     */
+    public synchronized NodeStyle getStyle(int id)
+    {
+        return styles.get(id);
+    }
+
+    /**
+     * Obtains the number of distinct styles in the pool.
+     * @return the number of styles
+     */
+    public synchronized int size()
+    {
+        return styles.size();
+    }
+
+}
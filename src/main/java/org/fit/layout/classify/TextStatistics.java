@@ -0,0 +1,157 @@
+/**
+ * TextStatistics.java
+ */
+package org.fit.layout.classify;
+
+import org.fit.layout.model.Area;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Character class counts of the texts of all the areas of a tree. The text of each leaf area
+ * is scanned once by a single fused scanner that counts all the character classes at once;
+ * the counts of the remaining areas are summed bottom-up from their child areas so that the subtree
+ * texts are never concatenated or scanned repeatedly.
+ */
+public class TextStatistics
+{
+    private static Logger log = LoggerFactory.getLogger(TextStatistics.class);
+
+    /** Total number of characters */
+    public static final int LENGTH = 0;
+    /** Decimal digits */
+    public static final int DIGITS = 1;
+    /** Lower case letters */
+    public static final int LOWER = 2;
+    /** Upper case letters */
+    public static final int UPPER = 3;
+    /** Space separators */
+    public static final int SPACES = 4;
+    /** Punctuation characters (comma, period, semicolon and colon) */
+    public static final int PUNCT = 5;
+    /** The number of the counted classes */
+    public static final int CLASSES = 6;
+
+    private AreaTreeIndex index;
+    /** The counts of all the areas, {@link #CLASSES} values per area */
+    private int[] counts;
+    private boolean valid;
+
+    /**
+     * Computes the statistics for all the areas in the index.
+     * @param index the area tree index
+     */
+    public TextStatistics(AreaTreeIndex index)
+    {
+        this.index = index;
+        final int n = index.size();
+        counts = new int[n * CLASSES];
+        for (int i = n - 1; i >= 0; i--)
+        {
+            final int first = index.getFirstChild(i);
+            if (first == -1)
+                scan(index.getArea(i).getText(), counts, i * CLASSES);
+            else
+            {
+                for (int c = first; c != -1; c = index.getNextSibling(c))
+                    for (int k = 0; k < CLASSES; k++)
+                        counts[i * CLASSES + k] += counts[c * CLASSES + k];
+            }
+        }
+        //the aggregation assumes that the text of an area is the concatenation of its child texts
+        valid = (n == 0 || index.getRoot().getText().length() == counts[LENGTH]);
+        if (!valid)
+            log.warn("The area texts do not correspond to their child areas, not using the text statistics");
+    }
+
+    public AreaTreeIndex getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * Finds the index of an area in the statistics.
+     * @param area the area
+     * @return the area index or -1 when the statistics are not available for the area
+     */
+    public int indexOf(Area area)
+    {
+        return valid ? index.indexOf(area) : -1;
+    }
+
+    /**
+     * Obtains the number of characters of the given class in the area text.
+     * @param i the area index
+     * @param cls the character class ({@link #LENGTH}, {@link #DIGITS}, ...)
+     * @return the number of characters
+     */
+    public int getCount(int i, int cls)
+    {
+        return counts[i * CLASSES + cls];
+    }
+
+    /**
+     * Obtains the length of the area text.
+     * @param i the area index
+     * @return the text length
+     */
+    public int getLength(int i)
+    {
+        return counts[i * CLASSES + LENGTH];
+    }
+
+    /**
+     * Obtains the number of letters (non-space characters) in the area text.
+     * @param i the area index
+     * @return the number of letters
+     */
+    public int getLetterCount(int i)
+    {
+        return counts[i * CLASSES + LENGTH] - counts[i * CLASSES + SPACES];
+    }
+
+    //==================================================================
+
+    /**
+     * Counts the characters of all the classes in a string in a single pass. The counts are added
+     * to the values already present in the destination array.
+     * @param s the string to be scanned
+     * @param dest the destination array
+     * @param offset the position of the {@link #LENGTH} count in the destination array
+     */
+    public static void scan(String s, int[] dest, int offset)
+    {
+        final int len = s.length();
+        int digits = 0, lower = 0, upper = 0, spaces = 0, punct = 0;
+        for (int i = 0; i < len; i++)
+        {
+            final char ch = s.charAt(i);
+            switch (Character.getType(ch))
+            {
+                case Character.DECIMAL_DIGIT_NUMBER:
+                    digits++;
+                    break;
+                case Character.LOWERCASE_LETTER:
+                    lower++;
+                    break;
+                case Character.UPPERCASE_LETTER:
+                    upper++;
+                    break;
+                case Character.SPACE_SEPARATOR:
+                    spaces++;
+                    break;
+                default:
+                    if (ch == ',' || ch == '.' || ch == ';' || ch == ':')
+                        punct++;
+                    break;
+            }
+        }
+        dest[offset + LENGTH] += len;
+        dest[offset + DIGITS] += digits;
+        dest[offset + LOWER] += lower;
+        dest[offset + UPPER] += upper;
+        dest[offset + SPACES] += spaces;
+        dest[offset + PUNCT] += punct;
+    }
+
+}
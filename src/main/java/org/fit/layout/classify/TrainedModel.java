@@ -0,0 +1,188 @@
+/**
+ * TrainedModel.java
+ */
+package org.fit.layout.classify;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import weka.classifiers.Classifier;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * A snapshot of a trained classifier together with the header of the data set it has been
+ * trained on. The snapshot is serializable so that it may be stored in a {@link ModelCache}.
+ * The model is not modified after it has been created and it may be shared by multiple
+ * threads; the classification methods take care of the synchronization. When a compiled
+ * version of the classifier is available, it is used for the classification without
+ * any locking.
+ */
+public class TrainedModel implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private Classifier classifier;
+    private Instances header;
+    private CompiledTree compiled;
+    private ModelStatistics statistics;
+
+    /**
+     * Creates a new model snapshot.
+     * @param classifier the trained classifier
+     * @param header the header of the training data set (the instances are not used)
+     */
+    public TrainedModel(Classifier classifier, Instances header)
+    {
+        this(classifier, header, null);
+    }
+
+    /**
+     * Creates a new model snapshot with a compiled version of the classifier.
+     * @param classifier the trained classifier
+     * @param header the header of the training data set (the instances are not used)
+     * @param compiled the compiled classifier that should be used for the classification or {@code null}
+     */
+    public TrainedModel(Classifier classifier, Instances header, CompiledTree compiled)
+    {
+        this.classifier = classifier;
+        this.header = new Instances(header, 0);
+        this.compiled = compiled;
+    }
+
+    /**
+     * Creates a model snapshot with a copy of an existing model and the measured statistics.
+     * @param src the source model
+     * @param statistics the measured model statistics
+     */
+    public TrainedModel(TrainedModel src, ModelStatistics statistics)
+    {
+        this.classifier = src.classifier;
+        this.header = src.header;
+        this.compiled = src.compiled;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Obtains the trained classifier. Note that the Weka classifiers are generally not thread-safe
+     * (e.g. the filtered classifiers keep the filter state), use {@link #classifyInstance(Instance)}
+     * and {@link #distributionForInstance(Instance)} when the model is shared.
+     * @return the classifier
+     */
+    public Classifier getClassifier()
+    {
+        return classifier;
+    }
+
+    /**
+     * Obtains the header of the training data set including the class attribute setting.
+     * @return an empty data set with the training data header
+     */
+    public Instances getHeader()
+    {
+        return header;
+    }
+
+    /**
+     * Obtains the compiled version of the classifier.
+     * @return the compiled tree or {@code null} when the classifier has not been compiled
+     */
+    public CompiledTree getCompiledTree()
+    {
+        return compiled;
+    }
+
+    /**
+     * Obtains the measured training and classification cost of the model.
+     * @return the statistics or {@code null} when not available
+     */
+    public ModelStatistics getStatistics()
+    {
+        return statistics;
+    }
+
+    /**
+     * Obtains the name of the class with the given index.
+     * @param index the class index
+     * @return the class name
+     */
+    public String getClassName(int index)
+    {
+        return header.classAttribute().value(index);
+    }
+
+    /**
+     * Classifies an instance.
+     * @param instance the instance to be classified
+     * @return the index of the predicted class
+     * @throws Exception when the instance could not be classified
+     */
+    public double classifyInstance(Instance instance) throws Exception
+    {
+        if (compiled != null)
+            return VisualClassifier.getPredictedClass(compiled.distribution(instance));
+        synchronized (classifier)
+        {
+            return classifier.classifyInstance(instance);
+        }
+    }
+
+    /**
+     * Computes the class probability distribution for an instance.
+     * @param instance the instance to be classified
+     * @return the class probabilities
+     * @throws Exception when the instance could not be classified
+     */
+    public double[] distributionForInstance(Instance instance) throws Exception
+    {
+        if (compiled != null)
+            return compiled.distribution(instance);
+        synchronized (classifier)
+        {
+            return classifier.distributionForInstance(instance);
+        }
+    }
+
+    /**
+     * Computes the class probability distribution for a feature row (e.g. a row of a {@link FeatureMatrix}).
+     * The compiled classifier evaluates the row directly; otherwise, a Weka instance is created for the row.
+     * @param row the array containing the feature values in the training data attribute order
+     * @param offset the index of the first value of the row in the array
+     * @return the class probabilities
+     * @throws Exception when the row could not be classified
+     */
+    public double[] distribution(double[] row, int offset) throws Exception
+    {
+        if (compiled != null)
+        {
+            double[] ret = new double[compiled.getNumClasses()];
+            compiled.distribution(row, offset, ret);
+            return ret;
+        }
+        Instance inst = new DenseInstance(1.0, Arrays.copyOfRange(row, offset, offset + header.numAttributes()));
+        inst.setDataset(header);
+        synchronized (classifier)
+        {
+            return classifier.distributionForInstance(inst);
+        }
+    }
+
+    /**
+     * Computes the class probability distribution using a feature source. Only the compiled classifier
+     * is able to request just the values it needs; this is only available when {@link #getCompiledTree()}
+     * is not {@code null}.
+     * @param source the source of the feature values in the training data attribute order
+     * @return the class probabilities
+     * @throws IllegalStateException when there is no compiled classifier
+     */
+    public double[] distribution(FeatureSource source)
+    {
+        if (compiled == null)
+            throw new IllegalStateException("The feature sources require a compiled classifier");
+        double[] ret = new double[compiled.getNumClasses()];
+        compiled.distribution(source, ret);
+        return ret;
+    }
+
+}
@@ -0,0 +1,130 @@
+/**
+ * TreeClassification.java
+ */
+package org.fit.layout.classify;
+
+import org.fit.layout.model.Area;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * The classification context of a single area tree. It holds the features extracted from
+ * the areas of the tree in a {@link FeatureMatrix} and it classifies the individual areas using
+ * a shared trained model.
+ * A new context is created for each classified tree by {@link VisualClassifier#classifyTree(Area, FeatureExtractor)}
+ * so that a single classifier may classify multiple trees concurrently.
+ */
+public class TreeClassification
+{
+    private static Logger log = LoggerFactory.getLogger(TreeClassification.class);
+
+    private TrainedModel model;
+    private Area root;
+    private FeatureExtractor features;
+    private Instances header;
+    private FeatureMatrix matrix;
+    private Instances testset; //created on demand
+
+    /**
+     * Creates the context and extracts the features of all the areas in the tree.
+     * @param model the trained model used for the classification
+     * @param root the root node of the area tree
+     * @param features the feature extractor initialized for the tree
+     */
+    public TreeClassification(TrainedModel model, Area root, FeatureExtractor features)
+    {
+        this.model = model;
+        this.root = root;
+        this.features = features;
+        //an empty set with the same header as the training set
+        header = new Instances(model.getHeader(), 0);
+        //extract the data of all the areas
+        matrix = FeatureMatrix.extract(new AreaTreeIndex(root), features, header);
+    }
+
+    public TrainedModel getModel()
+    {
+        return model;
+    }
+
+    public Area getRoot()
+    {
+        return root;
+    }
+
+    public FeatureExtractor getFeatures()
+    {
+        return features;
+    }
+
+    /**
+     * Obtains the features of all the areas of the tree.
+     * @return the feature matrix
+     */
+    public FeatureMatrix getFeatureMatrix()
+    {
+        return matrix;
+    }
+
+    /**
+     * Obtains the data set containing the features of all the areas of the tree. The data set is
+     * created from the feature matrix when it is requested for the first time.
+     * @return the data set
+     */
+    public synchronized Instances getDataset()
+    {
+        if (testset == null)
+            testset = matrix.toInstances(header);
+        return testset;
+    }
+
+    /**
+     * Obtains the features extracted for the given area.
+     * @param area the area
+     * @return the feature instance or {@code null} when the area does not belong to the tree
+     */
+    public Instance getAreaFeatures(Area area)
+    {
+        final int i = matrix.getIndex().indexOf(area);
+        return (i == -1) ? null : matrix.getInstance(i, header);
+    }
+
+    /**
+     * Classifies an area of the tree.
+     * @param area the area to classify
+     * @return the name of the assigned class or {@code null} when the area could not be classified
+     */
+    public String classifyArea(Area area)
+    {
+        double[] dist = distributionForArea(area);
+        if (dist != null)
+            return model.getClassName(VisualClassifier.getPredictedClass(dist));
+        else
+            return null;
+    }
+
+    /**
+     * Computes the class probability distribution for an area of the tree.
+     * @param area the area to classify
+     * @return the class probabilities or {@code null} when the area could not be classified
+     */
+    public double[] distributionForArea(Area area)
+    {
+        final int i = matrix.getIndex().indexOf(area);
+        if (i != -1)
+        {
+            try {
+                return model.distribution(matrix.getData(), matrix.getOffset(i));
+            } catch (Exception e) {
+                log.error("distributionForArea: error: {}", e.getMessage());
+                return null;
+            }
+        }
+        else
+            return null;
+    }
+
+}
@@ -5,15 +5,21 @@
  */
 package org.fit.layout.classify;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.fit.layout.model.Area;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
 import weka.classifiers.meta.FilteredClassifier;
 import weka.core.Instance;
 import weka.core.Instances;
@@ -21,6 +27,11 @@ import weka.core.converters.ConverterUtils.DataSource;
 import weka.filters.Filter;
 
 /**
+ * A visual area classifier based on a trained model. The classifier does not use any state
+ * of the classified trees; a single instance may be shared by multiple threads that classify
+ * different trees. Only the context of the last classified tree is retained for the deprecated
+ * single-tree API.
+ * 
  * @author radek
  *
  */
@@ -28,16 +39,20 @@ public class VisualClassifier
 {
     private static Logger log = LoggerFactory.getLogger(VisualClassifier.class);
     
-	private Filter filter;
-	private AbstractClassifier classifier;
-	private Instances trainset;
-	private Instances testset;
-	private HashMap<Area, Instance> mapping; //mapping testing instances to area tree nodes
-	private Area testRoot;
-	private FeatureExtractor features;
+    /** The maximal number of training instances used for measuring the classification latency. */
+    private static final int LATENCY_SAMPLES = 1000;
+    /** Subtrees smaller than this number of areas are not split to further tasks in the parallel classification. */
+    private static final int PARALLEL_THRESHOLD = 64;
+    
+	private TrainedModel model;
+	/** The context of the last classified tree used by the deprecated single-tree API. It keeps the features
+	 *  of the whole tree reachable until the next tree is classified. */
+	private volatile TreeClassification lastClassification;
+	private volatile boolean lazyFeatures = true;
 	
 	/**
-	 * Creates the classifier and trains it with the given training ARFF file.
+	 * Creates the classifier and trains it with the given training ARFF file. When a model trained
+	 * on the same data is available in the default {@link ModelCache}, it is used instead of training.
 	 *  
 	 * @param trainfile path to the training ARFF file. Use the {@code res:} prefix for denoting
 	 * classpath resources (e.g. {@code res:train.arff}).
@@ -45,157 +60,665 @@ public class VisualClassifier
 	 */
 	public VisualClassifier(String trainfile, int classindex)
 	{
-		train(trainfile, classindex);
+		this(trainfile, classindex, ModelCache.getDefault());
+	}
+	
+    /**
+     * Creates the classifier and trains it with the given training ARFF file.
+     *  
+     * @param trainfile path to the training ARFF file. Use the {@code res:} prefix for denoting
+     * classpath resources (e.g. {@code res:train.arff}).
+     * @param classindex index of the class attribute in the ARFF file
+     * @param cache the model cache to be used or {@code null} for always training a new model
+     */
+	public VisualClassifier(String trainfile, int classindex, ModelCache cache)
+	{
+	    this(loadModel(trainfile, classindex, cache));
+	}
+	
+	/**
+	 * Creates the classifier from an already trained model.
+	 * @param model the trained model or {@code null} when no model is available (no classification is performed then)
+	 */
+	public VisualClassifier(TrainedModel model)
+	{
+	    this.model = model;
 	}
 	
 	/**
-	 * Classifies the areas in an area tree.
+	 * Obtains the trained model used by this classifier.
+	 * @return the model or {@code null} when no model is available
+	 */
+	public TrainedModel getModel()
+	{
+	    return model;
+	}
+	
+	/**
+	 * Checks whether the features are computed lazily during the single-pass classification.
+	 * @return {@code true} when the lazy feature evaluation is enabled
+	 * @see #setLazyFeatures(boolean)
+	 */
+	public boolean isLazyFeatures()
+	{
+	    return lazyFeatures;
+	}
+	
+	/**
+	 * Enables or disables the lazy feature evaluation in the single-pass classification. When enabled and
+	 * the model is a compiled tree whose attributes correspond to the {@link FeatureRegistry} of the
+	 * feature extractor, each feature of an area is computed only when it is tested on the decision path
+	 * of the area (see {@link LazyFeatureRow}). Otherwise, all the features used by the model are computed
+	 * for each area. The results are the same in both cases. The lazy evaluation is enabled by default.
+	 * @param lazyFeatures {@code true} for enabling the lazy evaluation
+	 */
+	public void setLazyFeatures(boolean lazyFeatures)
+	{
+	    this.lazyFeatures = lazyFeatures;
+	}
+	
+	/**
+	 * Obtains a trained model for the given training file using the default classifier backend. 
+	 * The model is loaded from the cache when available, otherwise, it is trained and stored to the cache.
+	 * 
+     * @param trainfile path to the training ARFF file. Use the {@code res:} prefix for denoting
+     * classpath resources (e.g. {@code res:train.arff}).
+     * @param classindex index of the class attribute in the ARFF file
+     * @param cache the model cache to be used or {@code null} for always training a new model
+	 * @return the trained model or {@code null} when the training failed
+	 */
+	public static TrainedModel loadModel(String trainfile, int classindex, ModelCache cache)
+	{
+	    return loadModel(trainfile, classindex, ClassifierBackends.DEFAULT_BACKEND, null, cache);
+	}
+	
+	/**
+	 * Obtains a trained model for the given training file. The model is loaded from the cache
+	 * when available, otherwise, it is trained and stored to the cache.
+	 * 
+     * @param trainfile path to the training ARFF file. Use the {@code res:} prefix for denoting
+     * classpath resources (e.g. {@code res:train.arff}).
+     * @param classindex index of the class attribute in the ARFF file
+	 * @param backendId the ID of the classifier backend to be used
+	 * @param options the classifier options or {@code null} for the default backend options
+     * @param cache the model cache to be used or {@code null} for always training a new model
+	 * @return the trained model or {@code null} when the training failed
+	 */
+	public static TrainedModel loadModel(String trainfile, int classindex, String backendId, String options, ModelCache cache)
+	{
+	    try
+	    {
+	        ClassifierBackend backend = ClassifierBackends.findBackend(backendId);
+	        if (backend == null)
+	        {
+	            log.error("Unknown classifier backend {}", backendId);
+	            return null;
+	        }
+	        if (options == null)
+	            options = backend.getDefaultOptions();
+	        
+	        byte[] data = readTrainingFile(trainfile);
+	        if (data == null)
+	        {
+	            log.error("Couldn't open training file {}", trainfile);
+	            return null;
+	        }
+	        
+	        String key = null;
+	        if (cache != null)
+	        {
+	            key = ModelCache.computeKey(data, classindex, backend.getId(), options);
+	            TrainedModel cached = cache.load(key);
+	            if (cached != null)
+	            {
+	                log.info("Using the cached model {} for {}", key, trainfile);
+	                return cached;
+	            }
+	        }
+	        
+	        TrainedModel model = train(data, classindex, backend, options);
+	        if (cache != null)
+	            cache.store(key, model);
+	        return model;
+	        
+	    } catch (Exception e) {
+            log.error("Classifier training failed: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+	    }
+	}
+	
+	/**
+	 * Classifies the areas in an area tree. The features of all the areas are extracted and
+	 * stored in a new classification context that may be used for classifying the individual areas.
+	 * The classifier itself is not modified so that multiple trees may be classified concurrently
+	 * using a single shared classifier.
+	 * <p>
+	 * For the deprecated {@link #classifyArea(Area)} and {@link #distributionForArea(Area)}, the returned
+	 * context (including the extracted features of the whole tree) is retained by the classifier until
+	 * the next call of this method.
 	 * 
 	 * @param root the root node of the area tree
+	 * @param features the feature extractor initialized for the tree
+	 * @return the classification context of the tree or {@code null} when no model is available
 	 */
-	public void classifyTree(Area root, FeatureExtractor features)
+	public TreeClassification classifyTree(Area root, FeatureExtractor features)
 	{
-	    if (classifier != null)
+	    if (model != null)
 	    {
 	        System.out.print("tree visual classification...");
-	        testRoot = root;
-	        this.features = features;
-    	    //create a new empty set with the same header as the training set
-    	    testset = new Instances(trainset, 0);
-    	    //create an empty mapping
-    	    mapping = new HashMap<Area, Instance>();
-    	    //fill the set with the data
-    	    recursivelyExtractAreaData(testRoot);
+	        TreeClassification ret = new TreeClassification(model, root, features);
+	        lastClassification = ret;
     	    System.out.println("done");
+    	    return ret;
+	    }
+	    else
+	        return null;
+	}
+	
+	/**
+	 * Classifies the areas in an area tree in a single pass. The features of each area are
+	 * extracted, the area is classified and the result is passed to the listener immediately;
+	 * no data is retained for the already classified areas.
+	 * 
+	 * @param root the root node of the area tree
+	 * @param features the feature extractor initialized for the tree
+	 * @param listener the listener that receives the results
+	 */
+	public void classifyTree(Area root, FeatureExtractor features, ClassificationListener listener)
+	{
+	    classifyTree(root, features, listener, null, null);
+	}
+	
+	/**
+	 * Classifies the areas in an area tree using multiple threads. The tree is split to subtree tasks
+	 * that extract the features and classify the areas concurrently in the given pool. When all
+	 * the areas are classified, the results are passed to the listener in the calling thread in the
+	 * same (pre-)order as in {@link #classifyTree(Area, FeatureExtractor, ClassificationListener)} so that
+	 * the listener does not have to be thread-safe and the results are the same as in the sequential mode.
+	 * <p>
+	 * The feature extractor must allow calling {@link FeatureExtractor#getAreaFeatures(Area, Instances)}
+	 * from multiple threads once it has been initialized with {@link FeatureExtractor#setTree(Area)}.
+	 * 
+	 * @param root the root node of the area tree
+	 * @param features the feature extractor initialized for the tree
+	 * @param listener the listener that receives the results
+	 * @param pool the pool used for running the tasks
+	 */
+	public void classifyTree(Area root, FeatureExtractor features, ClassificationListener listener, ForkJoinPool pool)
+	{
+	    classifyTree(root, features, listener, null, pool);
+	}
+	
+	/**
+	 * Classifies the areas in an area tree with optional pruning. When the pruning rule decides to prune
+	 * an area, the area is passed to the listener but its descendants are skipped. The classification
+	 * is performed sequentially in a single pass or in parallel when a pool is given (see 
+	 * {@link #classifyTree(Area, FeatureExtractor, ClassificationListener, ForkJoinPool)}); both modes
+	 * produce the same results.
+	 * 
+	 * @param root the root node of the area tree
+	 * @param features the feature extractor initialized for the tree
+	 * @param listener the listener that receives the results
+	 * @param pruning the pruning rule or {@code null} for classifying all the areas
+	 * @param pool the pool used for the parallel classification or {@code null} for the sequential classification
+	 */
+	public void classifyTree(Area root, FeatureExtractor features, ClassificationListener listener, 
+	        ConfidencePruning pruning, ForkJoinPool pool)
+	{
+	    if (model != null)
+	    {
+	        //an empty data set used as the header for all the created instances
+	        Instances dataset = new Instances(model.getHeader(), 0);
+	        //a reusable feature row when the extractor is able to fill it directly
+	        final boolean rows = FeatureMatrix.isRowExtractor(features, dataset);
+	        final int rowSize = FeatureMatrix.getRowSize(features, dataset);
+	        //compute the features on demand when possible
+	        final LazyFeatureRow lazy = (rows && lazyFeatures) ? createLazyRow((FeatureRowExtractor) features, dataset) : null;
+	        //otherwise, skip the features that are not used by the model
+	        final FeatureSelection selection = (rows && lazy == null) ? selectFeatures((FeatureRowExtractor) features, dataset) : null;
+	        if (pool == null)
+	        {
+	            double[] row = (rows && lazy == null) ? new double[rowSize] : null;
+	            recursivelyClassify(root, features, dataset, row, selection, lazy, listener, pruning);
+	        }
+	        else
+	        {
+    	        //number the areas in pre-order
+    	        AreaTreeIndex index = new AreaTreeIndex(root);
+    	        final int n = index.size();
+    	        Area[] nodes = new Area[n];
+    	        int[] subtreeEnd = new int[n];
+    	        for (int i = 0; i < n; i++)
+    	        {
+    	            nodes[i] = index.getArea(i);
+    	            nodes[i].getTopology(); //may be created lazily, initialize sequentially
+    	            subtreeEnd[i] = index.getSubtreeEnd(i);
+    	        }
+    	        
+    	        //classify in parallel; each task stores the features to its own rows of the matrix
+    	        FeatureMatrix matrix = (rows && lazy == null) ? new FeatureMatrix(index, rowSize) : null;
+    	        double[][] results = new double[n][];
+    	        pool.invoke(new SubtreeClassificationTask(nodes, subtreeEnd, 0, features, dataset, matrix, selection, lazy, results, pruning));
+    	        
+    	        //pass the results in the sequential order
+    	        for (int i = 0; i < n; i++)
+    	        {
+    	            if (results[i] != null)
+    	                listener.areaClassified(nodes[i], results[i]);
+    	        }
+	        }
+	        if (selection != null)
+	            log.debug("Feature extraction: {}", selection);
+	        if (lazy != null)
+	            log.debug("Lazy feature evaluation: {}", lazy);
 	    }
 	}
 	
+    /**
+     * Classifies an area of the tree classified by the last call of {@link #classifyTree(Area, FeatureExtractor)}.
+     * @param area the area to classify
+     * @return the name of the assigned class or {@code null} when the area could not be classified
+     * @deprecated This is not safe when multiple trees are classified concurrently. Use
+     * {@link TreeClassification#classifyArea(Area)} on the context returned by {@link #classifyTree(Area, FeatureExtractor)}.
+     */
+    @Deprecated
     public String classifyArea(Area area)
     {
-        if (mapping != null)
-        {
-            Instance data = mapping.get(area);
-            if (data != null)
-            {
-                try {
-                    double n = classifier.classifyInstance(data);
-                    return getClassName((int) n);
-                } catch (Exception e) {
-                    System.out.println("classifyArea: error: " + e.getMessage());
-                    e.printStackTrace();
-                    return null;
-                }
-            }
-            else
-                return null;
-        }
-        else
-            return null;
+        TreeClassification last = lastClassification;
+        return (last == null) ? null : last.classifyArea(area);
     }
     
+    /**
+     * Computes the class distribution for an area of the tree classified by the last call of
+     * {@link #classifyTree(Area, FeatureExtractor)}.
+     * @param area the area to classify
+     * @return the class probabilities or {@code null} when the area could not be classified
+     * @deprecated This is not safe when multiple trees are classified concurrently. Use
+     * {@link TreeClassification#distributionForArea(Area)} on the context returned by {@link #classifyTree(Area, FeatureExtractor)}.
+     */
+    @Deprecated
     public double[] distributionForArea(Area area)
     {
-        if (mapping != null)
+        TreeClassification last = lastClassification;
+        return (last == null) ? null : last.distributionForArea(area);
+    }
+    
+    /**
+     * Finds the predicted class index for the given class probability distribution. This
+     * corresponds to the result of Weka's {@code classifyInstance()}.
+     * @param distribution the class probability distribution
+     * @return the index of the most probable class
+     */
+    public static int getPredictedClass(double[] distribution)
+    {
+        int maxIndex = 0;
+        double max = 0;
+        for (int i = 0; i < distribution.length; i++)
         {
-            Instance data = mapping.get(area);
-            if (data != null)
+            if (distribution[i] > max)
             {
-                try {
-                    return classifier.distributionForInstance(data);
-                } catch (Exception e) {
-                    System.out.println("classifyArea: error: " + e.getMessage());
-                    e.printStackTrace();
-                    return null;
-                }
+                maxIndex = i;
+                max = distribution[i];
             }
-            else
-                return null;
         }
-        else
-            return null;
+        return maxIndex;
     }
     
     public String getClassName(int index)
     {
-        return trainset.classAttribute().value(index);
+        return model.getClassName(index);
     }
 	
 	
 	//==================================================================
 	
-	private void train(String resource, int classindex)
+	/**
+	 * Loads a training data set.
+     * @param trainfile path to the training ARFF file. Use the {@code res:} prefix for denoting
+     * classpath resources (e.g. {@code res:train.arff}).
+     * @param classindex index of the class attribute in the ARFF file
+	 * @return the loaded data set
+	 * @throws Exception when the file could not be read or parsed
+	 */
+	public static Instances loadTrainingData(String trainfile, int classindex) throws Exception
 	{
-        try
+	    byte[] data = readTrainingFile(trainfile);
+	    if (data == null)
+	        throw new IOException("Couldn't open training file " + trainfile);
+	    return parseTrainingData(data, classindex);
+	}
+	
+	/**
+	 * Creates a new untrained classifier used for the visual classification. The classifier created by the
+	 * backend is combined with the standardization filter.
+	 * @param backend the classifier backend
+	 * @param options the classifier options or {@code null} for the default options 
+	 * @return the created classifier
+	 * @throws Exception when the classifier could not be created
+	 */
+	public static FilteredClassifier createClassifier(ClassifierBackend backend, String options) throws Exception
+	{
+        //initialize the filter
+        Filter filter = new weka.filters.unsupervised.attribute.Standardize();
+        //filter = new weka.filters.unsupervised.attribute.Normalize();
+        //filter.setInputFormat(tdata);
+        
+        //filter = new weka.filters.unsupervised.attribute.Remove();
+        //((weka.filters.unsupervised.attribute.Remove) filter).setAttributeIndices("1,25"); //do not include ID and MARKEDNESS
+        //filter.setInputFormat(tdata);
+        //trainset = Filter.useFilter(tdata, remove);
+        
+        FilteredClassifier fc = new FilteredClassifier();
+        fc.setFilter(filter);
+        fc.setClassifier(backend.createClassifier(options));
+        return fc;
+	}
+	
+	//==================================================================
+	
+	private static Instances parseTrainingData(byte[] data, int classindex) throws Exception
+	{
+        DataSource source = new DataSource(new ByteArrayInputStream(data));
+        Instances tdata = source.getDataSet();
+        tdata.setClassIndex(classindex);
+        return tdata;
+	}
+	
+	private static TrainedModel train(byte[] data, int classindex, ClassifierBackend backend, String options) throws Exception
+	{
+        //open the data file
+        Instances tdata = parseTrainingData(data, classindex);
+        
+        //build the classifier
+        System.err.print("filter...build...");
+        FilteredClassifier fc = createClassifier(backend, options);
+        Classifier cls = fc.getClassifier();
+        final long t0 = System.currentTimeMillis();
+        fc.buildClassifier(tdata);
+        final long trainTime = System.currentTimeMillis() - t0;
+        
+        if (cls instanceof weka.classifiers.trees.J48)
+            System.out.println(((weka.classifiers.trees.J48) cls).toString());
+        
+        //compile the classifier when possible; use the compiled version only when it gives the same results
+        CompiledTree compiled = CompiledTree.compile(fc, tdata);
+        if (compiled != null)
         {
-            //analyze the path
-            InputStream is;
-            if (resource.startsWith("res:"))
-                is = getClass().getResourceAsStream("/" + resource.substring(4));
+            int diff = compiled.verify(fc, tdata);
+            if (diff == 0)
+                log.info("Using compiled classifier {}", compiled);
             else
-                is = new FileInputStream(resource);
-
-            if (is == null)
             {
-                log.error("Couldn't open training file {}", resource);
-                return;
+                log.warn("Compiled classifier differs on {} of {} training instances, not using", diff, tdata.numInstances());
+                compiled = null;
             }
-            
-            //open the data file
-            DataSource source = new DataSource(is);
-            Instances tdata = source.getDataSet();
-            tdata.setClassIndex(classindex);
-            
-            //initialize the filter
-            System.err.print("filter...");
-            filter = new weka.filters.unsupervised.attribute.Standardize();
-            //filter = new weka.filters.unsupervised.attribute.Normalize();
-            //filter.setInputFormat(tdata);
-            
-            //filter = new weka.filters.unsupervised.attribute.Remove();
-            //((weka.filters.unsupervised.attribute.Remove) filter).setAttributeIndices("1,25"); //do not include ID and MARKEDNESS
-            //filter.setInputFormat(tdata);
-            //trainset = Filter.useFilter(tdata, remove);
-            trainset = tdata;
-            
-            //build the classifier
-            System.err.print("build...");
-            //AbstractClassifier cls = new weka.classifiers.bayes.NaiveBayes();
-            //AbstractClassifier cls = new weka.classifiers.functions.MultilayerPerceptron();
-            //cls.setOptions(weka.core.Utils.splitOptions("-L 0.3 -M 0.2 -N 500 -V 0 -S 0 -E 20 -H a"));
-            AbstractClassifier cls = new weka.classifiers.trees.J48();
-            cls.setOptions(weka.core.Utils.splitOptions("-C 0.25 -M 2"));
-            //AbstractClassifier cls = new weka.classifiers.functions.LibSVM();
-            //cls.setOptions(weka.core.Utils.splitOptions("-S 0 -K 2 -D 3 -G 0.5 -R 0.0 -N 0.5 -M 40.0 -C 128.0 -E 0.0010 -P 0.1"));
-            
-            FilteredClassifier fc = new FilteredClassifier();
-            fc.setFilter(filter);
-            fc.setClassifier(cls);
-            
-            classifier = fc;
-            classifier.buildClassifier(trainset);
-            
-            if (cls instanceof weka.classifiers.trees.J48)
-                System.out.println(((weka.classifiers.trees.J48) cls).toString());
-            
+        }
+        
+        TrainedModel model = new TrainedModel(fc, tdata, compiled);
+        
+        //measure the classification latency on the training data (the first pass is a warm-up)
+        final int samples = Math.min(tdata.numInstances(), LATENCY_SAMPLES);
+        double latency = 0;
+        for (int pass = 0; pass < 2 && samples > 0; pass++)
+        {
+            final long t1 = System.nanoTime();
+            for (int i = 0; i < samples; i++)
+                model.distributionForInstance(tdata.instance(i));
+            latency = (System.nanoTime() - t1) / (double) samples;
+        }
+        ModelStatistics stats = new ModelStatistics(backend.getId(), options, tdata.numInstances(), 
+                trainTime, latency, ModelStatistics.serializedSize(fc));
+        log.info("Trained model: {}", stats);
+        
+        return new TrainedModel(model, stats);
+	}
+	
+	/**
+	 * Reads the complete training file.
+	 * @param resource the file path or a {@code res:} resource name
+	 * @return the file contents or {@code null} when the file does not exist
+	 * @throws IOException
+	 */
+	private static byte[] readTrainingFile(String resource) throws IOException
+	{
+        //analyze the path
+        InputStream is;
+        if (resource.startsWith("res:"))
+            is = VisualClassifier.class.getResourceAsStream("/" + resource.substring(4));
+        else
+            is = new FileInputStream(resource);
+        if (is == null)
+            return null;
+        
+        try
+        {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            byte[] buf = new byte[65536];
+            int n;
+            while ((n = is.read(buf)) != -1)
+                os.write(buf, 0, n);
+            return os.toByteArray();
+        }
+        finally
+        {
             is.close();
-            
-        } catch (Exception e) {
-            classifier = null;
-            log.error("Classifier training failed: " + e.getMessage());
-            e.printStackTrace();
         }
 	}
 	
-	private void recursivelyExtractAreaData(Area root)
+	private void recursivelyClassify(Area root, FeatureExtractor features, Instances dataset, double[] row,
+	        FeatureSelection selection, LazyFeatureRow lazy, ClassificationListener listener, ConfidencePruning pruning)
+	{
+	    double[] dist = computeDistribution(root, features, dataset, row, 0, selection, lazy);
+	    if (dist != null)
+	        listener.areaClassified(root, dist);
+	    if (pruning != null)
+	    {
+	        pruning.addVisited();
+	        if (pruning.prune(dist))
+	        {
+	            pruning.addSkipped(countDescendants(root));
+	            return;
+	        }
+	    }
+        //repeat recursively for subareas
+        for (int i = 0; i < root.getChildCount(); i++)
+            recursivelyClassify(root.getChildArea(i), features, dataset, row, selection, lazy, listener, pruning);
+	}
+	
+	/**
+	 * Selects the features that are used by the compiled model. The remaining features are not computed
+	 * during the classification.
+	 * @return the selection or {@code null} when all the features should be computed
+	 */
+	private FeatureSelection selectFeatures(FeatureRowExtractor features, Instances dataset)
+	{
+	    final FeatureRegistry registry = features.getFeatureRegistry();
+	    final CompiledTree compiled = model.getCompiledTree();
+	    if (!matchesRegistry(registry, compiled, dataset))
+	        return null; //the used attributes are not known
+	    final FeatureSelection ret = registry.select(compiled.getUsedAttributes());
+	    return ret.getSkipped().isEmpty() ? null : ret;
+	}
+	
+	/**
+	 * Creates a lazy feature row when the compiled model is able to request the features from the
+	 * feature registry directly.
+	 * @return the created row or {@code null} when the lazy evaluation cannot be used
+	 */
+	private LazyFeatureRow createLazyRow(FeatureRowExtractor features, Instances dataset)
+	{
+	    final FeatureRegistry registry = features.getFeatureRegistry();
+	    if (!matchesRegistry(registry, model.getCompiledTree(), dataset))
+	        return null;
+	    return new LazyFeatureRow(registry);
+	}
+	
+	/**
+	 * Checks whether all the attributes tested by the compiled tree correspond to the declared features.
+	 */
+	private boolean matchesRegistry(FeatureRegistry registry, CompiledTree compiled, Instances dataset)
+	{
+	    if (registry == null || compiled == null)
+	        return false;
+	    for (int a : compiled.getUsedAttributes())
+	    {
+	        if (a >= registry.size() || !registry.getFeature(a).getName().equals(dataset.attribute(a).name()))
+	            return false;
+	    }
+	    return true;
+	}
+	
+	private int countDescendants(Area root)
 	{
-	    //describe the area and add to the testing set
-	    Instance data = features.getAreaFeatures(root, testset);
-	    testset.add(data);
-	    //store the mapping
-	    mapping.put(root, data);
-	    //repeat recursively for subareas
+	    int ret = root.getChildCount();
 	    for (int i = 0; i < root.getChildCount(); i++)
-	        recursivelyExtractAreaData(root.getChildArea(i));
+	        ret += countDescendants(root.getChildArea(i));
+	    return ret;
+	}
+	
+	/**
+	 * Computes the class distribution for an area.
+	 * @param row the array used for storing the feature values or {@code null} when the extractor
+	 * is not a {@link FeatureRowExtractor}
+	 * @param offset the index of the first feature value in the row array
+	 * @param selection the features to be computed or {@code null} for all the features
+	 * @param lazy the row used for computing the features on demand or {@code null} when the features
+	 * should be extracted in advance
+	 */
+	private double[] computeDistribution(Area area, FeatureExtractor features, Instances dataset, 
+	        double[] row, int offset, FeatureSelection selection, LazyFeatureRow lazy)
+	{
+        try {
+            if (lazy != null)
+            {
+                lazy.setArea(area);
+                return model.distribution(lazy);
+            }
+            else if (row != null)
+            {
+                if (selection != null)
+                {
+                    final long t0 = System.nanoTime();
+                    ((FeatureRowExtractor) features).getAreaFeatures(area, row, offset, selection.getRequired());
+                    selection.addExtraction(System.nanoTime() - t0);
+                }
+                else
+                    ((FeatureRowExtractor) features).getAreaFeatures(area, row, offset);
+                return model.distribution(row, offset);
+            }
+            else
+            {
+                Instance data = features.getAreaFeatures(area, dataset);
+                return model.distributionForInstance(data);
+            }
+        } catch (Exception e) {
+            log.error("Couldn't classify area {}: {}", area, e.getMessage());
+            return null;
+        }
+	}
+	
+	//==================================================================
+	
+	/**
+	 * Classifies an area and its descendants. The child subtrees are classified in separate tasks
+	 * unless they are too small.
+	 */
+	private class SubtreeClassificationTask extends RecursiveAction
+	{
+        private static final long serialVersionUID = 1L;
+        
+        private Area[] nodes;
+	    private int[] subtreeEnd;
+	    private int index;
+	    private FeatureExtractor features;
+	    private Instances dataset;
+	    private FeatureMatrix matrix;
+	    private FeatureSelection selection;
+	    private LazyFeatureRow lazy;
+	    private double[][] results;
+	    private ConfidencePruning pruning;
+	    
+        public SubtreeClassificationTask(Area[] nodes, int[] subtreeEnd, int index, FeatureExtractor features,
+                Instances dataset, FeatureMatrix matrix, FeatureSelection selection, LazyFeatureRow lazy,
+                double[][] results, ConfidencePruning pruning)
+        {
+            this.nodes = nodes;
+            this.subtreeEnd = subtreeEnd;
+            this.index = index;
+            this.features = features;
+            this.dataset = dataset;
+            this.matrix = matrix;
+            this.selection = selection;
+            this.lazy = lazy;
+            this.results = results;
+            this.pruning = pruning;
+        }
+
+        @Override
+        protected void compute()
+        {
+            //each task computes the lazy features in its own row
+            final LazyFeatureRow own = (lazy == null) ? null : new LazyFeatureRow(lazy.getRegistry());
+            try
+            {
+                classifySubtree(own);
+            }
+            finally
+            {
+                if (own != null)
+                    lazy.merge(own);
+            }
+        }
+        
+        private void classifySubtree(LazyFeatureRow own)
+        {
+            if (!classify(index, own))
+                return;
+            List<SubtreeClassificationTask> tasks = new ArrayList<SubtreeClassificationTask>();
+            int child = index + 1;
+            while (child < subtreeEnd[index])
+            {
+                if (subtreeEnd[child] - child >= PARALLEL_THRESHOLD)
+                    tasks.add(new SubtreeClassificationTask(nodes, subtreeEnd, child, features, dataset, matrix, selection, lazy, results, pruning));
+                else
+                {
+                    //small subtree, classify sequentially in pre-order
+                    int i = child;
+                    while (i < subtreeEnd[child])
+                        i = classify(i, own) ? i + 1 : subtreeEnd[i];
+                }
+                child = subtreeEnd[child];
+            }
+            if (!tasks.isEmpty())
+                invokeAll(tasks);
+        }
+        
+        /**
+         * Classifies a single area.
+         * @param i the area index
+         * @param own the lazy feature row of the task or {@code null}
+         * @return {@code true} when the descendants should be classified as well
+         */
+        private boolean classify(int i, LazyFeatureRow own)
+        {
+            if (own != null)
+                results[i] = computeDistribution(nodes[i], features, dataset, null, 0, null, own);
+            else if (matrix != null)
+                results[i] = computeDistribution(nodes[i], features, dataset, matrix.getData(), matrix.getOffset(i), selection, null);
+            else
+                results[i] = computeDistribution(nodes[i], features, dataset, null, 0, null, null);
+            if (pruning != null)
+            {
+                pruning.addVisited();
+                if (pruning.prune(results[i]))
+                {
+                    pruning.addSkipped(subtreeEnd[i] - i - 1);
+                    return false;
+                }
+            }
+            return true;
+        }
 	}
 	
 }
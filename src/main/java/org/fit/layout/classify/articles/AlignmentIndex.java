@@ -0,0 +1,174 @@
+/**
+ * AlignmentIndex.java
+ */
+package org.fit.layout.classify.articles;
+
+import org.fit.layout.classify.AreaTreeIndex;
+import org.fit.layout.model.Area;
+
+/**
+ * Precomputed centering and indentation of all the areas of a tree. The centering of an area
+ * depends on the nearest preceding and following siblings whose centering may be decided; these
+ * are found for all the children of a parent area in a single forward and a single backward pass
+ * instead of walking the siblings repeatedly for each area. The results are identical to the
+ * recursive computation in {@link ArticleFeatureExtractor}.
+ */
+public class AlignmentIndex
+{
+    private AreaTreeIndex index;
+    /** Centering of the areas: 0 not centered, 1 centered, 2 unknown */
+    private byte[] centering;
+    /** Indentation metric of the areas or NaN when it could not be computed */
+    private double[] indentation;
+
+    /**
+     * Computes the alignment of all the areas in the index.
+     * @param index the area tree index
+     */
+    public AlignmentIndex(AreaTreeIndex index)
+    {
+        this.index = index;
+        final int n = index.size();
+        centering = new byte[n];
+        if (n > 0)
+            centering[0] = 2; //the parent is not indexed, see indexOf()
+        int[] pos = new int[n];
+        byte[] before = new byte[n]; //centering when comparing with the preceding siblings only
+        byte[] after = new byte[n]; //centering when comparing with the following siblings only
+        int[] prevDecided = new int[n];
+        int[] nextDecided = new int[n];
+        int[] children = new int[n];
+        for (int p = 0; p < n; p++)
+        {
+            final int first = index.getFirstChild(p);
+            if (first != -1)
+            {
+                final Area parent = index.getArea(p);
+                //forward pass: positions and the centering decided from the preceding siblings
+                int last = -1;
+                int cnt = 0;
+                for (int c = first; c != -1; c = index.getNextSibling(c))
+                {
+                    children[cnt++] = c;
+                    pos[c] = ArticleFeatureExtractor.getCenteringPosition(index.getArea(c), parent);
+                    prevDecided[c] = last;
+                    before[c] = (byte) decide(c, pos[c], last, before, -1, after);
+                    if (before[c] != 2)
+                        last = c;
+                }
+                //backward pass: the centering decided from the following siblings
+                last = -1;
+                for (int k = cnt - 1; k >= 0; k--)
+                {
+                    final int c = children[k];
+                    nextDecided[c] = last;
+                    after[c] = (byte) decide(c, pos[c], -1, before, last, after);
+                    if (after[c] != 2)
+                        last = c;
+                }
+                //final centering using both directions
+                for (int k = 0; k < cnt; k++)
+                {
+                    final int c = children[k];
+                    centering[c] = (byte) decide(c, pos[c], prevDecided[c], before, nextDecided[c], after);
+                }
+            }
+        }
+        computeIndentation();
+    }
+
+    /**
+     * Finds the index of an area. The root of the index is not reported since its siblings are not
+     * indexed (the index may be created for a subtree); its alignment must be computed recursively.
+     * @param area the area
+     * @return the area index or -1 when the area is not indexed or it is the root of the index
+     */
+    public int indexOf(Area area)
+    {
+        final int i = index.indexOf(area);
+        return (i > 0) ? i : -1;
+    }
+
+    /**
+     * Obtains the centering of an area.
+     * @param i the area index
+     * @return 0 when certailny not centered, 1 when certainly centered, 2 when not sure
+     */
+    public int getCentering(int i)
+    {
+        return centering[i];
+    }
+
+    /**
+     * Obtains the indentation metric of an area.
+     * @param i the area index
+     * @return the indentation metric (0..1) or NaN when it is not available for the area
+     */
+    public double getIndentation(int i)
+    {
+        return indentation[i];
+    }
+
+    //==================================================================
+
+    private int decide(int c, int pos, int prev, byte[] before, int next, byte[] after)
+    {
+        final int pc = (prev == -1) ? 2 : before[prev];
+        final int nc = (next == -1) ? 2 : after[next];
+        return ArticleFeatureExtractor.decideCentering(index.getArea(c), pos,
+                pc, (prev == -1) ? null : index.getArea(prev),
+                nc, (next == -1) ? null : index.getArea(next));
+    }
+
+    /**
+     * Computes the indentation of all the areas. The areas that follow another area on the same line
+     * use the indentation of the first area on the line.
+     */
+    private void computeIndentation()
+    {
+        final int n = index.size();
+        indentation = new double[n];
+        byte[] state = new byte[n]; //0 = not computed, 1 = in progress, 2 = done
+        int[] path = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            int len = 0;
+            int j = i;
+            double val;
+            while (true)
+            {
+                if (state[j] == 2)
+                {
+                    val = indentation[j];
+                    break;
+                }
+                if (state[j] == 1) //a cycle in the line links
+                {
+                    val = Double.NaN;
+                    break;
+                }
+                state[j] = 1;
+                path[len++] = j;
+                Area area = index.getArea(j);
+                Area prev = area.getTopology().getPreviousOnLine();
+                if (prev == null)
+                {
+                    val = ArticleFeatureExtractor.computeIndentation(area, centering[j] == 1);
+                    break;
+                }
+                j = indexOf(prev);
+                if (j == -1) //not in this tree or the root, cannot be computed here
+                {
+                    val = Double.NaN;
+                    break;
+                }
+            }
+            for (int k = 0; k < len; k++)
+            {
+                indentation[path[k]] = val;
+                state[path[k]] = 2;
+            }
+        }
+    }
+
+}
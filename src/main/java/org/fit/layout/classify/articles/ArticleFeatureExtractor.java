@@ -12,9 +12,15 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.fit.layout.classify.AreaTreeIndex;
 import org.fit.layout.classify.BackgroundColorAnalyzer;
 import org.fit.layout.classify.ColorAnalyzer;
+import org.fit.layout.classify.ColorKernel;
 import org.fit.layout.classify.DefaultFeatureExtractor;
+import org.fit.layout.classify.Feature;
+import org.fit.layout.classify.FeatureRegistry;
+import org.fit.layout.classify.FeatureRowExtractor;
+import org.fit.layout.classify.TextStatistics;
 import org.fit.layout.model.Area;
 import org.fit.layout.model.Box;
 import org.fit.layout.model.Rectangular;
@@ -32,7 +38,7 @@ import weka.core.Instances;
  * 
  * @author burgetr
  */
-public class ArticleFeatureExtractor extends DefaultFeatureExtractor
+public class ArticleFeatureExtractor extends DefaultFeatureExtractor implements FeatureRowExtractor
 {
     private static Logger log = LoggerFactory.getLogger(ArticleFeatureExtractor.class);
     
@@ -44,6 +50,14 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
     /** Maximal difference between left and right margin to consider the area to be centered (percentage of the parent area width) */
     public static final double CENTERING_THRESHOLD = 0.1;
     
+    //centering guesses based on the area position
+    /** The area is certainly not centered */
+    static final int POS_NOT_CENTERED = 0;
+    /** The area is placed in the middle of its parent */
+    static final int POS_MIDDLE = 1;
+    /** The area has the full width of its parent */
+    static final int POS_FULL_WIDTH = 2;
+    
     //weights
     private static final int WFSZ = 0; 
     private static final int WFWT = 1;
@@ -54,16 +68,58 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
     private static final int WCP = 6;
     private static final int WBCP = 7;
     
+    //features in the attribute order
+    private static final int F_ID = 0;
+    private static final int F_CLASS = 1;
+    private static final int F_FONTSIZE = 2;
+    private static final int F_WEIGHT = 3;
+    private static final int F_STYLE = 4;
+    private static final int F_REPLACED = 5;
+    private static final int F_AABOVE = 6;
+    private static final int F_ABELOW = 7;
+    private static final int F_ALEFT = 8;
+    private static final int F_ARIGHT = 9;
+    private static final int F_NLINES = 10;
+    private static final int F_NCOLS = 11;
+    private static final int F_DEPTH = 12;
+    private static final int F_TLENGTH = 13;
+    private static final int F_PDIGITS = 14;
+    private static final int F_PLOWER = 15;
+    private static final int F_PUPPER = 16;
+    private static final int F_PSPACES = 17;
+    private static final int F_PPUNCT = 18;
+    private static final int F_RELX = 19;
+    private static final int F_RELY = 20;
+    private static final int F_TLUM = 21;
+    private static final int F_BGLUM = 22;
+    private static final int F_CONTRAST = 23;
+    private static final int F_MARKEDNESS = 24;
+    private static final int F_CPERC = 25;
+    private static final int F_TDATE = 26;
+    private static final int F_TTIME = 27;
+    private static final int F_TPERSONS = 28;
+    private static final int F_TTITLE = 29;
+    
+    private static final String[] CLASSES = {"none", "h1", "h2", "subtitle", "perex", "paragraph", "author", "date", "authordate"};
+    private static final String[] BOOLEAN = {"true", "false"};
+    
     private double[] weights;
+    private FeatureRegistry registry;
     
     private Area root;
     private float avgfont;
     private ColorAnalyzer ca;
     private BackgroundColorAnalyzer bca;
+    private TextStatistics text;
+    private SubtreeStatistics stats;
+    private AlignmentIndex alignment;
+    private NeighbourIndex neighbours;
+    private LineIndex lineIndex;
     
     public ArticleFeatureExtractor()
     {
         weights = DEFAULT_WEIGHTS;
+        registry = createRegistry();
     }
     
     @Override
@@ -71,8 +127,14 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
     {
         root = rootNode;
         avgfont = root.getFontSize();
-        ca = new ColorAnalyzer(root);
-        bca = new BackgroundColorAnalyzer(root);
+        AreaTreeIndex index = new AreaTreeIndex(root);
+        text = new TextStatistics(index);
+        ca = new ColorAnalyzer(root, text);
+        bca = new BackgroundColorAnalyzer(root, index);
+        stats = new SubtreeStatistics(text);
+        alignment = new AlignmentIndex(index);
+        neighbours = new NeighbourIndex(index);
+        lineIndex = new LineIndex(index);
     }
     
     @Override
@@ -84,57 +146,43 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
     @Override
     public Instances createEmptyDataset()
     {
-        try {
-            return loadArffDatasetResource("articles_header.arff");
-        } catch (Exception e) {
-            log.error("Couldn't create empty dataset: " + e.getMessage());
-            return null;
-        }
+        return new Instances(registry.getHeader(), 0);
+    }
+
+    @Override
+    public FeatureRegistry getFeatureRegistry()
+    {
+        return registry;
+    }
+    
+    @Override
+    public int getFeatureCount()
+    {
+        return registry.size();
     }
 
     @Override
     public Instance getAreaFeatures(Area node, Instances dataset)
     {
-        FeatureVector f = getFeatureVector(node);
-        
-        Instance inst = new DenseInstance(30);
+        double[] row = new double[registry.size()];
+        registry.compute(node, row, 0, null);
+        Instance inst = new DenseInstance(1.0, row);
         inst.setDataset(dataset);
-        int i = 0;
-        inst.setValue(i++, 0.0); //id
-        inst.setValue(i++, 0.0); //class
-        inst.setValue(i++, f.getFontSize() * 100);
-        inst.setValue(i++, f.getWeight());
-        inst.setValue(i++, f.getStyle());
-        inst.setValue(i++, f.isReplaced()?1:0);
-        inst.setValue(i++, f.getAabove());
-        inst.setValue(i++, f.getAbelow());
-        inst.setValue(i++, f.getAleft());
-        inst.setValue(i++, f.getAright());
-        inst.setValue(i++, f.getNlines());
-        inst.setValue(i++, 1); //TODO count columns
-        inst.setValue(i++, f.getDepth());
-        inst.setValue(i++, f.getTlength());
-        inst.setValue(i++, f.getPdigits());
-        inst.setValue(i++, f.getPlower());
-        inst.setValue(i++, f.getPupper());
-        inst.setValue(i++, f.getPspaces());
-        inst.setValue(i++, f.getPpunct());
-        inst.setValue(i++, f.getRelx());
-        inst.setValue(i++, f.getRely());
-        inst.setValue(i++, f.getTlum());
-        inst.setValue(i++, f.getBglum());
-        inst.setValue(i++, f.getContrast());
-        inst.setValue(i++, f.getMarkedness());
-        inst.setValue(i++, f.getCperc());
-        /*Set<Tag> tags = getAllTags(node);
-        inst.setValue(i++, tags.contains(tDate.getTag())?"true":"false");
-        inst.setValue(i++, tags.contains(tTime.getTag())?"true":"false");
-        inst.setValue(i++, tags.contains(tPersons.getTag())?"true":"false");
-        inst.setValue(i++, tags.contains(tTitle.getTag())?"true":"false");*/
-        
         return inst;
     }
     
+    @Override
+    public void getAreaFeatures(Area node, double[] dest, int offset)
+    {
+        registry.compute(node, dest, offset, null);
+    }
+    
+    @Override
+    public void getAreaFeatures(Area node, double[] dest, int offset, boolean[] required)
+    {
+        registry.compute(node, dest, offset, required);
+    }
+    
     public void setWeights(double[] weights)
     {
         this.weights = weights;
@@ -150,13 +198,17 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
      * @return the computed expressiveness
      */
     public double getMarkedness(Area node)
+    {
+        return getMarkedness(node, getContrast(node));
+    }
+    
+    private double getMarkedness(Area node, double contrast)
     {
         double fsz = node.getFontSize() / avgfont; //use relative font size, 0 is the normal font
         double fwt = node.getFontWeight();
         double fst = node.getFontStyle();
         double ind = getIndentation(node);
         double cen = isCentered(node) ? 1.0 : 0.0;
-        double contrast = getContrast(node);
         double cp = 1.0 - ca.getColorPercentage(node);
         double bcp = bca.getColorPercentage(node);
         bcp = (bcp < 0.0) ? 0.0 : (1.0 - bcp);
@@ -179,8 +231,8 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
     public FeatureVector getFeatureVector(Area node)
     {
         FeatureVector ret = new FeatureVector();
-        String text = node.getText();
-        int plen = text.length();
+        int[] counts = getCharacterCounts(node);
+        int plen = counts[TextStatistics.LENGTH];
         if (plen == 0) plen = 1; //kvuli deleni nulou
         
         ret.setFontSize(node.getFontSize() / avgfont);
@@ -193,12 +245,12 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
         ret.setAright(countAreasRight(node));
         ret.setNlines(getLineCount(node));
         ret.setDepth(node.getDepth() + 1); //+2: annotator counts the boxes and their areas as well
-        ret.setTlength(text.length());
-        ret.setPdigits(countChars(text, Character.DECIMAL_DIGIT_NUMBER) / (double) plen);
-        ret.setPlower(countChars(text, Character.LOWERCASE_LETTER) / (double) plen);
-        ret.setPupper(countChars(text, Character.UPPERCASE_LETTER) / (double) plen);
-        ret.setPspaces(countChars(text, Character.SPACE_SEPARATOR) / (double) plen);
-        ret.setPpunct(countCharsPunct(text) / (double) plen);
+        ret.setTlength(counts[TextStatistics.LENGTH]);
+        ret.setPdigits(counts[TextStatistics.DIGITS] / (double) plen);
+        ret.setPlower(counts[TextStatistics.LOWER] / (double) plen);
+        ret.setPupper(counts[TextStatistics.UPPER] / (double) plen);
+        ret.setPspaces(counts[TextStatistics.SPACES] / (double) plen);
+        ret.setPpunct(counts[TextStatistics.PUNCT] / (double) plen);
         ret.setRelx(getRelX(node));
         ret.setRely(getRelY(node));
         ret.setTlum(getAverageTextLuminosity(node));
@@ -220,6 +272,9 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
      */
     public boolean isCentered(Area area)
     {
+        final int ai = (alignment == null) ? -1 : alignment.indexOf(area);
+        if (ai != -1)
+            return alignment.getCentering(ai) == 1;
         return isCentered(area, true, true) == 1;
     }
     
@@ -234,15 +289,8 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
         Area parent = area.getParentArea();
         if (parent != null)
         {
-            int left = area.getX1() - parent.getX1();
-            int right = parent.getX2() - area.getX2();
-            int limit = (int) (((left + right) / 2.0) * CENTERING_THRESHOLD);
-            if (limit == 0) limit = 1; //we always allow +-1px
-            //System.out.println(this + " left=" + left + " right=" + right + " limit=" + limit);
-            boolean middle = Math.abs(left - right) <= limit; //first guess - check if it is placed in the middle
-            boolean fullwidth = left == 0 && right == 0; //centered because of full width
-            
-            if (!middle && !fullwidth) //not full width and certainly not in the middle
+            final int pos = getCenteringPosition(area, parent);
+            if (pos == POS_NOT_CENTERED) //not full width and certainly not in the middle
             {
                 return 0; 
             }
@@ -268,43 +316,83 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
                             next = next.getNextSibling();
                     }
                 }
-                
-                if (pc != 2 || nc != 2) //we have something for comparison
-                {
-                    if (fullwidth) //cannot guess, compare with others
-                    {
-                        if (pc != 0 && nc != 0) //something around is centered - probably centered
-                            return 1;
-                        else
-                            return 0;
-                    }
-                    else //probably centered, if it is not left- or right-aligned with something around
-                    {
-                        if (prev != null && lrAligned(area, prev) == 1 ||
-                            next != null && lrAligned(area, next) == 1)
-                            return 0; //aligned, not centered
-                        else
-                            return 1; //probably centered
-                    }
-                }
-                else //nothing to compare, just guess
-                {
-                    if (fullwidth)
-                        return 2; //cannot guess from anything
-                    else
-                        return (middle ? 1 : 0); //nothing to compare with - guess from the position
-                }
+                return decideCentering(area, pos, pc, prev, nc, next);
             }
         }
         else
             return 2; //no parent - we don't know
     }
     
+    /**
+     * Guesses the centering of an area from its position within its parent area.
+     * @param area the area
+     * @param parent the parent area
+     * @return one of the {@code POS_} values
+     */
+    static int getCenteringPosition(Area area, Area parent)
+    {
+        int left = area.getX1() - parent.getX1();
+        int right = parent.getX2() - area.getX2();
+        int limit = (int) (((left + right) / 2.0) * CENTERING_THRESHOLD);
+        if (limit == 0) limit = 1; //we always allow +-1px
+        //System.out.println(this + " left=" + left + " right=" + right + " limit=" + limit);
+        boolean middle = Math.abs(left - right) <= limit; //first guess - check if it is placed in the middle
+        boolean fullwidth = left == 0 && right == 0; //centered because of full width
+        if (fullwidth)
+            return POS_FULL_WIDTH;
+        else if (middle)
+            return POS_MIDDLE;
+        else
+            return POS_NOT_CENTERED;
+    }
+    
+    /**
+     * Decides the centering of an area that may be centered according to its position using the
+     * centering of the nearest siblings.
+     * @param area the area
+     * @param pos the centering position of the area ({@code POS_} value)
+     * @param pc the centering of the previous sibling or 2 when unknown 
+     * @param prev the previous sibling used for comparison or {@code null}
+     * @param nc the centering of the next sibling or 2 when unknown
+     * @param next the next sibling used for comparison or {@code null}
+     * @return 0 when certailny not centered, 1 when certainly centered, 2 when not sure
+     */
+    static int decideCentering(Area area, int pos, int pc, Area prev, int nc, Area next)
+    {
+        if (pos == POS_NOT_CENTERED)
+            return 0;
+        else if (pc != 2 || nc != 2) //we have something for comparison
+        {
+            if (pos == POS_FULL_WIDTH) //cannot guess, compare with others
+            {
+                if (pc != 0 && nc != 0) //something around is centered - probably centered
+                    return 1;
+                else
+                    return 0;
+            }
+            else //probably centered, if it is not left- or right-aligned with something around
+            {
+                if (prev != null && lrAligned(area, prev) == 1 ||
+                    next != null && lrAligned(area, next) == 1)
+                    return 0; //aligned, not centered
+                else
+                    return 1; //probably centered
+            }
+        }
+        else //nothing to compare, just guess
+        {
+            if (pos == POS_FULL_WIDTH)
+                return 2; //cannot guess from anything
+            else
+                return 1; //nothing to compare with - in the middle
+        }
+    }
+    
     /**
      * Checks if the areas are left- or right-aligned.
      * @return 0 if not, 1 if yes, 2 if both left and right
      */
-    private int lrAligned(Area a1, Area a2)
+    static int lrAligned(Area a1, Area a2)
     {
         if (a1.getX1() == a2.getX1())
             return (a1.getX2() == a2.getX2()) ? 2 : 1;
@@ -320,18 +408,31 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
      */
     public double getIndentation(Area node)
     {
-        final double max_levels = 3;
+        final int ai = (alignment == null) ? -1 : alignment.indexOf(node);
+        if (ai != -1 && !Double.isNaN(alignment.getIndentation(ai)))
+            return alignment.getIndentation(ai);
         
         if (node.getTopology().getPreviousOnLine() != null)
             return getIndentation(node.getTopology().getPreviousOnLine()); //use the indentation of the first one on the line
         else
-        {
-            double ind = max_levels;
-            if (!isCentered(node) && node.getParentArea() != null)
-                ind = ind - (node.getTopology().getPosition().getX1() - node.getParentArea().getTopology().getMinIndent());
-            if (ind < 0) ind = 0;
-            return ind / max_levels;
-        }
+            return computeIndentation(node, isCentered(node));
+    }
+    
+    /**
+     * Computes the indentation metric of the first area on a line.
+     * @param node the area
+     * @param centered is the area centered?
+     * @return the indentation metric (0..1)
+     */
+    static double computeIndentation(Area node, boolean centered)
+    {
+        final double max_levels = 3;
+        
+        double ind = max_levels;
+        if (!centered && node.getParentArea() != null)
+            ind = ind - (node.getTopology().getPosition().getX1() - node.getParentArea().getTopology().getMinIndent());
+        if (ind < 0) ind = 0;
+        return ind / max_levels;
     }
     
     /**
@@ -355,6 +456,9 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
     
     private int countAreasAbove(Area a)
     {
+        final int ni = (neighbours == null) ? -1 : neighbours.indexOf(a);
+        if (ni != -1)
+            return neighbours.getAbove(ni);
         Rectangular gp = a.getTopology().getPosition();
         Area parent = a.getParentArea();
         if (parent != null)
@@ -368,6 +472,9 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
 
     private int countAreasBelow(Area a)
     {
+        final int ni = (neighbours == null) ? -1 : neighbours.indexOf(a);
+        if (ni != -1)
+            return neighbours.getBelow(ni);
         Rectangular gp = a.getTopology().getPosition();
         Area parent = a.getParentArea();
         if (parent != null)
@@ -381,6 +488,9 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
 
     private int countAreasLeft(Area a)
     {
+        final int ni = (neighbours == null) ? -1 : neighbours.indexOf(a);
+        if (ni != -1)
+            return neighbours.getLeft(ni);
         Rectangular gp = a.getTopology().getPosition();
         Area parent = a.getParentArea();
         if (parent != null)
@@ -394,6 +504,9 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
 
     private int countAreasRight(Area a)
     {
+        final int ni = (neighbours == null) ? -1 : neighbours.indexOf(a);
+        if (ni != -1)
+            return neighbours.getRight(ni);
         Rectangular gp = a.getTopology().getPosition();
         Area parent = a.getParentArea();
         if (parent != null)
@@ -405,29 +518,47 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
             return 0;
     }
 
-    private int countChars(String s, int type)
-    {
-        int ret = 0;
-        for (int i = 0; i < s.length(); i++)
-            if (Character.getType(s.charAt(i)) == type)
-                    ret++;
-        return ret;
-    }
-
-    private int countCharsPunct(String s)
+    /**
+     * Obtains the numbers of characters of the individual classes in the area text.
+     * @param a the area
+     * @return the counts indexed by the {@link TextStatistics} class constants
+     */
+    private int[] getCharacterCounts(Area a)
     {
-        int ret = 0;
-        for (int i = 0; i < s.length(); i++)
+        int[] ret = new int[TextStatistics.CLASSES];
+        final int ti = (text == null) ? -1 : text.indexOf(a);
+        if (ti != -1)
         {
-            char ch = s.charAt(i);
-            if (ch == ',' || ch == '.' || ch == ';' || ch == ':')
-                    ret++;
+            for (int k = 0; k < TextStatistics.CLASSES; k++)
+                ret[k] = text.getCount(ti, k);
         }
+        else
+            TextStatistics.scan(a.getText(), ret, 0);
         return ret;
     }
     
+    private int getCharacterCount(Area a, int cls)
+    {
+        final int ti = (text == null) ? -1 : text.indexOf(a);
+        if (ti != -1)
+            return text.getCount(ti, cls);
+        else
+            return getCharacterCounts(a)[cls];
+    }
+    
+    private double getCharacterRatio(Area a, int cls)
+    {
+        int plen = getCharacterCount(a, TextStatistics.LENGTH);
+        if (plen == 0) plen = 1; //kvuli deleni nulou
+        return getCharacterCount(a, cls) / (double) plen;
+    }
+    
     private double getAverageTextLuminosity(Area a)
     {
+        final int si = (stats == null) ? -1 : stats.indexOf(a);
+        if (si != -1)
+            return stats.getTextLuminosity(si);
+        
         double sum = 0;
         int cnt = 0;
         
@@ -452,6 +583,11 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
     }
     
     public double getAverageBoxColorLuminosity(Area area)
+    {
+        return boxColorLuminosity(area);
+    }
+    
+    static double boxColorLuminosity(Area area)
     {
         if (area.getBoxes().isEmpty())
             return 0;
@@ -462,7 +598,7 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
             for (Box box : area.getBoxes())
             {
                 int l = box.getText().length(); 
-                sum += colorLuminosity(box.getColor()) * l;
+                sum += ColorKernel.luminosity(box.getColor()) * l;
                 len += l;
             }
             return sum / len;
@@ -471,39 +607,22 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
     
     private double getBackgroundLuminosity(Area a)
     {
-        Color bg = a.getEffectiveBackgroundColor();
-        if (bg != null)
-            return ArticleFeatureExtractor.colorLuminosity(bg);
-        else
-            return 0;
+        return bca.getBackgroundLuminosity(a);
     }
     
     private double getContrast(Area a)
     {
-        double bb = getBackgroundLuminosity(a);
-        double tb = getAverageTextLuminosity(a);
-        double lum;
-        if (bb > tb)
-            lum = (bb + 0.05) / (tb + 0.05);
-        else
-            lum = (tb + 0.05) / (bb + 0.05);
-        return lum;
+        return getContrast(getBackgroundLuminosity(a), getAverageTextLuminosity(a));
+    }
+    
+    private double getContrast(double bb, double tb)
+    {
+        return ColorKernel.contrast(bb, tb);
     }
     
     public static double colorLuminosity(Color c)
     {
-        double lr, lg, lb;
-        if (c == null)
-        {
-            lr = lg = lb = 255;
-        }
-        else
-        {
-            lr = Math.pow(c.getRed() / 255.0, 2.2);
-            lg = Math.pow(c.getGreen() / 255.0, 2.2);
-            lb = Math.pow(c.getBlue() / 255.0, 2.2);
-        }
-        return lr * 0.2126 +  lg * 0.7152 + lb * 0.0722;
+        return ColorKernel.luminosity(c);
     }
 
     private double getRelX(Area a)
@@ -546,8 +665,11 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
     
     public int getLineCount(Area a)
     {
-        final int LINE_THRESHOLD = 5; //minimal distance between lines in pixels
+        final int li = (lineIndex == null) ? -1 : lineIndex.indexOf(a);
+        if (li != -1)
+            return lineIndex.getLineCount(li);
         
+        final int LINE_THRESHOLD = LineIndex.LINE_THRESHOLD; //minimal distance between lines in pixels
         List<Box> leaves = a.getAllBoxes();
         Collections.sort(leaves, new AbsoluteYPositionComparator());
         int lines = 0;
@@ -578,6 +700,115 @@ public class ArticleFeatureExtractor extends DefaultFeatureExtractor
     
     //========================================================================================================
     
+    /**
+     * Declares all the features in the attribute order of the generated data set header.
+     */
+    private FeatureRegistry createRegistry()
+    {
+        FeatureRegistry ret = new FeatureRegistry("page", "class");
+        ret.add(new ArticleFeature(F_ID, "id", 0));
+        ret.add(new ArticleFeature(F_CLASS, "class", CLASSES, 0));
+        ret.add(new ArticleFeature(F_FONTSIZE, "fontsize", 1));
+        ret.add(new ArticleFeature(F_WEIGHT, "weight", 1));
+        ret.add(new ArticleFeature(F_STYLE, "style", 1));
+        ret.add(new ArticleFeature(F_REPLACED, "replaced", 1));
+        ret.add(new ArticleFeature(F_AABOVE, "aabove", 2));
+        ret.add(new ArticleFeature(F_ABELOW, "abelow", 2));
+        ret.add(new ArticleFeature(F_ALEFT, "aleft", 2));
+        ret.add(new ArticleFeature(F_ARIGHT, "aright", 2));
+        ret.add(new ArticleFeature(F_NLINES, "nlines", 2));
+        ret.add(new ArticleFeature(F_NCOLS, "ncols", 0));
+        ret.add(new ArticleFeature(F_DEPTH, "depth", 2));
+        ret.add(new ArticleFeature(F_TLENGTH, "tlength", 2));
+        ret.add(new ArticleFeature(F_PDIGITS, "pdigits", 2));
+        ret.add(new ArticleFeature(F_PLOWER, "plower", 2));
+        ret.add(new ArticleFeature(F_PUPPER, "pupper", 2));
+        ret.add(new ArticleFeature(F_PSPACES, "pspaces", 2));
+        ret.add(new ArticleFeature(F_PPUNCT, "ppunct", 2));
+        ret.add(new ArticleFeature(F_RELX, "relx", 1));
+        ret.add(new ArticleFeature(F_RELY, "rely", 1));
+        ret.add(new ArticleFeature(F_TLUM, "tlum", 2));
+        ret.add(new ArticleFeature(F_BGLUM, "bglum", 4));
+        ret.add(new ArticleFeature(F_CONTRAST, "contrast", 1, "tlum", "bglum"));
+        ret.add(new ArticleFeature(F_MARKEDNESS, "markedness", 8, "contrast"));
+        ret.add(new ArticleFeature(F_CPERC, "cperc", 2));
+        ret.add(new ArticleFeature(F_TDATE, "tdate", BOOLEAN, 0));
+        ret.add(new ArticleFeature(F_TTIME, "ttime", BOOLEAN, 0));
+        ret.add(new ArticleFeature(F_TPERSONS, "tpersons", BOOLEAN, 0));
+        ret.add(new ArticleFeature(F_TTITLE, "ttitle", BOOLEAN, 0));
+        return ret;
+    }
+    
+    /**
+     * Computes a single feature value.
+     * @param id the feature identifier
+     * @param node the area
+     * @param row the feature row containing the values of the dependencies
+     * @param offset the index of the first value of the row
+     * @return the feature value
+     */
+    private double computeFeature(int id, Area node, double[] row, int offset)
+    {
+        switch (id)
+        {
+            case F_ID: return 0.0;
+            case F_CLASS: return 0.0;
+            case F_FONTSIZE: return (double) (node.getFontSize() / avgfont) * 100;
+            case F_WEIGHT: return node.getFontWeight();
+            case F_STYLE: return node.getFontStyle();
+            case F_REPLACED: return node.isReplaced() ? 1 : 0;
+            case F_AABOVE: return countAreasAbove(node);
+            case F_ABELOW: return countAreasBelow(node);
+            case F_ALEFT: return countAreasLeft(node);
+            case F_ARIGHT: return countAreasRight(node);
+            case F_NLINES: return getLineCount(node);
+            case F_NCOLS: return 1; //TODO count columns
+            case F_DEPTH: return node.getDepth() + 1; //+2: annotator counts the boxes and their areas as well
+            case F_TLENGTH: return getCharacterCount(node, TextStatistics.LENGTH);
+            case F_PDIGITS: return getCharacterRatio(node, TextStatistics.DIGITS);
+            case F_PLOWER: return getCharacterRatio(node, TextStatistics.LOWER);
+            case F_PUPPER: return getCharacterRatio(node, TextStatistics.UPPER);
+            case F_PSPACES: return getCharacterRatio(node, TextStatistics.SPACES);
+            case F_PPUNCT: return getCharacterRatio(node, TextStatistics.PUNCT);
+            case F_RELX: return getRelX(node);
+            case F_RELY: return getRelY(node);
+            case F_TLUM: return getAverageTextLuminosity(node);
+            case F_BGLUM: return getBackgroundLuminosity(node);
+            case F_CONTRAST: return getContrast(row[offset + F_BGLUM], row[offset + F_TLUM]);
+            case F_MARKEDNESS: return getMarkedness(node, row[offset + F_CONTRAST]);
+            case F_CPERC: return ca.getColorPercentage(node);
+            default: return Double.NaN; //the tags are not used
+        }
+    }
+    
+    /**
+     * A feature computed by this extractor.
+     */
+    private class ArticleFeature extends Feature
+    {
+        private int id;
+        
+        public ArticleFeature(int id, String name, int cost, String... dependencies)
+        {
+            super(name, cost, dependencies);
+            this.id = id;
+        }
+        
+        public ArticleFeature(int id, String name, String[] values, int cost, String... dependencies)
+        {
+            super(name, values, cost, dependencies);
+            this.id = id;
+        }
+
+        @Override
+        public double compute(Area area, double[] row, int offset)
+        {
+            return computeFeature(id, area, row, offset);
+        }
+    }
+    
+    //========================================================================================================
+    
     /**
      * Updates the weights according to the used style of presentation based on statistical tag analysis.
      * @param root
@@ -0,0 +1,204 @@
+/**
+ * LineIndex.java
+ */
+package org.fit.layout.classify.articles;
+
+import java.util.Arrays;
+
+import org.fit.layout.classify.AreaTreeIndex;
+import org.fit.layout.model.Area;
+import org.fit.layout.model.Box;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Precomputed numbers of text lines of all the areas of a tree. The boxes of the whole tree are
+ * collected once in the pre-order of their areas so that the boxes of any subtree occupy a continuous
+ * range. The vertical box positions are indexed by a merge sort tree (the sorted runs of all the
+ * aligned blocks of 2<sup>k</sup> boxes) that finds the first box of the next line within any range
+ * without sorting or copying the boxes of the individual areas.
+ * <p>
+ * The lines are counted exactly as in {@link ArticleFeatureExtractor#getLineCount(Area)}: a box starts
+ * a new line when its position is greater than the position of the box that started the previous line
+ * by more than {@link #LINE_THRESHOLD}. Since this grouping depends on the boxes present in the area,
+ * it is evaluated for every area separately rather than mapping the areas to a single global
+ * set of lines.
+ */
+public class LineIndex
+{
+    private static Logger log = LoggerFactory.getLogger(LineIndex.class);
+
+    /** Minimal distance between lines in pixels */
+    public static final int LINE_THRESHOLD = 5;
+
+    private static final long NONE = Long.MAX_VALUE;
+
+    private AreaTreeIndex index;
+    /** The first box of each area subtree; boxStart[n] is the total box count */
+    private int[] boxStart;
+    /** The merge sort tree levels; level k consists of sorted blocks of 2^k box positions */
+    private int[][] levels;
+    private int[] lines;
+    private boolean valid;
+
+    /**
+     * Computes the line counts for all the areas in the index.
+     * @param index the area tree index
+     */
+    public LineIndex(AreaTreeIndex index)
+    {
+        this.index = index;
+        final int n = index.size();
+        boxStart = new int[n + 1];
+        if (n == 0)
+            return;
+
+        //the boxes of all the areas or the leaf areas only -- use the variant that corresponds to getAllBoxes()
+        int total = 0;
+        int leafTotal = 0;
+        for (int i = 0; i < n; i++)
+        {
+            final int cnt = index.getArea(i).getBoxes().size();
+            total += cnt;
+            if (index.getFirstChild(i) == -1)
+                leafTotal += cnt;
+        }
+        final int expected = index.getRoot().getAllBoxes().size();
+        final boolean leavesOnly;
+        if (expected == total)
+            leavesOnly = false;
+        else if (expected == leafTotal)
+            leavesOnly = true;
+        else
+        {
+            log.warn("The area boxes do not correspond to their child areas, not using the line index");
+            return;
+        }
+
+        final int boxCount = leavesOnly ? leafTotal : total;
+        int[] ypos = new int[boxCount];
+        int b = 0;
+        for (int i = 0; i < n; i++)
+        {
+            boxStart[i] = b;
+            final Area area = index.getArea(i);
+            if (!leavesOnly || index.getFirstChild(i) == -1)
+            {
+                for (Box box : area.getBoxes())
+                    ypos[b++] = box.getBounds().getY1();
+            }
+        }
+        boxStart[n] = b;
+        buildLevels(ypos);
+
+        lines = new int[n];
+        for (int i = 0; i < n; i++)
+            lines[i] = countLines(boxStart[i], boxStart[index.getSubtreeEnd(i)]);
+        valid = true;
+    }
+
+    /**
+     * Finds the index of an area.
+     * @param area the area
+     * @return the area index or -1 when the line count is not available for the area
+     */
+    public int indexOf(Area area)
+    {
+        return valid ? index.indexOf(area) : -1;
+    }
+
+    /**
+     * Obtains the number of text lines in an area.
+     * @param i the area index
+     * @return the number of lines
+     */
+    public int getLineCount(int i)
+    {
+        return lines[i];
+    }
+
+    //==================================================================
+
+    private void buildLevels(int[] ypos)
+    {
+        final int len = ypos.length;
+        int depth = 1;
+        while ((1 << (depth - 1)) < len)
+            depth++;
+        levels = new int[depth][];
+        levels[0] = ypos;
+        for (int k = 1; k < depth; k++)
+        {
+            final int[] src = levels[k - 1];
+            final int[] dest = new int[len];
+            final int half = 1 << (k - 1);
+            for (int start = 0; start < len; start += 2 * half)
+            {
+                //merge the two sorted halves of the block
+                final int mid = Math.min(start + half, len);
+                final int end = Math.min(start + 2 * half, len);
+                int i = start, j = mid, d = start;
+                while (i < mid && j < end)
+                    dest[d++] = (src[j] < src[i]) ? src[j++] : src[i++];
+                while (i < mid)
+                    dest[d++] = src[i++];
+                while (j < end)
+                    dest[d++] = src[j++];
+            }
+            levels[k] = dest;
+        }
+    }
+
+    private int countLines(int from, int to)
+    {
+        int ret = 0;
+        long lastpos = -10;
+        while (true)
+        {
+            final long next = findFirst(from, to, lastpos + LINE_THRESHOLD + 1);
+            if (next == NONE)
+                break;
+            ret++;
+            lastpos = next;
+        }
+        return ret;
+    }
+
+    /**
+     * Finds the least box position in the given range that is greater or equal to the given value.
+     * The range is decomposed to the aligned blocks of the individual levels as in a bottom-up
+     * segment tree.
+     * @return the position found or {@code NONE} when there is no such position
+     */
+    private long findFirst(int from, int to, long value)
+    {
+        if (value > Integer.MAX_VALUE)
+            return NONE;
+        long ret = NONE;
+        int l = from, r = to;
+        for (int k = 0; l < r; k++)
+        {
+            final int size = 1 << k;
+            final int[] level = levels[k];
+            if (((l >> k) & 1) != 0)
+            {
+                ret = Math.min(ret, firstInBlock(level, l, l + size, (int) value));
+                l += size;
+            }
+            if (l < r && ((r >> k) & 1) != 0)
+            {
+                ret = Math.min(ret, firstInBlock(level, r - size, r, (int) value));
+                r -= size;
+            }
+        }
+        return ret;
+    }
+
+    private static long firstInBlock(int[] level, int from, int to, int value)
+    {
+        final int pos = Arrays.binarySearch(level, from, to, value);
+        final int i = (pos >= 0) ? pos : -pos - 1; //any of the equal values is fine here
+        return (i < to) ? level[i] : NONE;
+    }
+
+}
@@ -0,0 +1,285 @@
+/**
+ * NeighbourIndex.java
+ */
+package org.fit.layout.classify.articles;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.fit.layout.classify.AreaTreeIndex;
+import org.fit.layout.model.Area;
+import org.fit.layout.model.Rectangular;
+
+/**
+ * Precomputed numbers of the sibling areas placed above, below, left and right of each area
+ * in the topology grid of its parent. For a given area, the sibling is counted above (below)
+ * when its grid position overlaps the area columns and it starts above (ends below) the area;
+ * similarly for the left and right siblings and the area rows.
+ * <p>
+ * Each count is computed as the number of siblings in the corresponding half-plane minus the
+ * siblings that do not overlap the area columns (rows) on either side. The latter are two-dimensional
+ * dominance counts that are answered for all the children of a parent at once using a sweep over
+ * the sorted positions and a Fenwick tree, i.e. in O(k log k) for k children instead of O(k<sup>2</sup>).
+ * Small parents and parents with unusual grid positions (empty or negative ranges) are evaluated
+ * by scanning the siblings directly.
+ */
+public class NeighbourIndex
+{
+    /** Parents with less child areas are evaluated by a direct scan */
+    private static final int SCAN_THRESHOLD = 16;
+
+    private AreaTreeIndex index;
+    private int[] above;
+    private int[] below;
+    private int[] left;
+    private int[] right;
+
+    /**
+     * Computes the neighbour counts for all the areas in the index.
+     * @param index the area tree index
+     */
+    public NeighbourIndex(AreaTreeIndex index)
+    {
+        this.index = index;
+        final int n = index.size();
+        above = new int[n];
+        below = new int[n];
+        left = new int[n];
+        right = new int[n];
+        int[] children = new int[n];
+        for (int p = 0; p < n; p++)
+        {
+            int cnt = 0;
+            for (int c = index.getFirstChild(p); c != -1; c = index.getNextSibling(c))
+                children[cnt++] = c;
+            if (cnt > 0)
+            {
+                Rectangular[] pos = new Rectangular[cnt];
+                for (int i = 0; i < cnt; i++)
+                    pos[i] = index.getArea(children[i]).getTopology().getPosition();
+                if (cnt < SCAN_THRESHOLD || !regular(pos))
+                    scan(children, pos);
+                else
+                    sweep(children, pos);
+            }
+        }
+    }
+
+    /**
+     * Finds the index of an area. The root area of the tree is not covered because its siblings
+     * are not indexed.
+     * @param area the area
+     * @return the area index or -1 when the counts are not available for the area
+     */
+    public int indexOf(Area area)
+    {
+        final int i = index.indexOf(area);
+        return (i > 0) ? i : -1;
+    }
+
+    public int getAbove(int i)
+    {
+        return above[i];
+    }
+
+    public int getBelow(int i)
+    {
+        return below[i];
+    }
+
+    public int getLeft(int i)
+    {
+        return left[i];
+    }
+
+    public int getRight(int i)
+    {
+        return right[i];
+    }
+
+    //==================================================================
+
+    /**
+     * Checks whether all the positions are non-empty and non-negative so that the counts
+     * may be decomposed to the dominance counts.
+     */
+    private boolean regular(Rectangular[] pos)
+    {
+        for (Rectangular r : pos)
+        {
+            if (r.getX1() < 0 || r.getY1() < 0 || r.getX1() > r.getX2() || r.getY1() > r.getY2()
+                    || r.getX2() == Integer.MAX_VALUE || r.getY2() == Integer.MAX_VALUE)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Computes the counts by comparing all the pairs of siblings.
+     */
+    private void scan(int[] children, Rectangular[] pos)
+    {
+        final int k = pos.length;
+        for (int i = 0; i < k; i++)
+        {
+            final Rectangular gp = pos[i];
+            final Rectangular ra = new Rectangular(gp.getX1(), 0, gp.getX2(), gp.getY1() - 1);
+            final Rectangular rb = new Rectangular(gp.getX1(), gp.getY2() + 1, gp.getX2(), Integer.MAX_VALUE);
+            final Rectangular rl = new Rectangular(0, gp.getY1(), gp.getX1() - 1, gp.getY2());
+            final Rectangular rr = new Rectangular(gp.getX2() + 1, gp.getY1(), Integer.MAX_VALUE, gp.getY2());
+            int a = 0, b = 0, l = 0, r = 0;
+            for (int j = 0; j < k; j++)
+            {
+                if (pos[j].intersects(ra)) a++;
+                if (pos[j].intersects(rb)) b++;
+                if (pos[j].intersects(rl)) l++;
+                if (pos[j].intersects(rr)) r++;
+            }
+            final int c = children[i];
+            above[c] = a;
+            below[c] = b;
+            left[c] = l;
+            right[c] = r;
+        }
+    }
+
+    /**
+     * Computes the counts using the dominance counting. E.g. the siblings above an area are
+     * the siblings starting above the area minus those of them that end left of the area
+     * or start right of the area (these two cases are disjoint for non-empty ranges).
+     */
+    private void sweep(int[] children, Rectangular[] pos)
+    {
+        final int k = pos.length;
+        int[] x1 = new int[k];
+        int[] y1 = new int[k];
+        int[] x2 = new int[k];
+        int[] y2 = new int[k];
+        int[] nx1 = new int[k]; //negated coordinates for the 'greater than' conditions
+        int[] ny1 = new int[k];
+        int[] nx2 = new int[k];
+        int[] ny2 = new int[k];
+        for (int i = 0; i < k; i++)
+        {
+            x1[i] = pos[i].getX1(); nx1[i] = -x1[i];
+            y1[i] = pos[i].getY1(); ny1[i] = -y1[i];
+            x2[i] = pos[i].getX2(); nx2[i] = -x2[i];
+            y2[i] = pos[i].getY2(); ny2[i] = -y2[i];
+        }
+        //above: y1' < y1 and not (x2' < x1 or x1' > x2)
+        int[] total = countLess(y1, y1);
+        int[] side1 = countDominated(y1, x2, y1, x1);
+        int[] side2 = countDominated(y1, nx1, y1, nx2);
+        for (int i = 0; i < k; i++)
+            above[children[i]] = total[i] - side1[i] - side2[i];
+        //below: y2' > y2 and not (x2' < x1 or x1' > x2)
+        total = countLess(ny2, ny2);
+        side1 = countDominated(ny2, x2, ny2, x1);
+        side2 = countDominated(ny2, nx1, ny2, nx2);
+        for (int i = 0; i < k; i++)
+            below[children[i]] = total[i] - side1[i] - side2[i];
+        //left: x1' < x1 and not (y2' < y1 or y1' > y2)
+        total = countLess(x1, x1);
+        side1 = countDominated(x1, y2, x1, y1);
+        side2 = countDominated(x1, ny1, x1, ny2);
+        for (int i = 0; i < k; i++)
+            left[children[i]] = total[i] - side1[i] - side2[i];
+        //right: x2' > x2 and not (y2' < y1 or y1' > y2)
+        total = countLess(nx2, nx2);
+        side1 = countDominated(nx2, y2, nx2, y1);
+        side2 = countDominated(nx2, ny1, nx2, ny2);
+        for (int i = 0; i < k; i++)
+            right[children[i]] = total[i] - side1[i] - side2[i];
+    }
+
+    /**
+     * Counts the points whose coordinate is less than the query value.
+     * @param p the point coordinates
+     * @param q the query values
+     * @return the numbers of points for the individual queries
+     */
+    private static int[] countLess(int[] p, int[] q)
+    {
+        int[] sorted = p.clone();
+        Arrays.sort(sorted);
+        int[] ret = new int[q.length];
+        for (int i = 0; i < q.length; i++)
+            ret[i] = lowerBound(sorted, q[i]);
+        return ret;
+    }
+
+    /**
+     * Counts the points [px, py] such that px &lt; qx and py &lt; qy for all the queries [qx, qy].
+     * The points and the queries are swept in the order of the x coordinate while the y coordinates
+     * of the already passed points are counted in a Fenwick tree.
+     * @param px the x coordinates of the points
+     * @param py the y coordinates of the points
+     * @param qx the x coordinates of the queries
+     * @param qy the y coordinates of the queries
+     * @return the numbers of points for the individual queries
+     */
+    private static int[] countDominated(int[] px, int[] py, int[] qx, int[] qy)
+    {
+        final int k = px.length;
+        final int m = qx.length;
+        //compressed y coordinates of the points
+        int[] ys = py.clone();
+        Arrays.sort(ys);
+        //points and queries sorted by x
+        Integer[] porder = sortedOrder(px);
+        Integer[] qorder = sortedOrder(qx);
+        int[] tree = new int[k + 1];
+        int[] ret = new int[m];
+        int pi = 0;
+        for (int qi = 0; qi < m; qi++)
+        {
+            final int q = qorder[qi];
+            //add all the points strictly left of the query
+            while (pi < k && px[porder[pi]] < qx[q])
+            {
+                for (int t = lowerBound(ys, py[porder[pi]]) + 1; t <= k; t += t & (-t))
+                    tree[t]++;
+                pi++;
+            }
+            //count the added points strictly below the query
+            int sum = 0;
+            for (int t = lowerBound(ys, qy[q]); t > 0; t -= t & (-t))
+                sum += tree[t];
+            ret[q] = sum;
+        }
+        return ret;
+    }
+
+    private static Integer[] sortedOrder(final int[] values)
+    {
+        Integer[] ret = new Integer[values.length];
+        for (int i = 0; i < ret.length; i++)
+            ret[i] = i;
+        Arrays.sort(ret, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2)
+            {
+                return Integer.compare(values[o1], values[o2]);
+            }
+        });
+        return ret;
+    }
+
+    /**
+     * Finds the number of values in a sorted array that are less than the given value.
+     */
+    private static int lowerBound(int[] sorted, int value)
+    {
+        int lo = 0, hi = sorted.length;
+        while (lo < hi)
+        {
+            final int mid = (lo + hi) >>> 1;
+            if (sorted[mid] < value)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * SubtreeStatistics.java
+ */
+package org.fit.layout.classify.articles;
+
+import org.fit.layout.classify.AreaTreeIndex;
+import org.fit.layout.classify.TextStatistics;
+import org.fit.layout.model.Area;
+
+/**
+ * Per-area aggregates of the text properties computed for all the areas of a tree in a single
+ * bottom-up pass. The aggregates of each area are computed from its own boxes and the already
+ * computed aggregates of its child areas so that the subtree text is never traversed repeatedly.
+ * The text lengths are taken from the {@link TextStatistics} of the tree.
+ * The values are computed in the same order as the original recursive computations in
+ * {@link ArticleFeatureExtractor} so that the results are identical.
+ */
+public class SubtreeStatistics
+{
+    private AreaTreeIndex index;
+    private TextStatistics text;
+    private double[] textLuminosity;
+
+    /**
+     * Computes the statistics for all the areas in the index.
+     * @param text the character statistics of the indexed areas
+     */
+    public SubtreeStatistics(TextStatistics text)
+    {
+        this.index = text.getIndex();
+        this.text = text;
+        final int n = index.size();
+        textLuminosity = new double[n];
+
+        for (int i = n - 1; i >= 0; i--)
+        {
+            final Area area = index.getArea(i);
+            final int first = index.getFirstChild(i);
+
+            //average text luminosity
+            double sum = 0;
+            int cnt = 0;
+            if (!area.getBoxes().isEmpty())
+            {
+                int l = text.getLength(i);
+                sum += ArticleFeatureExtractor.boxColorLuminosity(area) * l;
+                cnt += l;
+            }
+            for (int c = first; c != -1; c = index.getNextSibling(c))
+            {
+                int l = text.getLength(c);
+                sum += textLuminosity[c] * l;
+                cnt += l;
+            }
+            textLuminosity[i] = (cnt > 0) ? sum / cnt : 0;
+        }
+    }
+
+    public AreaTreeIndex getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * Finds the index of an area in the statistics.
+     * @param area the area
+     * @return the area index or -1 when the statistics are not available for the area
+     */
+    public int indexOf(Area area)
+    {
+        return text.indexOf(area);
+    }
+
+    /**
+     * Obtains the average text luminosity in the area subtree.
+     * @param i the area index
+     * @return the luminosity
+     */
+    public double getTextLuminosity(int i)
+    {
+        return textLuminosity[i];
+    }
+
+}
@@ -0,0 +1,42 @@
+/**
+ * HoeffdingTreeBackend.java
+ */
+package org.fit.layout.classify.backends;
+
+/**
+ * The Hoeffding tree (VFDT) classifier that may be used for incremental learning.
+ */
+public class HoeffdingTreeBackend extends WekaClassifierBackend
+{
+
+    @Override
+    public String getId()
+    {
+        return "FitLayout.Classifier.HoeffdingTree";
+    }
+
+    @Override
+    public String getName()
+    {
+        return "Hoeffding tree";
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return "The Hoeffding tree classifier that may be updated incrementally.";
+    }
+
+    @Override
+    public String getClassifierClass()
+    {
+        return "weka.classifiers.trees.HoeffdingTree";
+    }
+
+    @Override
+    public String getDefaultOptions()
+    {
+        return "";
+    }
+
+}
@@ -0,0 +1,42 @@
+/**
+ * J48Backend.java
+ */
+package org.fit.layout.classify.backends;
+
+/**
+ * The C4.5 decision tree (Weka J48).
+ */
+public class J48Backend extends WekaClassifierBackend
+{
+
+    @Override
+    public String getId()
+    {
+        return "FitLayout.Classifier.J48";
+    }
+
+    @Override
+    public String getName()
+    {
+        return "J48 decision tree";
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return "The C4.5 decision tree (Weka J48).";
+    }
+
+    @Override
+    public String getClassifierClass()
+    {
+        return "weka.classifiers.trees.J48";
+    }
+
+    @Override
+    public String getDefaultOptions()
+    {
+        return "-C 0.25 -M 2";
+    }
+
+}
@@ -0,0 +1,42 @@
+/**
+ * LibSVMBackend.java
+ */
+package org.fit.layout.classify.backends;
+
+/**
+ * The support vector machine classifier based on LibSVM. Requires the Weka LibSVM package in the class path.
+ */
+public class LibSVMBackend extends WekaClassifierBackend
+{
+
+    @Override
+    public String getId()
+    {
+        return "FitLayout.Classifier.LibSVM";
+    }
+
+    @Override
+    public String getName()
+    {
+        return "LibSVM";
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return "The support vector machine classifier based on LibSVM. Requires the Weka LibSVM package in the class path.";
+    }
+
+    @Override
+    public String getClassifierClass()
+    {
+        return "weka.classifiers.functions.LibSVM";
+    }
+
+    @Override
+    public String getDefaultOptions()
+    {
+        return "-S 0 -K 2 -D 3 -G 0.5 -R 0.0 -N 0.5 -M 40.0 -C 128.0 -E 0.0010 -P 0.1";
+    }
+
+}
@@ -0,0 +1,42 @@
+/**
+ * MultilayerPerceptronBackend.java
+ */
+package org.fit.layout.classify.backends;
+
+/**
+ * A multilayer perceptron neural network trained by backpropagation.
+ */
+public class MultilayerPerceptronBackend extends WekaClassifierBackend
+{
+
+    @Override
+    public String getId()
+    {
+        return "FitLayout.Classifier.MLP";
+    }
+
+    @Override
+    public String getName()
+    {
+        return "Multilayer perceptron";
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return "A multilayer perceptron neural network trained by backpropagation.";
+    }
+
+    @Override
+    public String getClassifierClass()
+    {
+        return "weka.classifiers.functions.MultilayerPerceptron";
+    }
+
+    @Override
+    public String getDefaultOptions()
+    {
+        return "-L 0.3 -M 0.2 -N 500 -V 0 -S 0 -E 20 -H a";
+    }
+
+}
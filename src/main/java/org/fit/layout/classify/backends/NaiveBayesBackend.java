@@ -0,0 +1,42 @@
+/**
+ * NaiveBayesBackend.java
+ */
+package org.fit.layout.classify.backends;
+
+/**
+ * The Naive Bayes classifier.
+ */
+public class NaiveBayesBackend extends WekaClassifierBackend
+{
+
+    @Override
+    public String getId()
+    {
+        return "FitLayout.Classifier.NaiveBayes";
+    }
+
+    @Override
+    public String getName()
+    {
+        return "Naive Bayes";
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return "The Naive Bayes classifier.";
+    }
+
+    @Override
+    public String getClassifierClass()
+    {
+        return "weka.classifiers.bayes.NaiveBayes";
+    }
+
+    @Override
+    public String getDefaultOptions()
+    {
+        return "";
+    }
+
+}
@@ -0,0 +1,42 @@
+/**
+ * NaiveBayesUpdateableBackend.java
+ */
+package org.fit.layout.classify.backends;
+
+/**
+ * The updateable Naive Bayes classifier that may be used for incremental learning.
+ */
+public class NaiveBayesUpdateableBackend extends WekaClassifierBackend
+{
+
+    @Override
+    public String getId()
+    {
+        return "FitLayout.Classifier.NaiveBayesUpdateable";
+    }
+
+    @Override
+    public String getName()
+    {
+        return "Naive Bayes (updateable)";
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return "The Naive Bayes classifier that may be updated incrementally.";
+    }
+
+    @Override
+    public String getClassifierClass()
+    {
+        return "weka.classifiers.bayes.NaiveBayesUpdateable";
+    }
+
+    @Override
+    public String getDefaultOptions()
+    {
+        return "";
+    }
+
+}
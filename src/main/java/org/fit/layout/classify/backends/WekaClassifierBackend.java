@@ -0,0 +1,38 @@
+/**
+ * WekaClassifierBackend.java
+ */
+package org.fit.layout.classify.backends;
+
+import org.fit.layout.classify.ClassifierBackend;
+
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.core.Utils;
+
+/**
+ * A base implementation of a backend that creates a Weka classifier of the given class.
+ */
+public abstract class WekaClassifierBackend implements ClassifierBackend
+{
+
+    /**
+     * Obtains the fully qualified name of the Weka classifier class.
+     * @return the class name
+     */
+    public abstract String getClassifierClass();
+    
+    @Override
+    public Classifier createClassifier(String options) throws Exception
+    {
+        if (options == null)
+            options = getDefaultOptions();
+        return AbstractClassifier.forName(getClassifierClass(), Utils.splitOptions(options));
+    }
+
+    @Override
+    public String toString()
+    {
+        return getId();
+    }
+    
+}
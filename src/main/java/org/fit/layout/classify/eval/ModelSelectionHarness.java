@@ -0,0 +1,592 @@
+/**
+ * ModelSelectionHarness.java
+ */
+package org.fit.layout.classify.eval;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.fit.layout.classify.ClassifierBackend;
+import org.fit.layout.classify.ClassifierBackends;
+import org.fit.layout.classify.CompiledTree;
+import org.fit.layout.classify.TrainedModel;
+import org.fit.layout.classify.VisualClassifier;
+
+import weka.classifiers.meta.FilteredClassifier;
+import weka.core.Instances;
+
+/**
+ * Compares the classifier backends and their settings on the training data sets using
+ * the k-fold cross-validation. All the candidate classifiers and all the folds are evaluated
+ * concurrently in a fork-join pool. The result is a table containing the accuracy, the per-class
+ * F1 measure, the training time and the inference throughput of each candidate.
+ * <p>
+ * The inference is measured using the same {@link TrainedModel} that is used for the classification
+ * in the operators, i.e. including the compiled tree when available. The number of test instances
+ * where the compiled tree differs from the original classifier is reported as well.
+ */
+public class ModelSelectionHarness
+{
+    /** The training data sets bundled with the classifier. */
+    public static final String[] DEFAULT_TRAIN_FILES = {
+        "res:train1.arff", "res:train_mix.arff", "res:train_reuters.arff", "res:train_reuters2.arff"
+    };
+    public static final int DEFAULT_CLASS_INDEX = 1;
+    public static final int DEFAULT_FOLDS = 10;
+
+    private List<String> trainFiles;
+    private int classIndex;
+    private int folds;
+    private long seed;
+    private List<Candidate> candidates;
+    private ForkJoinPool pool;
+
+    /**
+     * Creates a harness that uses the bundled training data sets, all the available classifier backends
+     * with their default options and a pool with one thread per available processor.
+     */
+    public ModelSelectionHarness()
+    {
+        trainFiles = new ArrayList<String>(Arrays.asList(DEFAULT_TRAIN_FILES));
+        classIndex = DEFAULT_CLASS_INDEX;
+        folds = DEFAULT_FOLDS;
+        seed = 1;
+        candidates = new ArrayList<Candidate>();
+        for (ClassifierBackend backend : ClassifierBackends.getAvailableBackends().values())
+            candidates.add(new Candidate(backend, null));
+        pool = new ForkJoinPool();
+    }
+
+    public List<String> getTrainFiles()
+    {
+        return trainFiles;
+    }
+
+    public void setTrainFiles(List<String> trainFiles)
+    {
+        this.trainFiles = trainFiles;
+    }
+
+    public int getClassIndex()
+    {
+        return classIndex;
+    }
+
+    public void setClassIndex(int classIndex)
+    {
+        this.classIndex = classIndex;
+    }
+
+    public int getFolds()
+    {
+        return folds;
+    }
+
+    public void setFolds(int folds)
+    {
+        this.folds = folds;
+    }
+
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Sets the random seed used for shuffling the data sets before they are split to folds.
+     * @param seed the seed to use
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    public List<Candidate> getCandidates()
+    {
+        return candidates;
+    }
+
+    public void setCandidates(List<Candidate> candidates)
+    {
+        this.candidates = candidates;
+    }
+
+    /**
+     * Sets the number of threads used for the evaluation.
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads)
+    {
+        pool.shutdown();
+        pool = new ForkJoinPool(threads);
+    }
+
+    public int getThreads()
+    {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Evaluates all the candidates on all the training data sets.
+     * @return the evaluation results, one for each data set and candidate
+     * @throws Exception when some of the training data sets could not be loaded
+     */
+    public List<Result> run() throws Exception
+    {
+        List<CandidateTask> tasks = new ArrayList<CandidateTask>();
+        for (String file : trainFiles)
+        {
+            Instances data = VisualClassifier.loadTrainingData(file, classIndex);
+            //shuffle and stratify once so that all the candidates use the same folds
+            data.randomize(new Random(seed));
+            if (data.classAttribute().isNominal())
+                data.stratify(folds);
+            for (Candidate cand : candidates)
+                tasks.add(new CandidateTask(file, data, cand));
+        }
+        for (CandidateTask task : tasks)
+            pool.execute(task);
+        List<Result> ret = new ArrayList<Result>(tasks.size());
+        for (CandidateTask task : tasks)
+            ret.add(task.join());
+        return ret;
+    }
+
+    /**
+     * Releases the thread pool used by the harness.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Prints the table of results.
+     * @param out the output stream
+     * @param results the results to print
+     */
+    public static void printTable(PrintStream out, List<Result> results)
+    {
+        out.println(String.format("%-24s %-36s %8s %10s %12s %6s  %s",
+                "Data set", "Classifier", "Accuracy", "Train[ms]", "Inst/s", "Diff", "F1 per class"));
+        for (Result res : results)
+        {
+            String name = res.getTrainFile();
+            if (name.startsWith("res:"))
+                name = name.substring(4);
+            if (res.getError() != null)
+            {
+                out.println(String.format("%-24s %-36s error: %s", name, res.getCandidate(), res.getError().getMessage()));
+            }
+            else
+            {
+                StringBuilder f1 = new StringBuilder();
+                for (int c = 0; c < res.getClassNames().length; c++)
+                {
+                    if (c > 0) f1.append(' ');
+                    f1.append(res.getClassNames()[c]).append('=').append(String.format("%.3f", res.getF1(c)));
+                }
+                out.println(String.format("%-24s %-36s %8.4f %10.1f %12.0f %6d  %s",
+                        name, res.getCandidate(), res.getAccuracy(), res.getTrainTime(),
+                        res.getThroughput(), res.getMismatches(), f1));
+            }
+        }
+    }
+
+    //==================================================================
+
+    /**
+     * A classifier backend together with the classifier options to be evaluated.
+     */
+    public static class Candidate
+    {
+        private ClassifierBackend backend;
+        private String options;
+
+        /**
+         * Creates a candidate.
+         * @param backend the classifier backend
+         * @param options the classifier options or {@code null} for the backend default options
+         */
+        public Candidate(ClassifierBackend backend, String options)
+        {
+            this.backend = backend;
+            this.options = options;
+        }
+
+        public ClassifierBackend getBackend()
+        {
+            return backend;
+        }
+
+        public String getOptions()
+        {
+            return options;
+        }
+
+        @Override
+        public String toString()
+        {
+            String id = backend.getId();
+            if (id.startsWith("FitLayout.Classifier."))
+                id = id.substring("FitLayout.Classifier.".length());
+            return id + " [" + (options == null ? backend.getDefaultOptions() : options) + "]";
+        }
+    }
+
+    /**
+     * The cross-validation result of a single candidate on a single data set. The results of the
+     * individual folds are summed.
+     */
+    public static class Result
+    {
+        private String trainFile;
+        private Candidate candidate;
+        private String[] classNames;
+        private long[][] confusion; //[actual][predicted]
+        private int folds;
+        private long trainTime; //ns
+        private long testTime; //ns
+        private long testCount;
+        private int mismatches;
+        private int compiledFolds;
+        private Exception error;
+
+        public Result(String trainFile, Candidate candidate, String[] classNames)
+        {
+            this.trainFile = trainFile;
+            this.candidate = candidate;
+            this.classNames = classNames;
+            this.confusion = new long[classNames.length][classNames.length];
+        }
+
+        public String getTrainFile()
+        {
+            return trainFile;
+        }
+
+        public Candidate getCandidate()
+        {
+            return candidate;
+        }
+
+        public String[] getClassNames()
+        {
+            return classNames;
+        }
+
+        /**
+         * Obtains the confusion matrix summed over all the folds.
+         * @return the matrix indexed by [actual class][predicted class]
+         */
+        public long[][] getConfusionMatrix()
+        {
+            return confusion;
+        }
+
+        /**
+         * Obtains the evaluation error.
+         * @return the exception that has occured during the evaluation or {@code null} when the evaluation was successful
+         */
+        public Exception getError()
+        {
+            return error;
+        }
+
+        /**
+         * Obtains the number of test instances where the compiled tree gave a different class distribution
+         * than the original classifier.
+         * @return the number of instances
+         */
+        public int getMismatches()
+        {
+            return mismatches;
+        }
+
+        /**
+         * Obtains the number of folds where the compiled tree has been used.
+         * @return the number of folds
+         */
+        public int getCompiledFolds()
+        {
+            return compiledFolds;
+        }
+
+        public double getAccuracy()
+        {
+            long correct = 0;
+            long total = 0;
+            for (int i = 0; i < confusion.length; i++)
+            {
+                for (int j = 0; j < confusion.length; j++)
+                {
+                    if (i == j) correct += confusion[i][j];
+                    total += confusion[i][j];
+                }
+            }
+            return (total == 0) ? 0 : correct / (double) total;
+        }
+
+        /**
+         * Computes the F1 measure for the given class.
+         * @param classIndex the class index
+         * @return the F1 measure
+         */
+        public double getF1(int classIndex)
+        {
+            long tp = confusion[classIndex][classIndex];
+            long fp = 0;
+            long fn = 0;
+            for (int i = 0; i < confusion.length; i++)
+            {
+                if (i != classIndex)
+                {
+                    fp += confusion[i][classIndex];
+                    fn += confusion[classIndex][i];
+                }
+            }
+            return (tp == 0) ? 0 : (2.0 * tp) / (2 * tp + fp + fn);
+        }
+
+        /**
+         * Obtains the average training time of a fold.
+         * @return the time in milliseconds
+         */
+        public double getTrainTime()
+        {
+            return (folds == 0) ? 0 : trainTime / (folds * 1000000.0);
+        }
+
+        /**
+         * Obtains the inference throughput.
+         * @return the number of instances classified per second by a single thread
+         */
+        public double getThroughput()
+        {
+            return (testTime == 0) ? 0 : testCount * 1e9 / testTime;
+        }
+
+        private void add(FoldResult fold)
+        {
+            for (int i = 0; i < confusion.length; i++)
+                for (int j = 0; j < confusion.length; j++)
+                    confusion[i][j] += fold.confusion[i][j];
+            folds++;
+            trainTime += fold.trainTime;
+            testTime += fold.testTime;
+            testCount += fold.testCount;
+            mismatches += fold.mismatches;
+            if (fold.compiled)
+                compiledFolds++;
+        }
+
+        @Override
+        public String toString()
+        {
+            return trainFile + " " + candidate + ": " + (error != null ? "error: " + error.getMessage()
+                    : String.format("acc:%.4f train:%.1fms %.0finst/s", getAccuracy(), getTrainTime(), getThroughput()));
+        }
+    }
+
+    private static class FoldResult
+    {
+        long[][] confusion;
+        long trainTime;
+        long testTime;
+        int testCount;
+        int mismatches;
+        boolean compiled;
+        Exception error;
+    }
+
+    /**
+     * Evaluates a single candidate on a data set; the folds are evaluated as subtasks.
+     */
+    private class CandidateTask extends RecursiveTask<Result>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private String trainFile;
+        private Instances data;
+        private Candidate candidate;
+
+        public CandidateTask(String trainFile, Instances data, Candidate candidate)
+        {
+            this.trainFile = trainFile;
+            this.data = data;
+            this.candidate = candidate;
+        }
+
+        @Override
+        protected Result compute()
+        {
+            String[] names = new String[data.numClasses()];
+            for (int i = 0; i < names.length; i++)
+                names[i] = data.classAttribute().value(i);
+            Result ret = new Result(trainFile, candidate, names);
+
+            List<FoldTask> tasks = new ArrayList<FoldTask>(folds);
+            for (int i = 0; i < folds; i++)
+                tasks.add(new FoldTask(data, candidate, i));
+            ForkJoinTask.invokeAll(tasks);
+            for (FoldTask task : tasks)
+            {
+                FoldResult fold = task.join();
+                if (fold.error != null)
+                {
+                    ret.error = fold.error;
+                    break;
+                }
+                ret.add(fold);
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * Trains and tests a candidate on a single fold.
+     */
+    private class FoldTask extends RecursiveTask<FoldResult>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private Instances data;
+        private Candidate candidate;
+        private int fold;
+
+        public FoldTask(Instances data, Candidate candidate, int fold)
+        {
+            this.data = data;
+            this.candidate = candidate;
+            this.fold = fold;
+        }
+
+        @Override
+        protected FoldResult compute()
+        {
+            try
+            {
+                return evaluate();
+            } catch (Exception e) {
+                FoldResult ret = new FoldResult();
+                ret.error = e;
+                return ret;
+            }
+        }
+
+        private FoldResult evaluate() throws Exception
+        {
+            Instances train = data.trainCV(folds, fold, new Random(seed));
+            Instances test = data.testCV(folds, fold);
+            FoldResult ret = new FoldResult();
+
+            //train the classifier in the same way as VisualClassifier does
+            FilteredClassifier fc = VisualClassifier.createClassifier(candidate.getBackend(), candidate.getOptions());
+            final long t0 = System.nanoTime();
+            fc.buildClassifier(train);
+            ret.trainTime = System.nanoTime() - t0;
+            CompiledTree compiled = CompiledTree.compile(fc, train);
+            if (compiled != null && compiled.verify(fc, train) != 0)
+                compiled = null;
+            if (compiled != null)
+            {
+                ret.compiled = true;
+                ret.mismatches = compiled.verify(fc, test);
+            }
+            TrainedModel model = new TrainedModel(fc, train, compiled);
+
+            //classify the test fold; the first pass is a warm-up
+            final int n = test.numInstances();
+            final int[] predicted = new int[n];
+            for (int pass = 0; pass < 2; pass++)
+            {
+                final long t1 = System.nanoTime();
+                for (int i = 0; i < n; i++)
+                    predicted[i] = VisualClassifier.getPredictedClass(model.distributionForInstance(test.instance(i)));
+                ret.testTime = System.nanoTime() - t1;
+            }
+            ret.testCount = n;
+
+            final int nc = test.numClasses();
+            ret.confusion = new long[nc][nc];
+            for (int i = 0; i < n; i++)
+            {
+                if (!test.instance(i).classIsMissing())
+                    ret.confusion[(int) test.instance(i).classValue()][predicted[i]]++;
+            }
+            return ret;
+        }
+    }
+
+    //==================================================================
+
+    /**
+     * Runs the evaluation and prints the table of results.
+     * <p>
+     * Usage: {@code ModelSelectionHarness [-folds n] [-threads n] [-seed n] [-classindex n] [-classifier id[:options]]... [file.arff]...}
+     * <p>
+     * The {@code -classifier} option may be repeated; all the available backends with their default options are
+     * used when it is not specified. The bundled training sets are used when no files are given.
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args)
+    {
+        ModelSelectionHarness harness = new ModelSelectionHarness();
+        List<String> files = new ArrayList<String>();
+        List<Candidate> cands = new ArrayList<Candidate>();
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                if (args[i].equals("-folds"))
+                    harness.setFolds(Integer.parseInt(args[++i]));
+                else if (args[i].equals("-threads"))
+                    harness.setThreads(Integer.parseInt(args[++i]));
+                else if (args[i].equals("-seed"))
+                    harness.setSeed(Long.parseLong(args[++i]));
+                else if (args[i].equals("-classindex"))
+                    harness.setClassIndex(Integer.parseInt(args[++i]));
+                else if (args[i].equals("-classifier"))
+                {
+                    String spec = args[++i];
+                    int sep = spec.indexOf(':');
+                    String id = (sep == -1) ? spec : spec.substring(0, sep);
+                    String opts = (sep == -1) ? null : spec.substring(sep + 1);
+                    ClassifierBackend backend = ClassifierBackends.findBackend(id);
+                    if (backend == null)
+                        backend = ClassifierBackends.findBackend("FitLayout.Classifier." + id);
+                    if (backend == null)
+                    {
+                        System.err.println("Unknown classifier backend: " + id + "; available: " + ClassifierBackends.getAvailableBackends().keySet());
+                        System.exit(1);
+                    }
+                    cands.add(new Candidate(backend, opts));
+                }
+                else
+                    files.add(args[i]);
+            }
+            if (!files.isEmpty())
+                harness.setTrainFiles(files);
+            if (!cands.isEmpty())
+                harness.setCandidates(cands);
+
+            System.err.println("Evaluating " + harness.getCandidates().size() + " candidates on " + harness.getTrainFiles().size()
+                    + " data sets, " + harness.getFolds() + " folds, " + harness.getThreads() + " threads");
+            final long t0 = System.currentTimeMillis();
+            List<Result> results = harness.run();
+            printTable(System.out, results);
+            System.err.println("Finished in " + (System.currentTimeMillis() - t0) + "ms");
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            harness.shutdown();
+        }
+    }
+
+}
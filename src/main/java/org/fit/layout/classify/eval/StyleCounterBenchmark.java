@@ -0,0 +1,451 @@
+/**
+ * StyleCounterBenchmark.java
+ */
+package org.fit.layout.classify.eval;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.fit.layout.classify.ConcurrentStyleCounter;
+import org.fit.layout.classify.StyleCounter;
+
+/**
+ * Measures the throughput of the style counters shared by multiple threads. The {@link ConcurrentStyleCounter}
+ * is compared with a {@link StyleCounter} guarded by a {@code synchronized} block and with the recommended
+ * use of the concurrent counter where each thread counts its styles locally and merges them when finished.
+ * <p>
+ * The counted styles are drawn from a Zipf distribution so that the contention on the most frequent styles
+ * may be controlled by the skew parameter (0 for uniformly distributed styles). The result is a table
+ * of the number of operations per second for each counter, number of threads and skew.
+ */
+public class StyleCounterBenchmark
+{
+    /** The counter implementations compared */
+    public static final String[] COUNTERS = { "synchronized", "concurrent", "local+merge" };
+
+    private int[] threads;
+    private double[] skews;
+    private int keys;
+    private int operations;
+    private int rounds;
+    private long seed;
+    private Integer[] styles;
+
+    /**
+     * Creates a benchmark with the default settings: 1 to 8 threads, the skews 0, 1 and 2, 1000 distinct
+     * styles and 1000000 operations per thread.
+     */
+    public StyleCounterBenchmark()
+    {
+        threads = new int[] {1, 2, 4, 8};
+        skews = new double[] {0.0, 1.0, 2.0};
+        keys = 1000;
+        operations = 1000000;
+        rounds = 3;
+        seed = 1;
+    }
+
+    public int[] getThreads()
+    {
+        return threads;
+    }
+
+    public void setThreads(int[] threads)
+    {
+        this.threads = threads;
+    }
+
+    public double[] getSkews()
+    {
+        return skews;
+    }
+
+    /**
+     * Sets the exponents of the Zipf distribution of the styles.
+     * @param skews the exponents; 0 means uniformly distributed styles
+     */
+    public void setSkews(double[] skews)
+    {
+        this.skews = skews;
+    }
+
+    public int getKeys()
+    {
+        return keys;
+    }
+
+    /**
+     * Sets the number of distinct styles.
+     * @param keys the number of styles
+     */
+    public void setKeys(int keys)
+    {
+        this.keys = keys;
+    }
+
+    public int getOperations()
+    {
+        return operations;
+    }
+
+    /**
+     * Sets the number of styles counted by each thread.
+     * @param operations the number of operations per thread
+     */
+    public void setOperations(int operations)
+    {
+        this.operations = operations;
+    }
+
+    public int getRounds()
+    {
+        return rounds;
+    }
+
+    /**
+     * Sets the number of repetitions of each measurement. The best round is reported; the first
+     * rounds serve as a warm-up.
+     * @param rounds the number of rounds
+     */
+    public void setRounds(int rounds)
+    {
+        this.rounds = rounds;
+    }
+
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * Runs all the measurements.
+     * @return the results, one for each skew, number of threads and counter
+     * @throws InterruptedException when interrupted while waiting for the threads
+     */
+    public List<Result> run() throws InterruptedException
+    {
+        styles = new Integer[keys];
+        for (int i = 0; i < keys; i++)
+            styles[i] = i;
+        int maxThreads = 0;
+        for (int t : threads)
+            maxThreads = Math.max(maxThreads, t);
+
+        List<Result> ret = new ArrayList<Result>();
+        for (double skew : skews)
+        {
+            //the styles counted by the individual threads are generated in advance
+            final double[] cdf = zipf(keys, skew);
+            final int[][] sequences = new int[maxThreads][operations];
+            for (int t = 0; t < maxThreads; t++)
+            {
+                Random rnd = new Random(seed + t);
+                for (int i = 0; i < operations; i++)
+                {
+                    int k = Arrays.binarySearch(cdf, rnd.nextDouble());
+                    if (k < 0) k = -k - 1;
+                    sequences[t][i] = Math.min(k, keys - 1);
+                }
+            }
+            for (int t : threads)
+            {
+                for (String counter : COUNTERS)
+                {
+                    long best = Long.MAX_VALUE;
+                    for (int r = 0; r < rounds; r++)
+                        best = Math.min(best, measure(counter, t, sequences));
+                    ret.add(new Result(counter, t, skew, (long) t * operations, best));
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Prints the table of results.
+     * @param out the output stream
+     * @param results the results to print
+     */
+    public static void printTable(PrintStream out, List<Result> results)
+    {
+        out.println(String.format("%-14s %8s %6s %14s", "Counter", "Threads", "Skew", "Ops/s"));
+        for (Result res : results)
+            out.println(String.format("%-14s %8d %6.2f %14.0f", res.getCounter(), res.getThreads(), res.getSkew(), res.getThroughput()));
+    }
+
+    //==================================================================
+
+    /**
+     * Counts the styles in the given number of threads.
+     * @return the elapsed time in nanoseconds
+     */
+    private long measure(String counter, int threadCount, final int[][] sequences) throws InterruptedException
+    {
+        final StyleCounter<Integer> plain = new StyleCounter<Integer>();
+        final ConcurrentStyleCounter<Integer> concurrent = new ConcurrentStyleCounter<Integer>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        Thread[] workers = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++)
+        {
+            final int[] seq = sequences[t];
+            Runnable work;
+            if (counter.equals("synchronized"))
+            {
+                work = new Runnable() {
+                    @Override
+                    public void run()
+                    {
+                        for (int k : seq)
+                        {
+                            synchronized (plain)
+                            {
+                                plain.add(styles[k]);
+                            }
+                        }
+                    }
+                };
+            }
+            else if (counter.equals("concurrent"))
+            {
+                work = new Runnable() {
+                    @Override
+                    public void run()
+                    {
+                        for (int k : seq)
+                            concurrent.add(styles[k]);
+                    }
+                };
+            }
+            else
+            {
+                work = new Runnable() {
+                    @Override
+                    public void run()
+                    {
+                        StyleCounter<Integer> local = new StyleCounter<Integer>();
+                        for (int k : seq)
+                            local.add(styles[k]);
+                        concurrent.merge(local);
+                    }
+                };
+            }
+            workers[t] = new Worker(work, start, done);
+            workers[t].start();
+        }
+        final long t0 = System.nanoTime();
+        start.countDown();
+        done.await();
+        final long time = System.nanoTime() - t0;
+        for (Thread worker : workers)
+            worker.join();
+
+        //check that nothing has been lost
+        long total = 0;
+        if (counter.equals("synchronized"))
+        {
+            for (int cnt : plain.getAll().values())
+                total += cnt;
+        }
+        else
+        {
+            for (Integer style : styles)
+                total += concurrent.getCount(style);
+        }
+        if (total != (long) threadCount * operations)
+            throw new IllegalStateException(counter + ": counted " + total + " instead of " + ((long) threadCount * operations));
+        return time;
+    }
+
+    /**
+     * Computes the cumulative distribution function of the Zipf distribution.
+     */
+    private static double[] zipf(int n, double exponent)
+    {
+        double[] ret = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++)
+        {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            ret[i] = sum;
+        }
+        for (int i = 0; i < n; i++)
+            ret[i] /= sum;
+        return ret;
+    }
+
+    private static double[] parseDoubles(String list)
+    {
+        String[] parts = list.split(",");
+        double[] ret = new double[parts.length];
+        for (int i = 0; i < parts.length; i++)
+            ret[i] = Double.parseDouble(parts[i].trim());
+        return ret;
+    }
+
+    private static int[] parseInts(String list)
+    {
+        String[] parts = list.split(",");
+        int[] ret = new int[parts.length];
+        for (int i = 0; i < parts.length; i++)
+            ret[i] = Integer.parseInt(parts[i].trim());
+        return ret;
+    }
+
+    //==================================================================
+
+    /**
+     * The throughput of a single counter with the given number of threads and skew.
+     */
+    public static class Result
+    {
+        private String counter;
+        private int threads;
+        private double skew;
+        private long operations;
+        private long time; //ns
+
+        public Result(String counter, int threads, double skew, long operations, long time)
+        {
+            this.counter = counter;
+            this.threads = threads;
+            this.skew = skew;
+            this.operations = operations;
+            this.time = time;
+        }
+
+        public String getCounter()
+        {
+            return counter;
+        }
+
+        public int getThreads()
+        {
+            return threads;
+        }
+
+        public double getSkew()
+        {
+            return skew;
+        }
+
+        /**
+         * Obtains the total number of operations of all the threads.
+         * @return the number of operations
+         */
+        public long getOperations()
+        {
+            return operations;
+        }
+
+        /**
+         * Obtains the time needed for all the operations.
+         * @return the time in milliseconds
+         */
+        public double getTime()
+        {
+            return time / 1000000.0;
+        }
+
+        /**
+         * Obtains the total throughput of all the threads.
+         * @return the number of operations per second
+         */
+        public double getThroughput()
+        {
+            return (time == 0) ? 0 : operations * 1e9 / time;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s threads:%d skew:%.2f %.0fops/s", counter, threads, skew, getThroughput());
+        }
+    }
+
+    /**
+     * A thread that starts its work when the start latch is released.
+     */
+    private static class Worker extends Thread
+    {
+        private Runnable work;
+        private CountDownLatch start;
+        private CountDownLatch done;
+
+        public Worker(Runnable work, CountDownLatch start, CountDownLatch done)
+        {
+            this.work = work;
+            this.start = start;
+            this.done = done;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                start.await();
+                work.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+    //==================================================================
+
+    /**
+     * Runs the benchmark and prints the table of results.
+     * <p>
+     * Usage: {@code StyleCounterBenchmark [-threads n,...] [-skew s,...] [-keys n] [-ops n] [-rounds n] [-seed n]}
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args)
+    {
+        StyleCounterBenchmark bench = new StyleCounterBenchmark();
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                if (args[i].equals("-threads"))
+                    bench.setThreads(parseInts(args[++i]));
+                else if (args[i].equals("-skew"))
+                    bench.setSkews(parseDoubles(args[++i]));
+                else if (args[i].equals("-keys"))
+                    bench.setKeys(Integer.parseInt(args[++i]));
+                else if (args[i].equals("-ops"))
+                    bench.setOperations(Integer.parseInt(args[++i]));
+                else if (args[i].equals("-rounds"))
+                    bench.setRounds(Integer.parseInt(args[++i]));
+                else if (args[i].equals("-seed"))
+                    bench.setSeed(Long.parseLong(args[++i]));
+                else
+                {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+                }
+            }
+
+            System.err.println("Counting " + bench.getOperations() + " styles per thread, " + bench.getKeys()
+                    + " distinct styles, best of " + bench.getRounds() + " rounds");
+            final long t0 = System.currentTimeMillis();
+            List<Result> results = bench.run();
+            printTable(System.out, results);
+            System.err.println("Finished in " + (System.currentTimeMillis() - t0) + "ms");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+}
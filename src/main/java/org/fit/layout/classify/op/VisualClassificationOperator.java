@@ -6,10 +6,18 @@
 package org.fit.layout.classify.op;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.fit.layout.api.Parameter;
+import org.fit.layout.classify.ClassificationListener;
+import org.fit.layout.classify.ClassifierBackends;
+import org.fit.layout.classify.ConfidencePruning;
 import org.fit.layout.classify.FeatureExtractor;
+import org.fit.layout.classify.ModelRegistry;
+import org.fit.layout.classify.TrainedModel;
 import org.fit.layout.classify.VisualClassifier;
 import org.fit.layout.classify.VisualTag;
 import org.fit.layout.classify.articles.ArticleFeatureExtractor;
@@ -19,6 +27,8 @@ import org.fit.layout.impl.ParameterInt;
 import org.fit.layout.impl.ParameterString;
 import org.fit.layout.model.Area;
 import org.fit.layout.model.AreaTree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * An operator that assigns the tags to the tree nodes based on the
@@ -28,18 +38,36 @@ import org.fit.layout.model.AreaTree;
  */
 public class VisualClassificationOperator extends BaseOperator
 {
+    private static Logger log = LoggerFactory.getLogger(VisualClassificationOperator.class);
+    
+    /** The class whose confident assignment causes pruning the subtree. */
+    public static final String PRUNE_CLASS = "none";
+    
     private String trainFile;
     private int classIndex;
     private boolean classDistribution;
+    private String classifier;
+    private String classifierOptions;
+    private int maxLatency;
+    private boolean parallel;
+    private int pruneConfidence;
+    private int maxTags;
     
     private FeatureExtractor features;
     private VisualClassifier vcls;
+    private ConfidencePruning pruning;
     
 
     public VisualClassificationOperator()
     {
         features = new ArticleFeatureExtractor();
         classDistribution = false;
+        classifier = ClassifierBackends.DEFAULT_BACKEND;
+        classifierOptions = "";
+        maxLatency = 0;
+        parallel = false;
+        pruneConfidence = 0;
+        maxTags = 0;
     }
     
     public VisualClassificationOperator(String trainFile, int classIndex, boolean classDistribution)
@@ -47,6 +75,12 @@ public class VisualClassificationOperator extends BaseOperator
         this.trainFile = trainFile;
         this.classIndex = classIndex;
         this.classDistribution = classDistribution;
+        this.classifier = ClassifierBackends.DEFAULT_BACKEND;
+        this.classifierOptions = "";
+        this.maxLatency = 0;
+        this.parallel = false;
+        this.pruneConfidence = 0;
+        this.maxTags = 0;
     }
 
     @Override
@@ -80,6 +114,12 @@ public class VisualClassificationOperator extends BaseOperator
         ret.add(new ParameterString("trainFile"));
         ret.add(new ParameterInt("classIndex"));
         ret.add(new ParameterBoolean("classDistribution"));
+        ret.add(new ParameterString("classifier"));
+        ret.add(new ParameterString("classifierOptions"));
+        ret.add(new ParameterInt("maxLatency"));
+        ret.add(new ParameterBoolean("parallel"));
+        ret.add(new ParameterInt("pruneConfidence"));
+        ret.add(new ParameterInt("maxTags"));
         return ret;
     }
 
@@ -113,6 +153,113 @@ public class VisualClassificationOperator extends BaseOperator
         this.classDistribution = classDistribution;
     }
 
+    public String getClassifier()
+    {
+        return classifier;
+    }
+
+    /**
+     * Sets the classifier backend to be used. A comma-separated list of backend IDs may be used for
+     * choosing the backend according to the measured latency (see {@link #setMaxLatency(int)}).
+     * @param classifier the classifier backend ID or a list of IDs
+     */
+    public void setClassifier(String classifier)
+    {
+        this.classifier = classifier;
+    }
+
+    public String getClassifierOptions()
+    {
+        return classifierOptions;
+    }
+
+    /**
+     * Sets the options of the classifier.
+     * @param classifierOptions the options string or an empty string for the default backend options
+     */
+    public void setClassifierOptions(String classifierOptions)
+    {
+        this.classifierOptions = classifierOptions;
+    }
+
+    public int getMaxLatency()
+    {
+        return maxLatency;
+    }
+
+    /**
+     * Sets the maximal accepted classification latency. When set, the first classifier from the
+     * list of classifiers whose latency measured during training does not exceed the limit is used.
+     * @param maxLatency the maximal latency per area in nanoseconds or 0 for no limit
+     */
+    public void setMaxLatency(int maxLatency)
+    {
+        this.maxLatency = maxLatency;
+    }
+
+    public boolean getParallel()
+    {
+        return parallel;
+    }
+
+    /**
+     * Enables the parallel classification. The areas are classified using all the available processors;
+     * the resulting tags are the same as in the sequential mode.
+     * @param parallel {@code true} for the parallel classification
+     */
+    public void setParallel(boolean parallel)
+    {
+        this.parallel = parallel;
+    }
+
+    public int getPruneConfidence()
+    {
+        return pruneConfidence;
+    }
+
+    /**
+     * Enables pruning the classified tree. When an area is classified as {@code none} with
+     * at least the given confidence, its descendant areas are not classified at all.
+     * @param pruneConfidence the minimal confidence in percent (1..100) or 0 for disabling the pruning
+     */
+    public void setPruneConfidence(int pruneConfidence)
+    {
+        this.pruneConfidence = pruneConfidence;
+    }
+
+    public int getMaxTags()
+    {
+        return maxTags;
+    }
+
+    /**
+     * Sets the maximal number of tags assigned to a single area in the class distribution mode.
+     * The most probable classes are used.
+     * @param maxTags the maximal number of tags or 0 for no limit
+     */
+    public void setMaxTags(int maxTags)
+    {
+        this.maxTags = maxTags;
+    }
+
+    /**
+     * Obtains the number of areas classified by the last application of the operator when the pruning is enabled.
+     * @return the number of classified areas
+     */
+    public long getVisitedCount()
+    {
+        return (pruning == null) ? 0 : pruning.getVisitedCount();
+    }
+
+    /**
+     * Obtains the number of areas skipped by the last application of the operator because of pruning.
+     * @return the number of skipped areas
+     */
+    public long getSkippedCount()
+    {
+        return (pruning == null) ? 0 : pruning.getSkippedCount();
+    }
+
     public FeatureExtractor getFeatures()
     {
         return features;
@@ -142,18 +289,46 @@ public class VisualClassificationOperator extends BaseOperator
         //visual features
         features.setTree(root);
         System.out.println("SETTING ROOT");
-        //create and train classifier
-        vcls = new VisualClassifier(trainFile, classIndex);
-        vcls.classifyTree(root, features);
-        //add tags based on the classification
-        recursivelyAddTags(root);
+        //obtain the shared trained model and create the classifier
+        vcls = new VisualClassifier(getModel());
+        //classify the areas and add tags based on the classification in a single pass
+        ClassificationListener listener = new ClassificationListener() {
+            @Override
+            public void areaClassified(Area area, double[] distribution)
+            {
+                addTags(area, distribution);
+            }
+        };
+        pruning = null;
+        if (pruneConfidence > 0 && vcls.getModel() != null)
+            pruning = ConfidencePruning.forClass(vcls.getModel(), PRUNE_CLASS, pruneConfidence / 100.0);
+        vcls.classifyTree(root, features, listener, pruning, parallel ? ForkJoinPool.commonPool() : null);
+        if (pruning != null)
+            log.info("Pruned classification: {} areas classified, {} skipped", pruning.getVisitedCount(), pruning.getSkippedCount());
+    }
+    
+    private TrainedModel getModel()
+    {
+        List<String> ids = new ArrayList<>();
+        for (String id : classifier.split(","))
+        {
+            if (!id.trim().isEmpty())
+                ids.add(id.trim());
+        }
+        if (ids.isEmpty())
+            ids.add(ClassifierBackends.DEFAULT_BACKEND);
+        if (ids.size() > 1 || maxLatency > 0)
+            return ModelRegistry.getInstance().selectModel(trainFile, classIndex, ids, classifierOptions,
+                    maxLatency > 0 ? maxLatency : Double.MAX_VALUE);
+        else
+            return ModelRegistry.getInstance().getModel(trainFile, classIndex, ids.get(0), classifierOptions);
     }
     
-    private void recursivelyAddTags(Area root)
+    private void addTags(Area root, double[] dist)
     {
         if (!classDistribution)
         {
-            String cls = vcls.classifyArea(root);
+            String cls = vcls.getClassName(VisualClassifier.getPredictedClass(dist));
             if (cls != null && !cls.isEmpty() && !cls.equals("none"))
             {
                 VisualTag tag = new VisualTag(cls);
@@ -162,25 +337,33 @@ public class VisualClassificationOperator extends BaseOperator
         }
         else
         {
-            double[] dist = vcls.distributionForArea(root);
             if (dist != null)
             {
+                List<Integer> selected = new ArrayList<>();
                 for (int i = 0; i < dist.length; i++)
                 {
-                    if (dist[i] >= 0.1f)
-                    {
-                        String cname = vcls.getClassName(i);
-                        if (!cname.equals("none"))
+                    if (dist[i] >= 0.1f && !vcls.getClassName(i).equals("none"))
+                        selected.add(i);
+                }
+                if (maxTags > 0 && selected.size() > maxTags)
+                {
+                    //use the most probable classes only
+                    final double[] fdist = dist;
+                    Collections.sort(selected, new Comparator<Integer>() {
+                        @Override
+                        public int compare(Integer i1, Integer i2)
                         {
-                            VisualTag tag = new VisualTag(cname);
-                            root.addTag(tag, (float) dist[i]);
+                            return Double.compare(fdist[i2], fdist[i1]);
                         }
-                    }
+                    });
+                    selected = selected.subList(0, maxTags);
+                }
+                for (int i : selected)
+                {
+                    VisualTag tag = new VisualTag(vcls.getClassName(i));
+                    root.addTag(tag, (float) dist[i]);
                 }
             }
         }
-        
-        for (int i = 0; i < root.getChildCount(); i++)
-            recursivelyAddTags(root.getChildArea(i));
     }
 }
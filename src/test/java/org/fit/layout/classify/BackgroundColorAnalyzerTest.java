@@ -0,0 +1,117 @@
+/**
+ * BackgroundColorAnalyzerTest.java
+ */
+package org.fit.layout.classify;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.util.HashMap;
+import java.util.List;
+
+import org.fit.layout.model.Area;
+import org.junit.Test;
+
+/**
+ * Compares the background colors propagated top-down by {@link BackgroundColorAnalyzer} with the
+ * effective background colors of the individual areas and with the original computations.
+ */
+public class BackgroundColorAnalyzerTest
+{
+    private static final int TREES = 20;
+    private static final int TREE_SIZE = 2000;
+
+    @Test
+    public void backgroundsMatchAreas()
+    {
+        for (int t = 0; t < TREES; t++)
+        {
+            final Area root = SyntheticTrees.create(t, (t == 0) ? 0 : TREE_SIZE);
+            checkTree(root);
+        }
+    }
+
+    @Test
+    public void subtreeBackgroundsMatchAreas()
+    {
+        for (int t = 1; t < TREES; t++)
+        {
+            final Area root = SyntheticTrees.create(t, TREE_SIZE / 4);
+            //the subtree roots inherit their backgrounds from the areas outside of the subtree
+            for (Area sub : SyntheticTrees.getAllAreas(root))
+            {
+                if (sub.getParentArea() != null && sub.getChildCount() > 0)
+                    checkTree(sub);
+            }
+        }
+    }
+
+    //==================================================================
+
+    private static void checkTree(Area root)
+    {
+        final BackgroundColorAnalyzer bca = new BackgroundColorAnalyzer(root);
+        final HashMap<Integer, Integer> colors = new HashMap<Integer, Integer>();
+        computeRootStatistics(root, colors);
+        final List<Area> areas = SyntheticTrees.getAllAreas(root);
+        for (Area area : areas)
+        {
+            final Color bg = area.getEffectiveBackgroundColor();
+            assertEquals(area.toString(), bg, bca.getEffectiveBackground(area));
+            assertEquals(area.toString(), BackgroundColorAnalyzer.getEffectiveBackgroundColor(area), bca.getEffectiveBackground(area));
+            //the original ArticleFeatureExtractor.getBackgroundLuminosity()
+            final double lum = (bg != null) ? colorLuminosity(bg) : 0;
+            assertEquals(area.toString(), lum, bca.getBackgroundLuminosity(area), 0.0);
+            assertEquals(area.toString(), getColorPercentage(area, colors, root.getBounds().getArea()), bca.getColorPercentage(area), 0.0);
+        }
+    }
+
+    // the original computations
+
+    private static void computeRootStatistics(Area root, HashMap<Integer, Integer> colors)
+    {
+        if (root.isBackgroundSeparated())
+        {
+            Color color = root.getBackgroundColor();
+            if (color != null)
+            {
+                int key = colorKey(color);
+                Integer val = colors.get(key);
+                if (val == null) val = 0;
+                val += root.getBounds().getArea();
+                colors.put(key, val);
+            }
+        }
+        for (int i = 0; i < root.getChildCount(); i++)
+            computeRootStatistics(root.getChildArea(i), colors);
+    }
+
+    private static double getColorPercentage(Area area, HashMap<Integer, Integer> colors, int totalArea)
+    {
+        if (!area.isBackgroundSeparated())
+            return -1.0;
+        Color color = BackgroundColorAnalyzer.getEffectiveBackgroundColor(area);
+        if (color == null)
+            return 0;
+        Integer num = colors.get(colorKey(color));
+        if (num == null) num = 0;
+        if (totalArea == 0)
+            return 0;
+        else
+            return (double) num / totalArea;
+    }
+
+    private static int colorKey(Color color)
+    {
+        return (color.getRed() / 16) * 256 + (color.getGreen() / 16) * 16 + (color.getBlue() / 16);
+    }
+
+    private static double colorLuminosity(Color c)
+    {
+        double lr = Math.pow(c.getRed() / 255.0, 2.2);
+        double lg = Math.pow(c.getGreen() / 255.0, 2.2);
+        double lb = Math.pow(c.getBlue() / 255.0, 2.2);
+        return lr * 0.2126 +  lg * 0.7152 + lb * 0.0722;
+    }
+
+}
@@ -0,0 +1,139 @@
+/**
+ * ColorHistogramTest.java
+ */
+package org.fit.layout.classify;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares the array-backed {@link ColorHistogram} with the original counting in a map
+ * from the color keys to the counts.
+ */
+public class ColorHistogramTest
+{
+    private static final int ROUNDS = 200;
+
+    @Test
+    public void countsMatchMap()
+    {
+        final Random rnd = new Random(20261017);
+        for (int t = 0; t < ROUNDS; t++)
+        {
+            final HashMap<Integer, Integer> map = new HashMap<Integer, Integer>();
+            final ColorHistogram hist = new ColorHistogram();
+            fill(rnd, t, map, hist);
+            check(map, hist);
+        }
+    }
+
+    @Test
+    public void mergeMatchesUnion()
+    {
+        final Random rnd = new Random(20261018);
+        for (int t = 0; t < ROUNDS; t++)
+        {
+            final HashMap<Integer, Integer> map1 = new HashMap<Integer, Integer>();
+            final HashMap<Integer, Integer> union = new HashMap<Integer, Integer>();
+            final ColorHistogram hist1 = new ColorHistogram();
+            final ColorHistogram hist2 = new ColorHistogram();
+            fill(rnd, t, map1, hist1);
+            union.putAll(map1);
+            fill(rnd, t, union, hist2); //the union counts both histograms
+
+            final ColorHistogram merged = hist1.snapshot();
+            merged.merge(hist2);
+            check(union, merged);
+            check(map1, hist1); //the snapshot is independent
+
+            final ColorHistogram twice = hist1.snapshot();
+            twice.merge(twice);
+            final HashMap<Integer, Integer> doubled = new HashMap<Integer, Integer>();
+            for (Map.Entry<Integer, Integer> entry : map1.entrySet())
+                doubled.put(entry.getKey(), entry.getValue() * 2);
+            check(doubled, twice);
+        }
+    }
+
+    @Test
+    public void snapshotIsIndependent()
+    {
+        final Random rnd = new Random(20261019);
+        final HashMap<Integer, Integer> map = new HashMap<Integer, Integer>();
+        final ColorHistogram hist = new ColorHistogram();
+        fill(rnd, 10, map, hist);
+        final ColorHistogram snap = hist.snapshot();
+        final HashMap<Integer, Integer> snapMap = new HashMap<Integer, Integer>(map);
+        fill(rnd, 10, map, hist);
+        check(map, hist);
+        check(snapMap, snap);
+        final ColorHistogram copy = new ColorHistogram(hist);
+        snap.add(Color.RED, 5);
+        check(map, copy);
+    }
+
+    //==================================================================
+
+    /**
+     * Adds random colors with random weights (including zero) to both the map and the histogram.
+     */
+    private static void fill(Random rnd, int t, HashMap<Integer, Integer> map, ColorHistogram hist)
+    {
+        final int palette = 1 + rnd.nextInt(1 + t * 20);
+        final int[] colors = new int[palette];
+        for (int i = 0; i < palette; i++)
+            colors[i] = rnd.nextInt();
+        final int ops = rnd.nextInt(2000);
+        for (int i = 0; i < ops; i++)
+        {
+            final Color color = new Color(colors[rnd.nextInt(palette)], rnd.nextBoolean());
+            final int weight = (rnd.nextInt(10) == 0) ? 0 : rnd.nextInt(100000);
+            if (weight > 0) //the original analyzers did not add the zero counts to the map
+            {
+                final int key = colorKey(color);
+                Integer val = map.get(key);
+                if (val == null) val = 0;
+                val += weight;
+                map.put(key, val);
+            }
+            if (rnd.nextBoolean())
+                hist.add(color, weight);
+            else
+                hist.add(ColorKernel.histogramKey(color), weight);
+        }
+    }
+
+    private static void check(HashMap<Integer, Integer> map, ColorHistogram hist)
+    {
+        long total = 0;
+        for (int key = 0; key < ColorKernel.HISTOGRAM_KEYS; key++)
+        {
+            final Integer num = map.get(key);
+            assertEquals("key " + key, (num == null) ? 0 : num.longValue(), hist.get(key));
+            if (num != null)
+                total += num;
+        }
+        for (Integer key : map.keySet())
+        {
+            final Color color = new Color((key >> 8) * 16 + 15, ((key >> 4) & 0xf) * 16, (key & 0xf) * 16 + 7);
+            assertEquals(map.get(key).longValue(), hist.get(color));
+        }
+        assertEquals(total, hist.getTotal());
+        assertEquals(map.size(), hist.getDistinctCount());
+    }
+
+    /**
+     * The original color key used by the color analyzers.
+     */
+    private static int colorKey(Color color)
+    {
+        return (color.getRed() / 16) * 256 + (color.getGreen() / 16) * 16 + (color.getBlue() / 16);
+    }
+
+}
@@ -0,0 +1,71 @@
+/**
+ * ColorKernelTest.java
+ */
+package org.fit.layout.classify;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares the table-based color computations with the original formulas.
+ */
+public class ColorKernelTest
+{
+    private static final int SAMPLES = 1000000;
+
+    @Test
+    public void luminosityOfSingleChannels()
+    {
+        for (int v = 0; v < 256; v++)
+        {
+            checkLuminosity(new Color(v, 0, 0));
+            checkLuminosity(new Color(0, v, 0));
+            checkLuminosity(new Color(0, 0, v));
+            checkLuminosity(new Color(v, v, v));
+        }
+    }
+
+    @Test
+    public void luminosityOfRandomColors()
+    {
+        Random rnd = new Random(20261018);
+        for (int i = 0; i < SAMPLES; i++)
+            checkLuminosity(new Color(rnd.nextInt(), true));
+    }
+
+    @Test
+    public void luminosityOfMissingColor()
+    {
+        assertEquals(255 * 0.2126 + 255 * 0.7152 + 255 * 0.0722, ColorKernel.luminosity(null), 0.0);
+    }
+
+    @Test
+    public void histogramKeys()
+    {
+        Random rnd = new Random(20261018);
+        for (int i = 0; i < SAMPLES; i++)
+        {
+            Color c = new Color(rnd.nextInt(), true);
+            final int expected = (c.getRed() / 16) * 256 + (c.getGreen() / 16) * 16 + (c.getBlue() / 16);
+            assertEquals(c.toString(), expected, ColorKernel.histogramKey(c));
+            assertEquals(c.toString(), expected, ColorKernel.histogramKey(c.getRGB()));
+        }
+    }
+
+    //==================================================================
+
+    private static void checkLuminosity(Color c)
+    {
+        final double lr = Math.pow(c.getRed() / 255.0, 2.2);
+        final double lg = Math.pow(c.getGreen() / 255.0, 2.2);
+        final double lb = Math.pow(c.getBlue() / 255.0, 2.2);
+        final double expected = lr * 0.2126 + lg * 0.7152 + lb * 0.0722;
+        assertEquals(c.toString(), expected, ColorKernel.luminosity(c), 0.0);
+        assertEquals(c.toString(), expected, ColorKernel.luminosity(c.getRGB()), 0.0);
+    }
+
+}
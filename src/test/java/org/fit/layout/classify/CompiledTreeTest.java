@@ -0,0 +1,34 @@
+/**
+ * CompiledTreeTest.java
+ */
+package org.fit.layout.classify;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.Test;
+
+import weka.classifiers.meta.FilteredClassifier;
+import weka.core.Instances;
+
+/**
+ * Checks that the compiled trees give the same class distributions as the Weka classifiers
+ * they have been compiled from.
+ */
+public class CompiledTreeTest
+{
+    @Test
+    public void compiledTreesMatchWeka() throws Exception
+    {
+        for (String file : TestModels.TRAINING_FILES)
+        {
+            Instances data = TestModels.loadData(file);
+            FilteredClassifier fc = TestModels.createClassifier();
+            fc.buildClassifier(data);
+            CompiledTree compiled = CompiledTree.compile(fc, data);
+            assertNotNull("compiled tree for " + file, compiled);
+            assertEquals("mismatches for " + file, 0, compiled.verify(fc, data));
+        }
+    }
+
+}
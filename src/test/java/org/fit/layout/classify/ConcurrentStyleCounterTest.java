@@ -0,0 +1,129 @@
+/**
+ * ConcurrentStyleCounterTest.java
+ */
+package org.fit.layout.classify;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Checks that the concurrent counter gives the same counts as the sequential counting when
+ * it is updated by multiple threads.
+ */
+public class ConcurrentStyleCounterTest
+{
+    private static final int PAGES = 400;
+    private static final int THREADS = 8;
+
+    @Test
+    public void concurrentMergeMatchesSequential() throws Exception
+    {
+        final List<StyleCounter<String>> pages = createPages(new Random(20261018));
+        StyleCounter<String> expected = new StyleCounter<String>();
+        for (StyleCounter<String> page : pages)
+            expected.merge(page);
+
+        final ConcurrentStyleCounter<String> shared = new ConcurrentStyleCounter<String>();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int t = 0; t < THREADS; t++)
+        {
+            final int first = t;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call()
+                {
+                    for (int i = first; i < pages.size(); i += THREADS)
+                        shared.merge(pages.get(i));
+                    return null;
+                }
+            });
+        }
+        runAll(tasks);
+
+        assertEquals(expected.getAll(), shared.snapshot().getAll());
+        assertEquals(expected.getDistinctCount(), shared.getDistinctCount());
+    }
+
+    @Test
+    public void concurrentAddMatchesSequential() throws Exception
+    {
+        final List<StyleCounter<String>> pages = createPages(new Random(20261019));
+        StyleCounter<String> expected = new StyleCounter<String>();
+        for (StyleCounter<String> page : pages)
+            expected.merge(page);
+
+        final ConcurrentStyleCounter<String> shared = new ConcurrentStyleCounter<String>();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int t = 0; t < THREADS; t++)
+        {
+            final int first = t;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call()
+                {
+                    for (int i = first; i < pages.size(); i += THREADS)
+                    {
+                        for (String style : pages.get(i).getDistinctStyles())
+                        {
+                            final int cnt = pages.get(i).getCount(style);
+                            for (int j = 0; j < cnt; j++)
+                                shared.add(style);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        runAll(tasks);
+
+        assertEquals(expected.getAll(), shared.snapshot().getAll());
+    }
+
+    //==================================================================
+
+    /**
+     * Creates the page counters that share a set of frequent styles and contain some page-specific ones.
+     */
+    private static List<StyleCounter<String>> createPages(Random rnd)
+    {
+        List<StyleCounter<String>> ret = new ArrayList<StyleCounter<String>>(PAGES);
+        for (int p = 0; p < PAGES; p++)
+        {
+            StyleCounter<String> page = new StyleCounter<String>();
+            final int n = 50 + rnd.nextInt(200);
+            for (int i = 0; i < n; i++)
+            {
+                if (rnd.nextInt(10) == 0)
+                    page.add("page" + p + "-" + rnd.nextInt(20));
+                else if (rnd.nextInt(50) == 0)
+                    page.add(null);
+                else
+                    page.add("s" + (int) Math.abs(rnd.nextGaussian() * 30));
+            }
+            ret.add(page);
+        }
+        return ret;
+    }
+
+    private static void runAll(List<Callable<Void>> tasks) throws Exception
+    {
+        ExecutorService exec = Executors.newFixedThreadPool(THREADS);
+        try
+        {
+            for (Future<Void> f : exec.invokeAll(tasks))
+                f.get();
+        } finally {
+            exec.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,164 @@
+/**
+ * FeatureMatrixTest.java
+ */
+package org.fit.layout.classify;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.fit.layout.classify.articles.ArticleFeatureExtractor;
+import org.fit.layout.classify.articles.FeatureVector;
+import org.fit.layout.model.Area;
+import org.junit.Test;
+
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Compares the feature rows stored in the {@link FeatureMatrix} of a {@link TreeClassification}
+ * with the rows extracted separately for each area.
+ */
+public class FeatureMatrixTest
+{
+    private static final int TREES = 5;
+    private static final int TREE_SIZE = 2000;
+
+    @Test
+    public void matrixRowsMatchAreaRows() throws Exception
+    {
+        final TrainedModel model = TestModels.train("train_mix.arff");
+        for (int t = 0; t < TREES; t++)
+        {
+            final Area root = SyntheticTrees.create(t, (t == 0) ? 0 : TREE_SIZE);
+            final ArticleFeatureExtractor features = new ArticleFeatureExtractor();
+            features.setTree(root);
+            final Instances header = new Instances(model.getHeader(), 0);
+            assertTrue(FeatureMatrix.isRowExtractor(features, header));
+            checkClassification(new TreeClassification(model, root, features), features, header);
+        }
+    }
+
+    @Test
+    public void instanceRowsMatchAreaRows() throws Exception
+    {
+        final TrainedModel model = TestModels.train("train_mix.arff");
+        for (int t = 0; t < TREES; t++)
+        {
+            final Area root = SyntheticTrees.create(t, (t == 0) ? 0 : TREE_SIZE);
+            final ArticleFeatureExtractor features = new ArticleFeatureExtractor();
+            features.setTree(root);
+            final Instances header = new Instances(model.getHeader(), 0);
+            //the rows are filled from the Weka instances when the extractor does not produce the rows itself
+            final FeatureExtractor plain = new PlainExtractor(features);
+            assertFalse(FeatureMatrix.isRowExtractor(plain, header));
+            checkClassification(new TreeClassification(model, root, plain), features, header);
+        }
+    }
+
+    //==================================================================
+
+    private static void checkClassification(TreeClassification tc, ArticleFeatureExtractor features, Instances header) throws Exception
+    {
+        final FeatureMatrix matrix = tc.getFeatureMatrix();
+        final Instances dataset = tc.getDataset();
+        final List<Area> areas = SyntheticTrees.getAllAreas(tc.getRoot());
+        assertEquals(areas.size(), matrix.getRowCount());
+        assertEquals(areas.size(), dataset.numInstances());
+        for (Area area : areas)
+        {
+            final int i = matrix.getIndex().indexOf(area);
+            final double[] expected = features.getAreaFeatures(area, header).toDoubleArray();
+            assertArrayEquals(area.toString(), originalRow(features.getFeatureVector(area)), expected, 0.0);
+
+            final double[] row = new double[matrix.getColumnCount()];
+            System.arraycopy(matrix.getData(), matrix.getOffset(i), row, 0, row.length);
+            assertArrayEquals(area.toString(), expected, row, 0.0);
+            assertArrayEquals(area.toString(), expected, tc.getAreaFeatures(area).toDoubleArray(), 0.0);
+            assertArrayEquals(area.toString(), expected, dataset.instance(i).toDoubleArray(), 0.0);
+
+            final Instance inst = new DenseInstance(1.0, expected);
+            inst.setDataset(header);
+            assertArrayEquals(area.toString(), tc.getModel().distributionForInstance(inst), tc.distributionForArea(area), 0.0);
+        }
+    }
+
+    /**
+     * Creates the feature row from the feature vector in the same way as the original
+     * {@code ArticleFeatureExtractor.getAreaFeatures()}.
+     */
+    private static double[] originalRow(FeatureVector f)
+    {
+        Instance inst = new DenseInstance(30);
+        int i = 0;
+        inst.setValue(i++, 0.0); //id
+        inst.setValue(i++, 0.0); //class
+        inst.setValue(i++, f.getFontSize() * 100);
+        inst.setValue(i++, f.getWeight());
+        inst.setValue(i++, f.getStyle());
+        inst.setValue(i++, f.isReplaced()?1:0);
+        inst.setValue(i++, f.getAabove());
+        inst.setValue(i++, f.getAbelow());
+        inst.setValue(i++, f.getAleft());
+        inst.setValue(i++, f.getAright());
+        inst.setValue(i++, f.getNlines());
+        inst.setValue(i++, 1); //TODO count columns
+        inst.setValue(i++, f.getDepth());
+        inst.setValue(i++, f.getTlength());
+        inst.setValue(i++, f.getPdigits());
+        inst.setValue(i++, f.getPlower());
+        inst.setValue(i++, f.getPupper());
+        inst.setValue(i++, f.getPspaces());
+        inst.setValue(i++, f.getPpunct());
+        inst.setValue(i++, f.getRelx());
+        inst.setValue(i++, f.getRely());
+        inst.setValue(i++, f.getTlum());
+        inst.setValue(i++, f.getBglum());
+        inst.setValue(i++, f.getContrast());
+        inst.setValue(i++, f.getMarkedness());
+        inst.setValue(i++, f.getCperc());
+        return inst.toDoubleArray();
+    }
+
+    /**
+     * A feature extractor that only provides the Weka instances.
+     */
+    private static class PlainExtractor implements FeatureExtractor
+    {
+        private FeatureExtractor src;
+
+        public PlainExtractor(FeatureExtractor src)
+        {
+            this.src = src;
+        }
+
+        @Override
+        public void setTree(Area rootNode)
+        {
+            src.setTree(rootNode);
+        }
+
+        @Override
+        public Area getTreeRoot()
+        {
+            return src.getTreeRoot();
+        }
+
+        @Override
+        public Instance getAreaFeatures(Area area, Instances dataset)
+        {
+            return src.getAreaFeatures(area, dataset);
+        }
+
+        @Override
+        public Instances createEmptyDataset()
+        {
+            return src.createEmptyDataset();
+        }
+    }
+
+}
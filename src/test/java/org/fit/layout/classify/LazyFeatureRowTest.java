@@ -0,0 +1,104 @@
+/**
+ * LazyFeatureRowTest.java
+ */
+package org.fit.layout.classify;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fit.layout.classify.articles.ArticleFeatureExtractor;
+import org.fit.layout.model.Area;
+import org.junit.Test;
+
+/**
+ * Compares the class distributions obtained using the lazily computed features with the distributions
+ * obtained from the complete feature rows.
+ */
+public class LazyFeatureRowTest
+{
+    /** The training files whose attributes correspond to the features of {@link ArticleFeatureExtractor} */
+    private static final String[] TRAINING_FILES = { "train_mix.arff", "train_reuters.arff" };
+    private static final int TREES = 5;
+    private static final int TREE_SIZE = 2000;
+
+    @Test
+    public void lazyRowMatchesEagerRow() throws Exception
+    {
+        for (String file : TRAINING_FILES)
+        {
+            final TrainedModel model = TestModels.train(file);
+            final CompiledTree compiled = model.getCompiledTree();
+            assertNotNull(compiled);
+            final ArticleFeatureExtractor features = new ArticleFeatureExtractor();
+            final FeatureRegistry registry = features.getFeatureRegistry();
+            for (int a : compiled.getUsedAttributes())
+                assertEquals(model.getHeader().attribute(a).name(), registry.getFeature(a).getName());
+
+            final LazyFeatureRow lazy = new LazyFeatureRow(registry);
+            final double[] row = new double[registry.size()];
+            final double[] eager = new double[compiled.getNumClasses()];
+            final double[] lazyDist = new double[compiled.getNumClasses()];
+            for (int t = 0; t < TREES; t++)
+            {
+                final Area root = SyntheticTrees.create(t, TREE_SIZE);
+                features.setTree(root);
+                for (Area area : SyntheticTrees.getAllAreas(root))
+                {
+                    features.getAreaFeatures(area, row, 0);
+                    compiled.distribution(row, 0, eager);
+                    lazy.setArea(area);
+                    compiled.distribution(lazy, lazyDist);
+                    assertArrayEquals(file + " " + area, eager, lazyDist, 0.0);
+                }
+            }
+            assertTrue(file + " " + lazy, lazy.getCostRatio() < 1.0);
+        }
+    }
+
+    @Test
+    public void lazyClassificationMatchesEager() throws Exception
+    {
+        for (String file : TRAINING_FILES)
+        {
+            final VisualClassifier vcls = new VisualClassifier(TestModels.train(file));
+            for (int t = 0; t < TREES; t++)
+            {
+                final Area root = SyntheticTrees.create(t, TREE_SIZE);
+                final ArticleFeatureExtractor features = new ArticleFeatureExtractor();
+                features.setTree(root);
+                vcls.setLazyFeatures(false);
+                final Map<Area, double[]> eager = classify(vcls, root, features);
+                vcls.setLazyFeatures(true);
+                final Map<Area, double[]> lazy = classify(vcls, root, features);
+
+                final List<Area> areas = SyntheticTrees.getAllAreas(root);
+                assertEquals(areas.size(), eager.size());
+                assertEquals(areas.size(), lazy.size());
+                for (Area area : areas)
+                    assertArrayEquals(file + " " + area, eager.get(area), lazy.get(area), 0.0);
+            }
+        }
+    }
+
+    //==================================================================
+
+    private static Map<Area, double[]> classify(VisualClassifier vcls, Area root, FeatureExtractor features)
+    {
+        final Map<Area, double[]> ret = new IdentityHashMap<Area, double[]>();
+        vcls.classifyTree(root, features, new ClassificationListener() {
+            @Override
+            public void areaClassified(Area area, double[] distribution)
+            {
+                ret.put(area, distribution.clone());
+            }
+        });
+        return ret;
+    }
+
+}
@@ -0,0 +1,126 @@
+/**
+ * ModelCacheTest.java
+ */
+package org.fit.layout.classify;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import weka.classifiers.Classifier;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SerializationHelper;
+
+/**
+ * Checks that the model cache stores the snapshots in a private directory and that it refuses
+ * to load the snapshots that might have been planted by someone else.
+ */
+public class ModelCacheTest
+{
+    private static final String KEY = "0123456789abcdef";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void storedModelIsLoaded() throws Exception
+    {
+        Instances data = TestModels.loadData("train_mix.arff");
+        TrainedModel model = TestModels.train("train_mix.arff");
+        ModelCache cache = new ModelCache(new File(tmp.getRoot(), "a/models"));
+        assertTrue(cache.store(KEY, model));
+        TrainedModel loaded = cache.load(KEY);
+        assertNotNull(loaded);
+        assertNotNull(loaded.getCompiledTree());
+        for (int i = 0; i < data.numInstances(); i++)
+        {
+            Instance inst = data.instance(i);
+            assertArrayEquals(model.distributionForInstance(inst), loaded.distributionForInstance(inst), 0.0);
+        }
+    }
+
+    @Test
+    public void directoryIsPrivate() throws Exception
+    {
+        assumeTrue(tmp.getRoot().toPath().getFileSystem().supportedFileAttributeViews().contains("posix"));
+        File dir = new File(tmp.getRoot(), "a/models");
+        ModelCache cache = new ModelCache(dir);
+        assertTrue(cache.store(KEY, TestModels.train("train1.arff")));
+        assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(dir.toPath()));
+        assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(dir.getParentFile().toPath()));
+        for (PosixFilePermission perm : Files.getPosixFilePermissions(new File(dir, KEY + ".model").toPath()))
+            assertFalse(perm.toString(), perm.name().startsWith("GROUP") || perm.name().startsWith("OTHERS"));
+    }
+
+    @Test
+    public void sharedDirectoryIsIgnored() throws Exception
+    {
+        assumeTrue(tmp.getRoot().toPath().getFileSystem().supportedFileAttributeViews().contains("posix"));
+        File dir = tmp.newFolder("shared");
+        ModelCache cache = new ModelCache(dir);
+        Set<PosixFilePermission> perms = PosixFilePermissions.fromString("rwxrwxrwx");
+        Files.setPosixFilePermissions(dir.toPath(), perms);
+        assertFalse(cache.store(KEY, TestModels.train("train1.arff")));
+
+        //a snapshot planted in a directory writable by others
+        SerializationHelper.write(new File(dir, KEY + ".model").getAbsolutePath(), TestModels.train("train1.arff"));
+        assertNull(cache.load(KEY));
+        Files.setPosixFilePermissions(dir.toPath(), PosixFilePermissions.fromString("rwx------"));
+        assertNotNull(cache.load(KEY));
+    }
+
+    @Test
+    public void foreignClassesAreRefused() throws Exception
+    {
+        assumeTrue(tmp.getRoot().toPath().getFileSystem().supportedFileAttributeViews().contains("posix"));
+        File dir = tmp.newFolder("models");
+        Files.setPosixFilePermissions(dir.toPath(), PosixFilePermissions.fromString("rwx------"));
+        ModelCache cache = new ModelCache(dir);
+        Classifier proxy = (Classifier) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Classifier.class }, new DummyHandler());
+        TrainedModel model = new TrainedModel(proxy, TestModels.loadData("train1.arff"));
+        assertTrue(cache.store(KEY, model));
+        assertNotNull(SerializationHelper.read(new File(dir, KEY + ".model").getAbsolutePath()));
+        assertNull(cache.load(KEY));
+    }
+
+    //==================================================================
+
+    /**
+     * A serializable handler of a proxy classifier that should never be deserialized.
+     */
+    private static class DummyHandler implements InvocationHandler, Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            if (method.getName().equals("hashCode"))
+                return System.identityHashCode(proxy);
+            if (method.getName().equals("equals"))
+                return proxy == args[0];
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,278 @@
+/**
+ * NodeStyleTest.java
+ */
+package org.fit.layout.classify;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Color;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Vector;
+
+import org.fit.layout.model.Area;
+import org.fit.layout.model.AreaTopology;
+import org.fit.layout.model.Box;
+import org.junit.Test;
+
+/**
+ * Compares the {@link NodeStyle} stored in primitive fields with the original implementation
+ * and checks the style IDs assigned by the {@link StylePool}.
+ */
+public class NodeStyleTest
+{
+    private static final int TREES = 20;
+    private static final int TREE_SIZE = 1000;
+    /** The number of areas compared pairwise in each tree */
+    private static final int PAIRS = 300;
+
+    @Test
+    public void stylesMatchOriginal()
+    {
+        for (int t = 0; t < TREES; t++)
+        {
+            for (Area area : SyntheticTrees.getAllAreas(createTree(t)))
+            {
+                final NodeStyle style = new NodeStyle(area);
+                final OriginalStyle orig = new OriginalStyle(area);
+                checkStyle(area.toString(), orig, style);
+                //the first box in the order of getAllBoxes()
+                assertEquals(area.toString(), area.getAllBoxes().firstElement().getColor(), style.getColor());
+            }
+        }
+    }
+
+    @Test
+    public void equalityMatchesOriginal()
+    {
+        for (int t = 0; t < TREES; t++)
+        {
+            final List<Area> areas = SyntheticTrees.getAllAreas(createTree(t));
+            final int n = Math.min(PAIRS, areas.size());
+            final NodeStyle[] styles = new NodeStyle[n];
+            final OriginalStyle[] origs = new OriginalStyle[n];
+            for (int i = 0; i < n; i++)
+            {
+                styles[i] = new NodeStyle(areas.get(i));
+                origs[i] = new OriginalStyle(areas.get(i));
+            }
+            for (int i = 0; i < n; i++)
+            {
+                for (int j = 0; j < n; j++)
+                {
+                    final boolean eq = origs[i].equals(origs[j]);
+                    assertEquals(styles[i] + " " + styles[j], eq, styles[i].equals(styles[j]));
+                    if (eq)
+                        assertEquals(styles[i].hashCode(), styles[j].hashCode());
+                }
+                assertEquals(false, styles[i].equals(null));
+                assertEquals(false, styles[i].equals(origs[i]));
+            }
+        }
+    }
+
+    @Test
+    public void copyMatchesSource()
+    {
+        for (int t = 0; t < TREES; t++)
+        {
+            for (Area area : SyntheticTrees.getAllAreas(createTree(t)))
+            {
+                final NodeStyle style = new NodeStyle(area);
+                final NodeStyle copy = new NodeStyle(style);
+                final OriginalStyle orig = new OriginalStyle(area);
+                assertNotSame(style, copy);
+                assertEquals(style, copy);
+                checkStyle(area.toString(), orig, copy);
+                //the original copy replaced the blue channel with the green one
+                final Color c = orig.getColor();
+                if (c.getGreen() == c.getBlue())
+                    checkStyle(area.toString(), new OriginalStyle(orig), copy);
+            }
+        }
+    }
+
+    @Test
+    public void poolAssignsSameIdToEqualStyles()
+    {
+        for (int t = 0; t < TREES; t++)
+        {
+            final StylePool pool = new StylePool();
+            final HashMap<OriginalStyle, Integer> expected = new HashMap<OriginalStyle, Integer>();
+            for (Area area : SyntheticTrees.getAllAreas(createTree(t)))
+            {
+                final OriginalStyle orig = new OriginalStyle(area);
+                Integer eid = expected.get(orig);
+                if (eid == null)
+                {
+                    eid = expected.size(); //the IDs are assigned in the order of appearance
+                    expected.put(orig, eid);
+                }
+                final NodeStyle style = new NodeStyle(area);
+                final int id = pool.getId(area);
+                assertEquals(area.toString(), eid.intValue(), id);
+                assertEquals(id, pool.getId(style));
+                assertEquals(id, pool.getId(new NodeStyle(style)));
+                assertEquals(style, pool.getStyle(id));
+                assertSame(pool.getStyle(id), pool.intern(style));
+                assertEquals(expected.size(), pool.size());
+            }
+        }
+    }
+
+    //==================================================================
+
+    private static Area createTree(int t)
+    {
+        if (t == 0)
+            return SyntheticTrees.create(t, 0);
+        else if (t % 2 == 0)
+            return SyntheticTrees.createIrregular(t, TREE_SIZE);
+        else
+            return SyntheticTrees.create(t, TREE_SIZE);
+    }
+
+    private static void checkStyle(String msg, OriginalStyle orig, NodeStyle style)
+    {
+        assertEquals(msg, orig.toString(), style.toString());
+        assertEquals(msg, orig.toARFFString(), style.toARFFString());
+        assertEquals(msg, orig.hashCode(), style.hashCode());
+        assertEquals(msg, orig.getColor(), style.getColor());
+        assertEquals(msg, orig.getFontSize(), style.getFontSize(), 0.0f);
+        assertEquals(msg, orig.getWeight(), style.getWeight(), 0.0f);
+        assertEquals(msg, orig.getStyle(), style.getStyle(), 0.0f);
+        assertEquals(msg, orig.getIndent(), style.getIndent());
+    }
+
+    /**
+     * The original node style.
+     */
+    private static class OriginalStyle
+    {
+        private float fontSize;
+        private float style;
+        private float weight;
+        private Color color;
+        private int indent;
+
+        public OriginalStyle(Area area)
+        {
+            Vector<Box> boxes = area.getAllBoxes();
+
+            fontSize = area.getFontSize();
+            style = area.getFontStyle();
+            weight = area.getFontWeight();
+            if (!boxes.isEmpty())
+                color = boxes.firstElement().getColor();
+            else
+                color = Color.BLACK;
+            indent = (int) Math.round(computeIndentation(area));
+        }
+
+        public OriginalStyle(OriginalStyle src)
+        {
+            this.fontSize = src.fontSize;
+            this.style = src.style;
+            this.weight = src.weight;
+            this.color = new Color(src.color.getRed(), src.color.getGreen(), src.color.getGreen(), src.color.getAlpha());
+            this.indent = src.indent;
+        }
+
+        public float getFontSize()
+        {
+            return fontSize;
+        }
+
+        public float getStyle()
+        {
+            return style;
+        }
+
+        public float getWeight()
+        {
+            return weight;
+        }
+
+        public Color getColor()
+        {
+            return color;
+        }
+
+        public int getIndent()
+        {
+            return indent;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + ((color == null) ? 0 : color.hashCode());
+            result = prime * result + Float.floatToIntBits(fontSize);
+            result = prime * result + indent;
+            result = prime * result + Float.floatToIntBits(style);
+            result = prime * result + Float.floatToIntBits(weight);
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) return true;
+            if (obj == null) return false;
+            if (getClass() != obj.getClass()) return false;
+            OriginalStyle other = (OriginalStyle) obj;
+            if (color == null)
+            {
+                if (other.color != null) return false;
+            }
+            else if (!color.equals(other.color)) return false;
+            if (Float.floatToIntBits(fontSize) != Float
+                    .floatToIntBits(other.fontSize)) return false;
+            if (indent != other.indent) return false;
+            if (Float.floatToIntBits(style) != Float.floatToIntBits(other.style))
+                return false;
+            if (Float.floatToIntBits(weight) != Float.floatToIntBits(other.weight))
+                return false;
+            return true;
+        }
+
+        @Override
+        public String toString()
+        {
+            String ret = "[fs:" + fontSize + " w:" + weight + " s:" + style + " c:";
+            ret += String.format("#%02x%02x%02x", color.getRed(), color.getGreen(), color.getBlue());
+            ret += " i:" + indent;
+            ret += "]";
+            return ret;
+        }
+
+        public String toARFFString()
+        {
+            return fontSize + "," + weight + "," + style + ","
+                    + (color.getRed() / 255.0) + "," + (color.getGreen() / 255.0) + "," + (color.getBlue() / 255.0)
+                    + "," + indent;
+        }
+
+        private double computeIndentation(Area area)
+        {
+            final double max_levels = 3;
+            final AreaTopology topo = area.getTopology();
+
+            if (topo.getPreviousOnLine() != null)
+                return computeIndentation(topo.getPreviousOnLine()); //use the indentation of the first one on the line
+            else
+            {
+                double ind = max_levels;
+                if (area.getParentArea() != null)
+                    ind = ind - (topo.getPosition().getX1() - area.getParentArea().getTopology().getMinIndent());
+                if (ind < 0) ind = 0;
+                return ind / max_levels;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,200 @@
+/**
+ * StyleCounterTest.java
+ */
+package org.fit.layout.classify;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares the open-addressing style counters with a straightforward map-based counter
+ * (the original implementation of {@link StyleCounter}).
+ */
+public class StyleCounterTest
+{
+    private static final int ROUNDS = 200;
+
+    @Test
+    public void countsMatchReference()
+    {
+        Random rnd = new Random(20261018);
+        for (int t = 0; t < ROUNDS; t++)
+        {
+            ReferenceCounter ref = new ReferenceCounter();
+            StyleCounter<String> counter = new StyleCounter<String>();
+            LongStyleCounter lcounter = new LongStyleCounter();
+            final int distinct = 1 + rnd.nextInt(t + 1) * 5;
+            final int ops = rnd.nextInt(5000);
+            for (int i = 0; i < ops; i++)
+            {
+                final int k = key(rnd, distinct);
+                final String style = (k % 7 == 0 && t % 3 == 0) ? null : "s" + k; //null styles are allowed
+                ref.add(style, 1);
+                counter.add(style);
+                lcounter.add((style == null) ? -1 : k);
+            }
+            checkCounter(ref, counter);
+            checkLongCounter(ref, lcounter, distinct);
+        }
+    }
+
+    @Test
+    public void mergeMatchesReference()
+    {
+        Random rnd = new Random(20261018);
+        for (int t = 0; t < ROUNDS; t++)
+        {
+            ReferenceCounter ref = new ReferenceCounter();
+            StyleCounter<String> merged = new StyleCounter<String>();
+            LongStyleCounter lmerged = new LongStyleCounter();
+            final int distinct = 1 + rnd.nextInt(50);
+            final int pages = 1 + rnd.nextInt(10);
+            for (int p = 0; p < pages; p++)
+            {
+                StyleCounter<String> page = new StyleCounter<String>();
+                LongStyleCounter lpage = new LongStyleCounter();
+                final int ops = rnd.nextInt(500);
+                for (int i = 0; i < ops; i++)
+                {
+                    final int k = key(rnd, distinct);
+                    final int cnt = rnd.nextInt(4); //including zero counts
+                    ref.add("s" + k, cnt);
+                    page.add("s" + k, cnt);
+                    lpage.add(k, cnt);
+                }
+                merged.merge(page);
+                lmerged.merge(lpage);
+            }
+            checkCounter(ref, merged);
+            checkLongCounter(ref, lmerged, distinct);
+        }
+    }
+
+    @Test
+    public void zeroCountsAreIgnored()
+    {
+        StyleCounter<String> counter = new StyleCounter<String>();
+        counter.add("a", 0);
+        assertNull(counter.getMostFrequent());
+        assertEquals(0, counter.getDistinctCount());
+        assertTrue(counter.getAll().isEmpty());
+        counter.add("b", 2);
+        counter.add("a", 0);
+        assertEquals("b", counter.getMostFrequent());
+        assertEquals(1, counter.getDistinctCount());
+
+        LongStyleCounter lcounter = new LongStyleCounter();
+        lcounter.add(1, 0);
+        assertTrue(lcounter.isEmpty());
+        assertEquals(0, lcounter.getDistinctCount());
+        lcounter.add(2, 2);
+        lcounter.add(1, 0);
+        assertEquals(2, lcounter.getMostFrequent());
+        assertEquals(1, lcounter.getDistinctCount());
+    }
+
+    //==================================================================
+
+    private static int key(Random rnd, int distinct)
+    {
+        return (int) Math.abs(rnd.nextGaussian() * distinct);
+    }
+
+    private static void checkCounter(ReferenceCounter ref, StyleCounter<String> counter)
+    {
+        assertEquals(ref.counts, counter.getAll());
+        assertEquals(ref.counts.keySet(), counter.getDistinctStyles());
+        assertEquals(ref.counts.size(), counter.getDistinctCount());
+        assertEquals(ref.getMaxFrequency(), counter.getMaxFrequency());
+        assertEquals(new HashSet<String>(ref.getFrequent(1.0f)), new HashSet<String>(counter.getMostFrequentAll()));
+        assertEquals(new HashSet<String>(ref.getFrequent(0.3f)), new HashSet<String>(counter.getFrequentSyles(0.3f)));
+        if (ref.counts.isEmpty())
+            assertNull(counter.getMostFrequent());
+        else
+            assertEquals(ref.getMaxFrequency(), counter.getCount(counter.getMostFrequent()));
+        int last = Integer.MAX_VALUE;
+        int cnt = 0;
+        for (Map.Entry<String, Integer> entry : counter.getAllSorted().entrySet())
+        {
+            assertEquals(ref.getCount(entry.getKey()), entry.getValue().intValue());
+            assertTrue(entry.getValue() <= last);
+            last = entry.getValue();
+            cnt++;
+        }
+        assertEquals(ref.counts.size(), cnt);
+    }
+
+    private static void checkLongCounter(ReferenceCounter ref, LongStyleCounter counter, int distinct)
+    {
+        for (int k = -1; k < distinct * 3; k++)
+            assertEquals(ref.getCount((k < 0) ? null : "s" + k), counter.getCount(k));
+        assertEquals(ref.counts.size(), counter.getDistinctCount());
+        assertEquals(ref.counts.isEmpty(), counter.isEmpty());
+        assertEquals(ref.getMaxFrequency(), counter.getMaxFrequency());
+        assertEquals(ref.getFrequent(1.0f).size(), counter.getMostFrequentAll().length);
+        assertEquals(ref.getFrequent(0.3f).size(), counter.getFrequentStyles(0.3f).length);
+        if (!counter.isEmpty())
+            assertEquals(ref.getMaxFrequency(), counter.getCount(counter.getMostFrequent()));
+        long[] sorted = counter.getAllSorted();
+        assertEquals(ref.counts.size(), sorted.length);
+        for (int i = 1; i < sorted.length; i++)
+            assertTrue(counter.getCount(sorted[i - 1]) >= counter.getCount(sorted[i]));
+    }
+
+    /**
+     * The original map-based counter.
+     */
+    private static class ReferenceCounter
+    {
+        public Map<String, Integer> counts = new HashMap<String, Integer>();
+
+        public void add(String style, int count)
+        {
+            for (int i = 0; i < count; i++)
+            {
+                Integer cnt = counts.get(style);
+                if (cnt == null)
+                    counts.put(style, 1);
+                else
+                    counts.put(style, cnt + 1);
+            }
+        }
+
+        public int getCount(String style)
+        {
+            Integer cnt = counts.get(style);
+            return (cnt == null) ? 0 : cnt;
+        }
+
+        public int getMaxFrequency()
+        {
+            int max = 0;
+            for (int cnt : counts.values())
+                max = Math.max(max, cnt);
+            return max;
+        }
+
+        public List<String> getFrequent(float factor)
+        {
+            final int max = getMaxFrequency();
+            List<String> ret = new ArrayList<String>();
+            for (Map.Entry<String, Integer> entry : counts.entrySet())
+            {
+                if (entry.getValue() >= factor * max)
+                    ret.add(entry.getKey());
+            }
+            return ret;
+        }
+    }
+
+}
@@ -0,0 +1,433 @@
+/**
+ * SyntheticTrees.java
+ */
+package org.fit.layout.classify;
+
+import java.awt.Color;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Vector;
+
+import org.fit.layout.model.Area;
+import org.fit.layout.model.AreaTopology;
+import org.fit.layout.model.Box;
+import org.fit.layout.model.Rectangular;
+
+/**
+ * Random area trees used for testing the classification. The areas and boxes are dynamic proxies
+ * that provide the geometry, fonts, colors, text and topology used by the feature extractors;
+ * the remaining methods return default values. The generated trees are deterministic for a given seed.
+ */
+public final class SyntheticTrees
+{
+    private static final Color[] PALETTE = {
+        Color.BLACK, Color.RED, new Color(20, 20, 20), new Color(200, 10, 10), Color.BLUE, new Color(128, 128, 128)
+    };
+    private static final String CHARS = "abcXYZ0129 ,.;: éÉ-!?\t";
+
+    private Random rnd;
+    private int max;
+    private int maxChildren;
+    private boolean irregular;
+    private int count;
+
+    private SyntheticTrees(long seed, int max, int maxChildren, boolean irregular)
+    {
+        this.rnd = new Random(seed);
+        this.max = max;
+        this.maxChildren = maxChildren;
+        this.irregular = irregular;
+    }
+
+    /**
+     * Creates a random area tree.
+     * @param seed the random seed
+     * @param maxAreas the approximate maximal number of areas
+     * @return the root area
+     */
+    public static Area create(long seed, int maxAreas)
+    {
+        return create(seed, maxAreas, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a random area tree with a limited number of child areas of each area.
+     * @param seed the random seed
+     * @param maxAreas the approximate maximal number of areas
+     * @param maxChildren the maximal number of child areas
+     * @return the root area
+     */
+    public static Area create(long seed, int maxAreas, int maxChildren)
+    {
+        return create(new SyntheticTrees(seed, maxAreas, maxChildren, false));
+    }
+
+    /**
+     * Creates a random area tree with unusual grid positions of some areas: overlapping areas,
+     * empty positions and negative coordinates.
+     * @param seed the random seed
+     * @param maxAreas the approximate maximal number of areas
+     * @return the root area
+     */
+    public static Area createIrregular(long seed, int maxAreas)
+    {
+        return create(new SyntheticTrees(seed, maxAreas, Integer.MAX_VALUE, true));
+    }
+
+    private static Area create(SyntheticTrees gen)
+    {
+        Node root = new Node(null);
+        root.bounds = new Rectangular(0, 0, 999, 4999);
+        root.pos = new Rectangular(0, 0, 9, 49);
+        root.bg = Color.WHITE;
+        root.bgsep = true;
+        gen.count = 1;
+        gen.fill(root, 0);
+        return root.area;
+    }
+
+    /**
+     * Obtains all the areas of a tree in the pre-order.
+     * @param root the root area
+     * @return the list of areas
+     */
+    public static List<Area> getAllAreas(Area root)
+    {
+        List<Area> ret = new ArrayList<Area>();
+        addAll(root, ret);
+        return ret;
+    }
+
+    //==================================================================
+
+    private static void addAll(Area area, List<Area> dest)
+    {
+        dest.add(area);
+        for (int i = 0; i < area.getChildCount(); i++)
+            addAll(area.getChildArea(i), dest);
+    }
+
+    private String text()
+    {
+        final int n = rnd.nextInt(12);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++)
+            sb.append(CHARS.charAt(rnd.nextInt(CHARS.length())));
+        return sb.toString();
+    }
+
+    private Box box(Node a)
+    {
+        final int x1 = a.bounds.getX1() + rnd.nextInt(20);
+        final int y1 = a.bounds.getY1() + rnd.nextInt(Math.max(1, a.bounds.getHeight()));
+        final Rectangular bounds = new Rectangular(x1, y1, x1 + rnd.nextInt(100), y1 + rnd.nextInt(15));
+        return createBox(text(), PALETTE[rnd.nextInt(PALETTE.length)], bounds);
+    }
+
+    private void fill(Node a, int depth)
+    {
+        int k = (depth > 5 || count > max) ? 0 : (rnd.nextInt(10) == 0 ? 20 + rnd.nextInt(60) : rnd.nextInt(5));
+        k = Math.min(k, maxChildren);
+        if (k == 0 || rnd.nextInt(6) == 0)
+        {
+            final int nb = 1 + rnd.nextInt(3);
+            for (int i = 0; i < nb; i++)
+                a.boxes.add(box(a));
+        }
+        int gx = 0;
+        int gy = 0;
+        Node prev = null;
+        //irregular positions: 0 = none, 1 = overlapping, 2 = overlapping, empty and negative
+        final int irr = irregular ? rnd.nextInt(3) : 0;
+        for (int i = 0; i < k; i++)
+        {
+            Node c = new Node(a);
+            count++;
+            //horizontal placement: full width, centered, left-aligned or arbitrary
+            final int w = a.bounds.getWidth();
+            final int mode = rnd.nextInt(4);
+            int x1, x2;
+            if (mode == 0)
+            {
+                x1 = a.bounds.getX1();
+                x2 = a.bounds.getX2();
+            }
+            else if (mode == 1)
+            {
+                final int m = rnd.nextInt(Math.max(1, w / 3));
+                x1 = a.bounds.getX1() + m;
+                x2 = a.bounds.getX2() - m - rnd.nextInt(2);
+            }
+            else if (mode == 2)
+            {
+                x1 = a.bounds.getX1() + rnd.nextInt(3) * 10;
+                x2 = x1 + rnd.nextInt(Math.max(1, w / 2));
+            }
+            else
+            {
+                x1 = a.bounds.getX1() + rnd.nextInt(Math.max(1, w));
+                x2 = Math.min(a.bounds.getX2(), x1 + rnd.nextInt(200));
+            }
+            if (x2 < x1) x2 = x1;
+            final int y1 = a.bounds.getY1() + rnd.nextInt(Math.max(1, a.bounds.getHeight()));
+            int y2 = Math.min(a.bounds.getY2(), y1 + rnd.nextInt(300));
+            if (y2 < y1) y2 = y1;
+            c.bounds = new Rectangular(x1, y1, x2, y2);
+            //grid position
+            if (rnd.nextInt(3) == 0)
+            {
+                gx = 0;
+                gy += 1 + rnd.nextInt(2);
+            }
+            final int gw = rnd.nextInt(3);
+            final int gh = rnd.nextInt(2);
+            int px = gx;
+            if (rnd.nextInt(5) == 0)
+                px = rnd.nextInt(6);
+            final int py = (rnd.nextInt(8) == 0) ? rnd.nextInt(gy + 1) : gy;
+            c.pos = new Rectangular(px, py, px + gw, py + gh);
+            if (irr > 0)
+                c.pos = irregularPosition(c.pos, prev, irr);
+            if (prev != null && prev.pos.getY1() == py && rnd.nextInt(2) == 0)
+                c.prevOnLine = prev;
+            gx = px + gw + 1;
+            //style
+            c.fsize = 8 + rnd.nextInt(3) * 2;
+            c.fweight = rnd.nextInt(2);
+            c.fstyle = (rnd.nextInt(3) == 0) ? 0.5f : 0f;
+            c.replaced = (rnd.nextInt(20) == 0);
+            if (rnd.nextInt(3) == 0)
+                c.bg = PALETTE[rnd.nextInt(PALETTE.length)];
+            c.bgsep = rnd.nextBoolean();
+            a.children.add(c);
+            prev = c;
+            fill(c, depth + 1);
+        }
+    }
+
+    private Rectangular irregularPosition(Rectangular pos, Node prev, int irr)
+    {
+        final int mode = rnd.nextInt((irr == 1) ? 3 : 6);
+        if (mode == 0 && prev != null)
+            return new Rectangular(prev.pos.getX1(), prev.pos.getY1(), prev.pos.getX2(), prev.pos.getY2()); //the same position
+        else if (mode == 1)
+            return new Rectangular(Math.max(0, pos.getX1() - rnd.nextInt(4)), Math.max(0, pos.getY1() - rnd.nextInt(3)),
+                    pos.getX2() + rnd.nextInt(4), pos.getY2() + rnd.nextInt(3)); //enlarged over the neighbours
+        else if (mode == 3)
+            return new Rectangular(pos.getX1(), pos.getY1(), pos.getX1() - 1, pos.getY2()); //empty columns
+        else if (mode == 4)
+            return new Rectangular(pos.getX1(), pos.getY1(), pos.getX2(), pos.getY1() - 1); //empty rows
+        else if (mode == 5)
+            return new Rectangular(pos.getX1() - 1 - rnd.nextInt(3), pos.getY1() - 1 - rnd.nextInt(3),
+                    pos.getX2() - rnd.nextInt(3), pos.getY2() - rnd.nextInt(3)); //negative coordinates
+        else
+            return pos;
+    }
+
+    private static Box createBox(final String text, final Color color, final Rectangular bounds)
+    {
+        return (Box) Proxy.newProxyInstance(SyntheticTrees.class.getClassLoader(), new Class<?>[] {Box.class},
+            new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args)
+                {
+                    final String name = method.getName();
+                    final Object ret;
+                    if (name.equals("getText")) ret = text;
+                    else if (name.equals("getColor")) ret = color;
+                    else if (name.equals("getBounds")) ret = bounds;
+                    else if (name.equals("getX1")) ret = bounds.getX1();
+                    else if (name.equals("getY1")) ret = bounds.getY1();
+                    else if (name.equals("getX2")) ret = bounds.getX2();
+                    else if (name.equals("getY2")) ret = bounds.getY2();
+                    else if (name.equals("getFontSize")) ret = 12;
+                    else if (name.equals("equals")) ret = (proxy == args[0]);
+                    else if (name.equals("hashCode")) ret = System.identityHashCode(proxy);
+                    else if (name.equals("toString")) ret = "Box[" + text + "]";
+                    else ret = null;
+                    return convert(ret, method.getReturnType());
+                }
+            });
+    }
+
+    /**
+     * Converts a value to the return type of a proxied method; the default value of the type is used for {@code null}.
+     */
+    private static Object convert(Object value, Class<?> type)
+    {
+        if (type == void.class)
+            return null;
+        else if (value instanceof Number)
+        {
+            final Number n = (Number) value;
+            if (type == int.class || type == Integer.class) return n.intValue();
+            else if (type == float.class || type == Float.class) return n.floatValue();
+            else if (type == double.class || type == Double.class) return n.doubleValue();
+            else if (type == long.class || type == Long.class) return n.longValue();
+            else if (type == short.class || type == Short.class) return n.shortValue();
+            else if (type == byte.class || type == Byte.class) return n.byteValue();
+            else return value;
+        }
+        else if (value != null)
+            return value;
+        else if (type == boolean.class) return false;
+        else if (type == int.class) return 0;
+        else if (type == float.class) return 0f;
+        else if (type == double.class) return 0.0;
+        else if (type == long.class) return 0L;
+        else if (type == short.class) return (short) 0;
+        else if (type == byte.class) return (byte) 0;
+        else if (type == char.class) return (char) 0;
+        else if (type.isAssignableFrom(Vector.class)) return new Vector<Object>();
+        else if (type.isAssignableFrom(HashMap.class)) return new HashMap<Object, Object>();
+        else return null;
+    }
+
+    //==================================================================
+
+    /**
+     * The data of an area. The area itself is a proxy that implements both {@link Area} and {@link AreaTopology}.
+     */
+    private static class Node implements InvocationHandler
+    {
+        public Node parent;
+        public List<Node> children = new ArrayList<Node>();
+        public List<Box> boxes = new ArrayList<Box>();
+        public Rectangular bounds;
+        public Rectangular pos;
+        public float fsize = 12;
+        public float fweight;
+        public float fstyle;
+        public boolean replaced;
+        public boolean bgsep;
+        public Color bg;
+        public Node prevOnLine;
+        public Map<Object, Float> tags = new HashMap<Object, Float>();
+        public Area area;
+
+        public Node(Node parent)
+        {
+            this.parent = parent;
+            area = (Area) Proxy.newProxyInstance(SyntheticTrees.class.getClassLoader(),
+                    new Class<?>[] {Area.class, AreaTopology.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+            return convert(get(proxy, method.getName(), args), method.getReturnType());
+        }
+
+        private Object get(Object proxy, String name, Object[] args)
+        {
+            //area
+            if (name.equals("getText")) return getText();
+            else if (name.equals("getBoxes")) return new Vector<Box>(boxes);
+            else if (name.equals("getAllBoxes")) return getAllBoxes(new Vector<Box>());
+            else if (name.equals("getChildCount")) return children.size();
+            else if (name.equals("getChildArea")) return children.get((Integer) args[0]).area;
+            else if (name.equals("getChildAreas")) return getChildAreas();
+            else if (name.equals("getParentArea")) return (parent == null) ? null : parent.area;
+            else if (name.equals("getPreviousSibling")) return getSibling(-1);
+            else if (name.equals("getNextSibling")) return getSibling(1);
+            else if (name.equals("getTopology")) return area;
+            else if (name.equals("getX1")) return bounds.getX1();
+            else if (name.equals("getY1")) return bounds.getY1();
+            else if (name.equals("getX2")) return bounds.getX2();
+            else if (name.equals("getY2")) return bounds.getY2();
+            else if (name.equals("getBounds")) return bounds;
+            else if (name.equals("getFontSize")) return fsize;
+            else if (name.equals("getFontWeight")) return fweight;
+            else if (name.equals("getFontStyle")) return fstyle;
+            else if (name.equals("isReplaced")) return replaced;
+            else if (name.equals("getDepth")) return (parent == null) ? 0 : parent.area.getDepth() + 1;
+            else if (name.equals("isLeaf")) return children.isEmpty();
+            else if (name.equals("getEffectiveBackgroundColor")) return getEffectiveBackgroundColor();
+            else if (name.equals("getBackgroundColor")) return bg;
+            else if (name.equals("isBackgroundSeparated")) return bgsep;
+            else if (name.equals("getTags")) return tags;
+            else if (name.equals("addTag")) return tags.put(args[0], (Float) args[1]);
+            else if (name.equals("removeTag")) return tags.remove(args[0]);
+            //topology
+            else if (name.equals("getPosition")) return pos;
+            else if (name.equals("getPreviousOnLine")) return (prevOnLine == null) ? null : prevOnLine.area;
+            else if (name.equals("getMinIndent")) return getMinIndent();
+            else if (name.equals("getTopologyWidth")) return 10;
+            else if (name.equals("getTopologyHeight")) return 10;
+            //object
+            else if (name.equals("equals")) return (proxy == args[0]);
+            else if (name.equals("hashCode")) return System.identityHashCode(proxy);
+            else if (name.equals("toString")) return "Area[" + bounds.getX1() + "," + bounds.getY1() + "]";
+            else return null;
+        }
+
+        private String getText()
+        {
+            StringBuilder sb = new StringBuilder();
+            if (children.isEmpty())
+            {
+                boolean first = true;
+                for (Box b : boxes)
+                {
+                    if (!first) sb.append(' ');
+                    first = false;
+                    sb.append(b.getText());
+                }
+            }
+            else
+            {
+                for (Node c : children)
+                    sb.append(c.getText());
+            }
+            return sb.toString();
+        }
+
+        private Vector<Box> getAllBoxes(Vector<Box> dest)
+        {
+            dest.addAll(boxes);
+            for (Node c : children)
+                c.getAllBoxes(dest);
+            return dest;
+        }
+
+        private Vector<Area> getChildAreas()
+        {
+            Vector<Area> ret = new Vector<Area>(children.size());
+            for (Node c : children)
+                ret.add(c.area);
+            return ret;
+        }
+
+        private Area getSibling(int dir)
+        {
+            if (parent == null)
+                return null;
+            final int i = parent.children.indexOf(this) + dir;
+            return (i >= 0 && i < parent.children.size()) ? parent.children.get(i).area : null;
+        }
+
+        private Color getEffectiveBackgroundColor()
+        {
+            if (bg != null)
+                return bg;
+            return (parent == null) ? Color.WHITE : parent.getEffectiveBackgroundColor();
+        }
+
+        private int getMinIndent()
+        {
+            if (children.isEmpty())
+                return 0;
+            int m = Integer.MAX_VALUE;
+            for (Node c : children)
+                m = Math.min(m, c.pos.getX1());
+            return m;
+        }
+    }
+
+}
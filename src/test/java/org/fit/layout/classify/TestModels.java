@@ -0,0 +1,77 @@
+/**
+ * TestModels.java
+ */
+package org.fit.layout.classify;
+
+import java.io.InputStream;
+
+import weka.classifiers.meta.FilteredClassifier;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+import weka.core.converters.ConverterUtils.DataSource;
+import weka.filters.unsupervised.attribute.Standardize;
+
+/**
+ * The models trained on the bundled training files for testing.
+ */
+public final class TestModels
+{
+    /** The training files shipped with the classifier; the class is the second attribute in all of them */
+    public static final String[] TRAINING_FILES = {
+        "train1.arff", "train_mix.arff", "train_reuters.arff", "train_reuters2.arff"
+    };
+    public static final int CLASS_INDEX = 1;
+
+    private TestModels()
+    {
+    }
+
+    /**
+     * Loads a bundled training file.
+     * @param resource the resource name of the training file
+     * @return the training data with the class index set
+     * @throws Exception when the file could not be read
+     */
+    public static Instances loadData(String resource) throws Exception
+    {
+        InputStream is = TestModels.class.getResourceAsStream("/" + resource);
+        if (is == null)
+            throw new IllegalArgumentException("No such resource: " + resource);
+        try
+        {
+            Instances data = new DataSource(is).getDataSet();
+            data.setClassIndex(CLASS_INDEX);
+            return data;
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Creates the classifier used for the visual classification: the J48 tree combined
+     * with the standardization filter.
+     * @return the untrained classifier
+     */
+    public static FilteredClassifier createClassifier()
+    {
+        FilteredClassifier fc = new FilteredClassifier();
+        fc.setFilter(new Standardize());
+        fc.setClassifier(new J48());
+        return fc;
+    }
+
+    /**
+     * Trains a model including the compiled tree on a bundled training file.
+     * @param resource the resource name of the training file
+     * @return the trained model
+     * @throws Exception when the training fails
+     */
+    public static TrainedModel train(String resource) throws Exception
+    {
+        Instances data = loadData(resource);
+        FilteredClassifier fc = createClassifier();
+        fc.buildClassifier(data);
+        return new TrainedModel(fc, data, CompiledTree.compile(fc, data));
+    }
+
+}
@@ -0,0 +1,111 @@
+/**
+ * TextStatisticsTest.java
+ */
+package org.fit.layout.classify;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.fit.layout.model.Area;
+import org.junit.Test;
+
+/**
+ * Compares the character class counts from the single-pass scan in {@link TextStatistics} with
+ * the original separate scans used by the article feature extractor.
+ */
+public class TextStatisticsTest
+{
+    private static final int TREES = 20;
+    private static final int TREE_SIZE = 2000;
+    /** Various letters, digits, spaces and punctuation including the ones outside of ASCII */
+    private static final String CHARS = "aZ09 ,.;:!?-\t\n\u00a0\u2003\u3000\u00e9\u00c9\u01c5\u0660\u0967\uff10\u00df\u0131\u2028_'\"";
+
+    @Test
+    public void areaCountsMatchSeparateScans()
+    {
+        for (int t = 0; t < TREES; t++)
+        {
+            final Area root = SyntheticTrees.create(t, (t == 0) ? 0 : TREE_SIZE);
+            final TextStatistics text = new TextStatistics(new AreaTreeIndex(root));
+            for (Area area : SyntheticTrees.getAllAreas(root))
+            {
+                final int i = text.indexOf(area);
+                assertTrue(area.toString(), i != -1);
+                final int[] counts = new int[TextStatistics.CLASSES];
+                for (int k = 0; k < TextStatistics.CLASSES; k++)
+                    counts[k] = text.getCount(i, k);
+                assertArrayEquals(area.toString(), separateScans(area.getText()), counts);
+            }
+        }
+    }
+
+    @Test
+    public void stringCountsMatchSeparateScans()
+    {
+        final Random rnd = new Random(20261017);
+        for (int t = 0; t < 10000; t++)
+        {
+            final int len = rnd.nextInt(40);
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < len; i++)
+            {
+                if (rnd.nextInt(10) == 0)
+                    sb.append((char) rnd.nextInt(0x10000)); //any character including the surrogates
+                else
+                    sb.append(CHARS.charAt(rnd.nextInt(CHARS.length())));
+            }
+            final String s = sb.toString();
+            final int[] counts = new int[TextStatistics.CLASSES + 2];
+            counts[0] = counts[TextStatistics.CLASSES + 1] = -1; //must not be touched
+            counts[1 + TextStatistics.DIGITS] = 10; //the counts are added to the existing values
+            TextStatistics.scan(s, counts, 1);
+            counts[1 + TextStatistics.DIGITS] -= 10;
+            final int[] expected = separateScans(s);
+            for (int k = 0; k < TextStatistics.CLASSES; k++)
+                assertEquals(s, expected[k], counts[1 + k]);
+            assertEquals(-1, counts[0]);
+            assertEquals(-1, counts[TextStatistics.CLASSES + 1]);
+        }
+    }
+
+    //==================================================================
+
+    private static int[] separateScans(String text)
+    {
+        final int[] ret = new int[TextStatistics.CLASSES];
+        ret[TextStatistics.LENGTH] = text.length();
+        ret[TextStatistics.DIGITS] = countChars(text, Character.DECIMAL_DIGIT_NUMBER);
+        ret[TextStatistics.LOWER] = countChars(text, Character.LOWERCASE_LETTER);
+        ret[TextStatistics.UPPER] = countChars(text, Character.UPPERCASE_LETTER);
+        ret[TextStatistics.SPACES] = countChars(text, Character.SPACE_SEPARATOR);
+        ret[TextStatistics.PUNCT] = countCharsPunct(text);
+        return ret;
+    }
+
+    // the original scans
+
+    private static int countChars(String s, int type)
+    {
+        int ret = 0;
+        for (int i = 0; i < s.length(); i++)
+            if (Character.getType(s.charAt(i)) == type)
+                    ret++;
+        return ret;
+    }
+
+    private static int countCharsPunct(String s)
+    {
+        int ret = 0;
+        for (int i = 0; i < s.length(); i++)
+        {
+            char ch = s.charAt(i);
+            if (ch == ',' || ch == '.' || ch == ';' || ch == ':')
+                    ret++;
+        }
+        return ret;
+    }
+
+}
@@ -0,0 +1,141 @@
+/**
+ * VisualClassifierConcurrencyTest.java
+ */
+package org.fit.layout.classify;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.fit.layout.classify.articles.ArticleFeatureExtractor;
+import org.fit.layout.model.Area;
+import org.junit.Test;
+
+/**
+ * Classifies several trees from multiple threads using a single shared classifier and compares
+ * the results with a sequential classification.
+ */
+public class VisualClassifierConcurrencyTest
+{
+    private static final int TREES = 6;
+    private static final int TREE_SIZE = 1500;
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 3;
+
+    /** The ways of classifying a tree */
+    private static final int SINGLE_PASS = 0;
+    private static final int FORK_JOIN = 1;
+    private static final int CONTEXT = 2;
+
+    @Test
+    public void concurrentClassificationMatchesSequential() throws Exception
+    {
+        final VisualClassifier vcls = new VisualClassifier(TestModels.train("train_mix.arff"));
+        final List<Area> trees = new ArrayList<Area>();
+        final List<Map<Area, double[]>> expected = new ArrayList<Map<Area, double[]>>();
+        for (int t = 0; t < TREES; t++)
+        {
+            final Area root = SyntheticTrees.create(100 + t, TREE_SIZE);
+            trees.add(root);
+            expected.add(classify(vcls, root, SINGLE_PASS, null));
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        final ExecutorService exec = Executors.newFixedThreadPool(THREADS);
+        try
+        {
+            List<Callable<List<Map<Area, double[]>>>> tasks = new ArrayList<Callable<List<Map<Area, double[]>>>>();
+            for (int i = 0; i < THREADS; i++)
+            {
+                final int thread = i;
+                tasks.add(new Callable<List<Map<Area, double[]>>>() {
+                    @Override
+                    public List<Map<Area, double[]>> call()
+                    {
+                        //each thread uses all the ways of classification on the trees in a different order
+                        List<Map<Area, double[]>> ret = new ArrayList<Map<Area, double[]>>();
+                        for (int it = 0; it < ITERATIONS; it++)
+                        {
+                            for (int k = 0; k < TREES; k++)
+                            {
+                                final int t = (k + thread) % TREES;
+                                final int mode = (t + thread + it) % 3;
+                                ret.add(classify(vcls, trees.get(t), mode, pool));
+                            }
+                        }
+                        return ret;
+                    }
+                });
+            }
+            List<Future<List<Map<Area, double[]>>>> results = exec.invokeAll(tasks);
+            for (int i = 0; i < THREADS; i++)
+            {
+                final List<Map<Area, double[]>> result = results.get(i).get();
+                int r = 0;
+                for (int it = 0; it < ITERATIONS; it++)
+                {
+                    for (int k = 0; k < TREES; k++)
+                    {
+                        final int t = (k + i) % TREES;
+                        compare("thread " + i + " tree " + t, trees.get(t), expected.get(t), result.get(r++));
+                    }
+                }
+            }
+        } finally {
+            exec.shutdown();
+            pool.shutdown();
+        }
+    }
+
+    //==================================================================
+
+    private static Map<Area, double[]> classify(VisualClassifier vcls, Area root, int mode, ForkJoinPool pool)
+    {
+        final ArticleFeatureExtractor features = new ArticleFeatureExtractor();
+        features.setTree(root);
+        final Map<Area, double[]> ret = new IdentityHashMap<Area, double[]>();
+        if (mode == CONTEXT)
+        {
+            TreeClassification tc = vcls.classifyTree(root, features);
+            for (Area area : SyntheticTrees.getAllAreas(root))
+                ret.put(area, tc.distributionForArea(area));
+        }
+        else
+        {
+            final ClassificationListener listener = new ClassificationListener() {
+                @Override
+                public void areaClassified(Area area, double[] distribution)
+                {
+                    synchronized (ret)
+                    {
+                        ret.put(area, distribution.clone());
+                    }
+                }
+            };
+            if (mode == FORK_JOIN)
+                vcls.classifyTree(root, features, listener, pool);
+            else
+                vcls.classifyTree(root, features, listener);
+        }
+        return ret;
+    }
+
+    private static void compare(String msg, Area root, Map<Area, double[]> expected, Map<Area, double[]> result)
+    {
+        final List<Area> areas = SyntheticTrees.getAllAreas(root);
+        assertEquals(msg, areas.size(), expected.size());
+        assertEquals(msg, areas.size(), result.size());
+        for (Area area : areas)
+            assertArrayEquals(msg + " " + area, expected.get(area), result.get(area), 0.0);
+    }
+
+}
@@ -0,0 +1,87 @@
+/**
+ * AlignmentIndexTest.java
+ */
+package org.fit.layout.classify.articles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.fit.layout.classify.AreaTreeIndex;
+import org.fit.layout.classify.SyntheticTrees;
+import org.fit.layout.model.Area;
+import org.junit.Test;
+
+/**
+ * Compares the centering and indentation from {@link AlignmentIndex} with the recursive computation
+ * retained in {@link ArticleFeatureExtractor}. The recursive computation is used by an extractor
+ * with no tree set. The number of child areas is limited because the recursion takes exponential
+ * time for long runs of siblings whose centering cannot be decided.
+ */
+public class AlignmentIndexTest
+{
+    private static final int TREES = 40;
+    private static final int TREE_SIZE = 1000;
+    private static final int MAX_CHILDREN = 12;
+
+    @Test
+    public void indexMatchesRecursion()
+    {
+        final ArticleFeatureExtractor recursive = new ArticleFeatureExtractor();
+        int singleChildren = 0;
+        for (int t = 0; t < TREES; t++)
+        {
+            final Area root = SyntheticTrees.create(t, (t == 0) ? 0 : TREE_SIZE, MAX_CHILDREN);
+            final AlignmentIndex alignment = new AlignmentIndex(new AreaTreeIndex(root));
+            final ArticleFeatureExtractor indexed = new ArticleFeatureExtractor();
+            indexed.setTree(root);
+            for (Area area : SyntheticTrees.getAllAreas(root))
+            {
+                final int i = alignment.indexOf(area);
+                if (area == root)
+                    assertEquals(-1, i); //computed recursively
+                else
+                {
+                    assertTrue(area.toString(), i != -1);
+                    assertEquals(area.toString(), recursive.isCentered(area), alignment.getCentering(i) == 1);
+                    if (!Double.isNaN(alignment.getIndentation(i)))
+                        assertEquals(area.toString(), recursive.getIndentation(area), alignment.getIndentation(i), 0.0);
+                }
+                assertEquals(area.toString(), recursive.isCentered(area), indexed.isCentered(area));
+                assertEquals(area.toString(), recursive.getIndentation(area), indexed.getIndentation(area), 0.0);
+                if (area.getChildCount() == 1)
+                    singleChildren++;
+            }
+        }
+        assertTrue(singleChildren > 0);
+    }
+
+    @Test
+    public void subtreeIndexMatchesRecursion()
+    {
+        final ArticleFeatureExtractor recursive = new ArticleFeatureExtractor();
+        for (int t = 0; t < TREES; t++)
+        {
+            final Area root = SyntheticTrees.create(t, TREE_SIZE, MAX_CHILDREN);
+            for (Area sub : SyntheticTrees.getAllAreas(root))
+            {
+                if (sub.getParentArea() == null || sub.getChildCount() == 0)
+                    continue;
+                //the root of the subtree has siblings that are not indexed
+                final AlignmentIndex alignment = new AlignmentIndex(new AreaTreeIndex(sub));
+                assertEquals(-1, alignment.indexOf(sub));
+                final List<Area> areas = SyntheticTrees.getAllAreas(sub);
+                for (Area area : areas.subList(1, areas.size()))
+                {
+                    final int i = alignment.indexOf(area);
+                    assertTrue(area.toString(), i != -1);
+                    assertEquals(area.toString(), recursive.isCentered(area), alignment.getCentering(i) == 1);
+                    if (!Double.isNaN(alignment.getIndentation(i)))
+                        assertEquals(area.toString(), recursive.getIndentation(area), alignment.getIndentation(i), 0.0);
+                }
+            }
+        }
+    }
+
+}
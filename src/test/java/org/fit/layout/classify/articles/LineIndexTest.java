@@ -0,0 +1,75 @@
+/**
+ * LineIndexTest.java
+ */
+package org.fit.layout.classify.articles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.fit.layout.classify.AreaTreeIndex;
+import org.fit.layout.classify.SyntheticTrees;
+import org.fit.layout.model.Area;
+import org.fit.layout.model.Box;
+import org.junit.Test;
+
+/**
+ * Compares the line counts from {@link LineIndex} with the original greedy count over the sorted
+ * boxes of each area.
+ */
+public class LineIndexTest
+{
+    private static final int TREES = 20;
+    private static final int TREE_SIZE = 2000;
+
+    @Test
+    public void lineCountsMatchGreedyCount()
+    {
+        for (int t = 0; t < TREES; t++)
+        {
+            final Area root = SyntheticTrees.create(t, (t == 0) ? 0 : TREE_SIZE);
+            final LineIndex lines = new LineIndex(new AreaTreeIndex(root));
+            for (Area area : SyntheticTrees.getAllAreas(root))
+            {
+                final int i = lines.indexOf(area);
+                assertTrue(area.toString(), i != -1);
+                assertEquals(area.toString(), getLineCount(area), lines.getLineCount(i));
+            }
+        }
+    }
+
+    //==================================================================
+
+    /**
+     * The original line count of an area.
+     */
+    private static int getLineCount(Area a)
+    {
+        final int LINE_THRESHOLD = 5; //minimal distance between lines in pixels
+
+        List<Box> leaves = a.getAllBoxes();
+        Collections.sort(leaves, new Comparator<Box>() {
+            @Override
+            public int compare(Box o1, Box o2)
+            {
+                return o1.getBounds().getY1() - o2.getBounds().getY1();
+            }
+        });
+        int lines = 0;
+        int lastpos = -10;
+        for (Box leaf : leaves)
+        {
+            int pos = leaf.getBounds().getY1();
+            if (pos - lastpos > LINE_THRESHOLD)
+            {
+                lines++;
+                lastpos = pos;
+            }
+        }
+        return lines;
+    }
+
+}
@@ -0,0 +1,102 @@
+/**
+ * NeighbourIndexTest.java
+ */
+package org.fit.layout.classify.articles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.fit.layout.classify.AreaTreeIndex;
+import org.fit.layout.classify.SyntheticTrees;
+import org.fit.layout.model.Area;
+import org.fit.layout.model.Rectangular;
+import org.junit.Test;
+
+/**
+ * Compares the neighbour counts from {@link NeighbourIndex} with a scan of all the siblings
+ * as done originally by {@link ArticleFeatureExtractor}.
+ */
+public class NeighbourIndexTest
+{
+    private static final int TREES = 20;
+    private static final int TREE_SIZE = 2000;
+
+    @Test
+    public void countsMatchScan()
+    {
+        for (int t = 0; t < TREES; t++)
+            checkTree(SyntheticTrees.create(t, (t == 0) ? 0 : TREE_SIZE));
+    }
+
+    @Test
+    public void irregularCountsMatchScan()
+    {
+        for (int t = 0; t < TREES; t++)
+            checkTree(SyntheticTrees.createIrregular(t, TREE_SIZE));
+    }
+
+    //==================================================================
+
+    private static void checkTree(Area root)
+    {
+        final NeighbourIndex neighbours = new NeighbourIndex(new AreaTreeIndex(root));
+        for (Area area : SyntheticTrees.getAllAreas(root))
+        {
+            final int i = neighbours.indexOf(area);
+            if (area == root)
+                assertEquals(-1, i);
+            else
+            {
+                assertTrue(area.toString(), i != -1);
+                final String msg = area + " at " + area.getTopology().getPosition();
+                assertEquals(msg, countAreasAbove(area), neighbours.getAbove(i));
+                assertEquals(msg, countAreasBelow(area), neighbours.getBelow(i));
+                assertEquals(msg, countAreasLeft(area), neighbours.getLeft(i));
+                assertEquals(msg, countAreasRight(area), neighbours.getRight(i));
+            }
+        }
+    }
+
+    // the original scans of the siblings
+
+    private static int countAreas(Area a, Rectangular r)
+    {
+        int ret = 0;
+        for (int i = 0; i < a.getChildCount(); i++)
+        {
+            Area n = a.getChildArea(i);
+            if (n.getTopology().getPosition().intersects(r))
+                ret++;
+        }
+        return ret;
+    }
+
+    private static int countAreasAbove(Area a)
+    {
+        Rectangular gp = a.getTopology().getPosition();
+        Rectangular r = new Rectangular(gp.getX1(), 0, gp.getX2(), gp.getY1() - 1);
+        return countAreas(a.getParentArea(), r);
+    }
+
+    private static int countAreasBelow(Area a)
+    {
+        Rectangular gp = a.getTopology().getPosition();
+        Rectangular r = new Rectangular(gp.getX1(), gp.getY2()+1, gp.getX2(), Integer.MAX_VALUE);
+        return countAreas(a.getParentArea(), r);
+    }
+
+    private static int countAreasLeft(Area a)
+    {
+        Rectangular gp = a.getTopology().getPosition();
+        Rectangular r = new Rectangular(0, gp.getY1(), gp.getX1() - 1, gp.getY2());
+        return countAreas(a.getParentArea(), r);
+    }
+
+    private static int countAreasRight(Area a)
+    {
+        Rectangular gp = a.getTopology().getPosition();
+        Rectangular r = new Rectangular(gp.getX2()+1, gp.getY1(), Integer.MAX_VALUE, gp.getY2());
+        return countAreas(a.getParentArea(), r);
+    }
+
+}
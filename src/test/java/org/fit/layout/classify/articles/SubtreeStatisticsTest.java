@@ -0,0 +1,120 @@
+/**
+ * SubtreeStatisticsTest.java
+ */
+package org.fit.layout.classify.articles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.util.List;
+
+import org.fit.layout.classify.AreaTreeIndex;
+import org.fit.layout.classify.SyntheticTrees;
+import org.fit.layout.classify.TextStatistics;
+import org.fit.layout.model.Area;
+import org.fit.layout.model.Box;
+import org.junit.Test;
+
+/**
+ * Compares the per-area aggregates computed in a single bottom-up pass with the original
+ * recursive computations of {@link ArticleFeatureExtractor}.
+ */
+public class SubtreeStatisticsTest
+{
+    private static final int TREES = 20;
+    private static final int TREE_SIZE = 1000;
+
+    @Test
+    public void aggregatesMatchRecursion()
+    {
+        for (int t = 0; t < TREES; t++)
+        {
+            final Area root = SyntheticTrees.create(t, (t == 0) ? 0 : TREE_SIZE);
+            final TextStatistics text = new TextStatistics(new AreaTreeIndex(root));
+            final SubtreeStatistics stats = new SubtreeStatistics(text);
+            final List<Area> areas = SyntheticTrees.getAllAreas(root);
+            assertEquals(areas.size(), stats.getIndex().size());
+            for (Area area : areas)
+            {
+                final int i = stats.indexOf(area);
+                assertTrue(area.toString(), i != -1);
+                assertEquals(area.toString(), area.getText().length(), text.getLength(i));
+                assertEquals(area.toString(), letterLength(area.getText()), text.getLetterCount(i));
+                assertEquals(area.toString(), getAverageTextLuminosity(area), stats.getTextLuminosity(i), 0.0);
+            }
+        }
+    }
+
+    //==================================================================
+    // the original recursive computations
+
+    private static double getAverageTextLuminosity(Area a)
+    {
+        double sum = 0;
+        int cnt = 0;
+
+        if (!a.getBoxes().isEmpty()) //has some content
+        {
+            int l = a.getText().length();
+            sum += getAverageBoxColorLuminosity(a) * l;
+            cnt += l;
+        }
+
+        for (int i = 0; i < a.getChildCount(); i++)
+        {
+            int l = a.getChildArea(i).getText().length();
+            sum += getAverageTextLuminosity(a.getChildArea(i)) * l;
+            cnt += l;
+        }
+
+        if (cnt > 0)
+            return sum / cnt;
+        else
+            return 0;
+    }
+
+    private static double getAverageBoxColorLuminosity(Area area)
+    {
+        if (area.getBoxes().isEmpty())
+            return 0;
+        else
+        {
+            double sum = 0;
+            int len = 0;
+            for (Box box : area.getBoxes())
+            {
+                int l = box.getText().length();
+                sum += colorLuminosity(box.getColor()) * l;
+                len += l;
+            }
+            return sum / len;
+        }
+    }
+
+    private static double colorLuminosity(Color c)
+    {
+        double lr, lg, lb;
+        if (c == null)
+        {
+            lr = lg = lb = 255;
+        }
+        else
+        {
+            lr = Math.pow(c.getRed() / 255.0, 2.2);
+            lg = Math.pow(c.getGreen() / 255.0, 2.2);
+            lb = Math.pow(c.getBlue() / 255.0, 2.2);
+        }
+        return lr * 0.2126 +  lg * 0.7152 + lb * 0.0722;
+    }
+
+    private static int letterLength(String s)
+    {
+        int len = 0;
+        for (int i = 0; i < s.length(); i++)
+            if (Character.getType(s.charAt(i)) != Character.SPACE_SEPARATOR)
+                len++;
+        return len;
+    }
+
+}